@@ -0,0 +1,34 @@
+#!/bin/bash
+# Builds target/truffula.jar for fast start up and trains an AppCDS archive for it.
+#
+# Usage: scripts/build-fast.sh [--native]
+#
+# - Sources are compiled with -XDstringConcat=inline so string concatenation
+#   does not bootstrap invokedynamic on the first printed line.
+# - A training run of printTree over this repository records every class the
+#   CLI loads into target/truffula.jsa (a dynamic AppCDS archive, JDK 13+).
+#   scripts/truffula-fast maps that archive at start up instead of loading and
+#   verifying the classes again.
+# - With --native and GraalVM's native-image on the PATH, a native executable
+#   target/truffula-native is built as well.
+set -e
+cd "$(dirname "$0")/.."
+
+rm -rf target/classes
+mkdir -p target/classes
+javac --release 21 -encoding UTF-8 -XDstringConcat=inline -d target/classes $(ls src/*.java | grep -v 'Test.java$')
+jar cfe target/truffula.jar App -C target/classes .
+
+rm -f target/truffula.jsa
+java -XX:ArchiveClassesAtExit=target/truffula.jsa -XX:TieredStopAtLevel=1 -XX:+UseSerialGC \
+  -jar target/truffula.jar -h -nc . > /dev/null
+echo "built target/truffula.jar and target/truffula.jsa"
+
+if [ "$1" = "--native" ]; then
+  if ! command -v native-image > /dev/null; then
+    echo "native-image not found; install GraalVM to build target/truffula-native" >&2
+    exit 1
+  fi
+  native-image --no-fallback -O2 -jar target/truffula.jar -o target/truffula-native
+  echo "built target/truffula-native"
+fi
@@ -0,0 +1,33 @@
+#!/bin/bash
+# Compares cold start latency of the plain JVM launch against the fast launch
+# profile on a small tree. Run scripts/build-fast.sh first.
+#
+# Usage: scripts/startup-bench.sh [runs]
+set -e
+cd "$(dirname "$0")/.."
+RUNS=${1:-20}
+
+TREE=$(mktemp -d)
+trap 'rm -rf "$TREE"' EXIT
+mkdir -p "$TREE/a/b" "$TREE/c"
+touch "$TREE/x.txt" "$TREE/a/y.txt" "$TREE/a/b/z.txt" "$TREE/c/w.txt"
+
+bench() {
+  local label=$1; shift
+  local times=()
+  for _ in $(seq "$RUNS"); do
+    local start end
+    start=$(date +%s%N)
+    "$@" > /dev/null
+    end=$(date +%s%N)
+    times+=($(( (end - start) / 1000000 )))
+  done
+  printf '%s\n' "${times[@]}" | sort -n | awk -v label="$label" \
+    '{t[NR]=$1} END {printf "%-10s median %4d ms   min %4d ms   max %4d ms\n", label, t[int((NR+1)/2)], t[1], t[NR]}'
+}
+
+bench "plain" java -jar target/truffula.jar "$TREE"
+bench "fast" scripts/truffula-fast "$TREE"
+if [ -x target/truffula-native ]; then
+  bench "native" target/truffula-native "$TREE"
+fi
@@ -0,0 +1,280 @@
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The auto engine: starts walking on the calling thread, measures the tree as
+ * it goes and hands the rest of the walk to a ParallelTreePrinter once the
+ * file system turns out to be slow enough for threads to pay off.
+ *
+ * Threads only help when a walk spends its time waiting on listings and stats,
+ * as on network file systems. On a local disk the sequential walk is faster,
+ * so the sequential walk is kept until a window of listings shows otherwise:
+ * - A window ends after 256 listings, or after 16 once 50ms have passed, so
+ *   a slow file system is noticed early.
+ * - The time spent in listings and stats per entry read is compared with a
+ *   threshold. Rendering and sorting are left out, so the JIT warming up does
+ *   not look like slow I/O.
+ * A flat directory never fills a window, so it is walked on the calling
+ * thread: a single listing has nothing to split.
+ *
+ * When the walk moves, the number of threads is picked from the ratio of I/O
+ * to rendering time per entry, and the threads are virtual, so many listings
+ * can be in flight without as many platform threads. The parallel walk keeps
+ * re-measuring every 256 listings and stops forking while listings are fast
+ * again, walking new subdirectories inline until they slow down.
+ *
+ * Everything printed before the move is written straight to the ColorPrinter,
+ * and the parallel walk carries on from the same traversal, so the output is
+ * the same as the sequential engine's. When metrics are collected each
+ * decision is written to System.err.
+ *
+ * Example Usage:
+ *
+ * TruffulaOptions options = TruffulaOptions.builder(root).engine(TruffulaOptions.Engine.AUTO).build();
+ * new TruffulaPrinter(options).printTree();
+ */
+public class AdaptiveTreePrinter {
+
+  /**
+   * Listings in a full sampling window.
+   */
+  static final int WINDOW_LISTINGS = 256;
+
+  /**
+   * Listings a window needs before it may be cut short by time.
+   */
+  private static final int MIN_WINDOW_LISTINGS = 16;
+
+  /**
+   * Time after which a window with enough listings is evaluated.
+   */
+  private static final long MAX_WINDOW_NANOS = 50_000_000L;
+
+  /**
+   * Listing and stat time per entry above which the walk moves to threads.
+   */
+  static final long IO_BOUND_NANOS = 20_000;
+
+  /**
+   * Smallest rendering time per entry used to size the pool.
+   */
+  private static final long MIN_CPU_NANOS = 1_000;
+
+  private static final int MAX_THREADS = 256;
+
+  private final TruffulaOptions options;
+  private final List<ConsoleColor> colorSequence;
+  private final ColorPrinter out;
+  private final TruffulaPrinter printer;
+  private final TraversalMetrics metrics;
+  private final Throttle throttle;
+
+  private TruffulaOptions.Engine chosen = TruffulaOptions.Engine.SEQUENTIAL;
+  private int chosenThreads = 1;
+
+  /**
+   * Constructs an AdaptiveTreePrinter.
+   *
+   * @param options       the options to walk and print with
+   * @param colorSequence the colors to cycle through by depth
+   * @param out           the printer the output is written to
+   * @param printer       the printer that renders entries walked on the calling thread to out
+   * @param metrics       the metrics to record into, or null to not collect metrics
+   * @param throttle      the limits to walk within, or null for no limits
+   */
+  AdaptiveTreePrinter(TruffulaOptions options, List<ConsoleColor> colorSequence, ColorPrinter out,
+      TruffulaPrinter printer, TraversalMetrics metrics, Throttle throttle) {
+    this.options = options;
+    this.colorSequence = colorSequence;
+    this.out = out;
+    this.printer = printer;
+    this.metrics = metrics;
+    this.throttle = throttle;
+  }
+
+  /**
+   * Prints the tree, moving to worker threads part way through if sampling
+   * shows the walk is waiting on the file system.
+   *
+   * @throws IllegalStateException if a worker failed or the wait was interrupted
+   */
+  public void print() {
+    //the decisions need timings even when the user did not ask for metrics
+    TraversalMetrics sample = metrics != null ? metrics : new TraversalMetrics(0);
+    printer.setMetrics(sample);
+    try {
+      TreeWalker.Traversal traversal = new TreeWalker(options, sample, throttle).traversal();
+      Window window = new Window(sample);
+      int maxDepth = 0;
+      boolean logged = false;
+      while (traversal.hasNext()) {
+        TreeEntry entry = traversal.next();
+        printer.printEntry(entry);
+        window.entries++;
+        maxDepth = Math.max(maxDepth, entry.getDepth());
+        if (!window.isFull()) {
+          continue;
+        }
+        long ioNanos = window.ioNanosPerEntry();
+        if (ioNanos >= IO_BOUND_NANOS) {
+          switchToParallel(traversal, sample, window, maxDepth);
+          return;
+        }
+        if (!logged) {
+          log(String.format("sequential after %d listings (%.1f us I/O per entry, fan-out %.1f, depth %d)",
+              sample.getDirectoryCount(), ioNanos / 1000.0, window.fanOut(), maxDepth));
+          logged = true;
+        }
+        window = new Window(sample);
+      }
+    } finally {
+      printer.setMetrics(metrics);
+    }
+  }
+
+  /**
+   * Returns the engine the last call to print finished on.
+   *
+   * @return SEQUENTIAL or PARALLEL
+   */
+  TruffulaOptions.Engine getChosenEngine() {
+    return chosen;
+  }
+
+  /**
+   * Returns the number of worker threads the last call to print used.
+   *
+   * @return the thread count, 1 if the walk stayed sequential
+   */
+  int getChosenThreads() {
+    return chosenThreads;
+  }
+
+  private void switchToParallel(TreeWalker.Traversal traversal, TraversalMetrics sample, Window window,
+      int maxDepth) {
+    long ioNanos = window.ioNanosPerEntry();
+    long cpuNanos = window.cpuNanosPerEntry();
+    //enough threads to keep one busy rendering while the rest wait on I/O
+    int threads = (int) Math.max(2, Math.min(MAX_THREADS, ioNanos / cpuNanos + 1));
+    chosen = TruffulaOptions.Engine.PARALLEL;
+    chosenThreads = threads;
+    log(String.format("parallel, %d virtual threads after %d listings (%.1f us I/O per entry, fan-out %.1f, depth %d)",
+        threads, sample.getDirectoryCount(),
+        ioNanos / 1000.0, window.fanOut(), maxDepth));
+
+    TruffulaOptions parallelOptions = options.toBuilder()
+        .engine(TruffulaOptions.Engine.PARALLEL)
+        .threads(threads)
+        .build();
+    ParallelTreePrinter parallel = new ParallelTreePrinter(parallelOptions, colorSequence, out, sample, throttle);
+    parallel.setThreadFactory(Thread.ofVirtual().name("truffula-walk", 0).factory());
+    parallel.setForkGate(new ForkGate(sample));
+    parallel.print(traversal);
+  }
+
+  private void log(String decision) {
+    if (options.isCollectMetrics()) {
+      System.err.println("truffula: engine auto: " + decision);
+    }
+  }
+
+  /**
+   * Counters at the start of a sampling window.
+   */
+  private static class Window {
+    private final TraversalMetrics sample;
+    private final long start = System.nanoTime();
+    private final long listings;
+    private final long listed;
+    private final long ioNanos;
+    private final long cpuNanos;
+    private long entries;
+
+    private Window(TraversalMetrics sample) {
+      this.sample = sample;
+      this.listings = sample.getDirectoryCount();
+      this.listed = sample.getEntryCount();
+      this.ioNanos = ioNanos(sample);
+      this.cpuNanos = cpuNanos(sample);
+    }
+
+    private boolean isFull() {
+      long count = sample.getDirectoryCount() - listings;
+      return count >= WINDOW_LISTINGS
+          || (count >= MIN_WINDOW_LISTINGS && System.nanoTime() - start >= MAX_WINDOW_NANOS);
+    }
+
+    /**
+     * Listing and stat time per entry read in this window.
+     */
+    private long ioNanosPerEntry() {
+      return (ioNanos(sample) - ioNanos) / Math.max(1, sample.getEntryCount() - listed);
+    }
+
+    /**
+     * Sorting and rendering time per entry printed in this window.
+     */
+    private long cpuNanosPerEntry() {
+      return Math.max(MIN_CPU_NANOS, (cpuNanos(sample) - cpuNanos) / Math.max(1, entries));
+    }
+
+    private double fanOut() {
+      return (double) (sample.getEntryCount() - listed) / Math.max(1, sample.getDirectoryCount() - listings);
+    }
+  }
+
+  private static long ioNanos(TraversalMetrics sample) {
+    return sample.getTotalNanos(TraversalMetrics.Phase.LIST) + sample.getTotalNanos(TraversalMetrics.Phase.STAT);
+  }
+
+  private static long cpuNanos(TraversalMetrics sample) {
+    return sample.getTotalNanos(TraversalMetrics.Phase.SORT) + sample.getTotalNanos(TraversalMetrics.Phase.PRINT);
+  }
+
+  /**
+   * Re-measures the parallel walk every 256 listings and allows forks only
+   * while listings and stats are still slow. The threshold is half the one for
+   * moving to threads, so the walk does not flip back and forth at the edge.
+   */
+  private class ForkGate implements BooleanSupplier {
+    private final TraversalMetrics sample;
+    private volatile boolean open = true;
+    private long listings;
+    private long listed;
+    private long ioNanos;
+
+    private ForkGate(TraversalMetrics sample) {
+      this.sample = sample;
+      this.listings = sample.getDirectoryCount();
+      this.listed = sample.getEntryCount();
+      this.ioNanos = ioNanos(sample);
+    }
+
+    @Override
+    public boolean getAsBoolean() {
+      if (sample.getDirectoryCount() - listings >= WINDOW_LISTINGS) {
+        reevaluate();
+      }
+      return open;
+    }
+
+    private synchronized void reevaluate() {
+      long nowListings = sample.getDirectoryCount();
+      if (nowListings - listings < WINDOW_LISTINGS) {
+        return;
+      }
+      long nowListed = sample.getEntryCount();
+      long nowIoNanos = ioNanos(sample);
+      long perEntry = (nowIoNanos - ioNanos) / Math.max(1, nowListed - listed);
+      boolean slow = perEntry >= IO_BOUND_NANOS / 2;
+      if (slow != open) {
+        open = slow;
+        log(String.format("%s after %d listings (%.1f us I/O per entry)",
+            slow ? "forking again" : "walking inline", nowListings, perEntry / 1000.0));
+      }
+      listings = nowListings;
+      listed = nowListed;
+      ioNanos = nowIoNanos;
+    }
+  }
+}
@@ -0,0 +1,80 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveTreePrinterTest {
+
+  private static final File ROOT = new File("/mem");
+
+  private static String printSequential(TreeFileSystem fs) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    TruffulaOptions options = TruffulaOptions.builder(ROOT).fileSystem(fs).build();
+    new TruffulaPrinter(options, new PrintStream(output)).printTree();
+    return output.toString();
+  }
+
+  private static AdaptiveTreePrinter printAuto(TreeFileSystem fs, ByteArrayOutputStream output) {
+    TruffulaOptions options = TruffulaOptions.builder(ROOT).fileSystem(fs)
+        .engine(TruffulaOptions.Engine.AUTO).build();
+    PrintStream stream = new PrintStream(output);
+    TruffulaPrinter printer = new TruffulaPrinter(options, stream);
+    ColorPrinter out = new ColorPrinter(stream);
+    AdaptiveTreePrinter adaptive = new AdaptiveTreePrinter(options,
+        List.of(ConsoleColor.WHITE, ConsoleColor.PURPLE, ConsoleColor.YELLOW), out, printer, null, null);
+    adaptive.print();
+    out.flush();
+    return adaptive;
+  }
+
+  @Test
+  void testSlowFileSystemMovesToThreads() {
+    // Arrange: 259 directories and 2590 files, each stat taking 50us
+    MemoryFileSystem memory = MemoryFileSystem.generate(ROOT, 3, 6, 10);
+    TreeFileSystem slow = new LatencyFileSystem(memory, 200_000, 50_000);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    // Act
+    AdaptiveTreePrinter adaptive = printAuto(slow, output);
+
+    // Assert
+    assertEquals(TruffulaOptions.Engine.PARALLEL, adaptive.getChosenEngine());
+    assertTrue(adaptive.getChosenThreads() >= 2);
+    assertEquals(printSequential(memory), output.toString());
+  }
+
+  @Test
+  void testFastFileSystemStaysSequential() {
+    // Arrange
+    MemoryFileSystem memory = MemoryFileSystem.generate(ROOT, 4, 5, 3);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    // Act
+    AdaptiveTreePrinter adaptive = printAuto(memory, output);
+
+    // Assert
+    assertEquals(TruffulaOptions.Engine.SEQUENTIAL, adaptive.getChosenEngine());
+    assertEquals(printSequential(memory), output.toString());
+  }
+
+  @Test
+  void testAutoEngineThroughTruffulaPrinter() {
+    // Arrange
+    MemoryFileSystem memory = MemoryFileSystem.generate(ROOT, 2, 4, 4);
+    TreeFileSystem slow = new LatencyFileSystem(memory, 100_000, 30_000);
+    TruffulaOptions options = TruffulaOptions.builder(ROOT).fileSystem(slow)
+        .engine(TruffulaOptions.Engine.AUTO).build();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    // Act
+    new TruffulaPrinter(options, new PrintStream(output)).printTree();
+
+    // Assert
+    assertEquals(printSequential(memory), output.toString());
+  }
+}
@@ -1,12 +1,40 @@
 import java.io.File;
 import java.util.Arrays;
+import java.util.Comparator;
 
 /**
- * Utility class for sorting an array of files alphabetically by name, 
- * ignoring case differences.
+ * Utility class for sorting an array of files, or of file names,
+ * alphabetically by name, ignoring case differences.
  */
 public class AlphabeticalFileSorter {
 
+  /**
+   * Orders files by name, ignoring case.
+   *
+   * This is a plain class rather than a lambda: a lambda is linked at run time
+   * through invokedynamic, which loads a dozen extra classes on the first sort
+   * and shows up in the start up time of a short run.
+   */
+  private static final Comparator<File> BY_NAME = new Comparator<File>() {
+    @Override
+    public int compare(File f1, File f2) {
+      return compareNames(f1.getName(), f2.getName());
+    }
+  };
+
+  /**
+   * Compares two names the way files are sorted, ignoring case. Entries that
+   * are not backed by a File, such as archive entries, are sorted with this.
+   *
+   * @param name1 the first name
+   * @param name2 the second name
+   * @return a negative number, zero or a positive number as name1 sorts before,
+   *         with or after name2
+   */
+  public static int compareNames(String name1, String name2) {
+    return name1.compareToIgnoreCase(name2);
+  }
+
   /**
    * Sorts an array of files alphabetically by name, ignoring case.
    *
@@ -14,9 +42,18 @@ public class AlphabeticalFileSorter {
    * @return the sorted array of files
    */
   public static File[] sort(File[] files) {
-    // This uses lambdas, which we haven't yet covered
-    // Look at it with curiosity, but you don't need to edit anything here
-    Arrays.sort(files, (f1, f2) -> f1.getName().compareToIgnoreCase(f2.getName()));
+    Arrays.sort(files, BY_NAME);
     return files;
   }
+
+  /**
+   * Sorts an array of names the same way, ignoring case.
+   *
+   * @param names the array of names to be sorted
+   * @return the sorted array of names
+   */
+  public static String[] sort(String[] names) {
+    Arrays.sort(names, String.CASE_INSENSITIVE_ORDER);
+    return names;
+  }
 }
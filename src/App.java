@@ -1,4 +1,15 @@
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class App {
   
@@ -15,14 +26,29 @@ public class App {
    * 
    * Usage Example:
    * 
-   * Arguments Format: [-h] [-nc] path
+   * Arguments Format: [flags] [settings] path
    * 
    * Flags:
    * - -h   : Show hidden files (defaults to false).
    * - -nc  : Do not use color (color is enabled by default).
    * 
+   * See TruffulaOptions for the long flags and --key=value settings.
+   * 
+   * Checkpoints:
+   * - ['--output=tree.txt', '--checkpoint=tree.ckpt', '/srv/data']
+   *    → Write the tree to tree.txt, saving the walk's position every few seconds.
+   * - ['--output=tree.txt', '--checkpoint=tree.ckpt', '--resume', '/srv/data']
+   *    → After a crash or Ctrl-C, carry on appending to tree.txt (see CheckpointPrinter).
+   * 
+   * Large Dumps:
+   * - ['--output=tree.txt', '--mmap', '/srv/data']
+   *    → Write tree.txt through a memory-mapped region (see MappedOutputStream).
+   * 
    * Path:
    * - The absolute or relative path to the directory whose contents will be printed.
+   * - Several paths print one tree each, in argument order. With --threads=N the
+   *   trees are walked concurrently, and roots that overlap are walked only once
+   *   (see BatchPrinter).
    * 
    * Behavior:
    * - If color is disabled, all text will be printed in white.
@@ -41,41 +67,107 @@ public class App {
    *    → Use color, don't show hidden files.
    * 
    * Error messages will be shown for illegal arguments or a not found file
+   * 
+   * Daemon Mode:
+   * 
+   * --daemon socket root [root ...]
+   *    → Index the roots, keep the index current while the files change and answer
+   *      queries on the Unix domain socket (see TruffulaDaemon for the protocol).
+   * 
+   * --client socket COMMAND [args ...]
+   *    → Send one query to a running daemon and print the answer, for example
+   *      --client /tmp/truffula.sock PRINT -nc /srv/data
    */
   public static void main(String[] args) throws Exception {
-    // TODO: Implement this
-    // You should create a TruffulaOptions object using the args and
-    // pass it to a new TruffulaPrinter that uses System.out
-    // Then, call printTree on the TruffulaPrinter
-
-
-  //file directory and connention
-    File directory = new File("path/to/directory", "subfolder");
-    directory.mkdir();
-    String directoryPath = directory.getAbsolutePath();
-
-
-  //truffula obj with all params
-    String[] truffStrings = {"-nc", "-h", directoryPath};
-
-    TruffulaOptions options = new TruffulaOptions(truffStrings);
-    TruffulaPrinter tPrinter = new TruffulaPrinter(options);
-    tPrinter.printTree();
+    if (args.length > 0 && args[0].equals("--daemon")) {
+      runDaemon(args);
+      return;
+    }
+    if (args.length > 0 && args[0].equals("--client")) {
+      System.exit(runClient(args));
+    }
 
+    try {
+      TruffulaOptions options = new TruffulaOptions(args);
+      if (options.getCheckpoint() != null) {
+        new CheckpointPrinter(options).print();
+        return;
+      }
+      if (options.isMmap()) {
+        printMapped(options);
+        return;
+      }
+      //one large buffer instead of a flush per line; printTree flushes at the end
+      FileOutputStream target = options.getOutput() == null
+          ? new FileOutputStream(FileDescriptor.out) : new FileOutputStream(options.getOutput());
+      PrintStream out = new PrintStream(new BufferedOutputStream(target, options.getBufferSize()), false);
+      new BatchPrinter(options, out).printAll();
+      if (options.getOutput() != null) {
+        out.close();
+      }
+    } catch (IllegalArgumentException | FileNotFoundException e) {
+      System.err.println("truffula: " + e.getMessage());
+      System.exit(1);
+    }
+  }
 
-  //truffula obj with all params but swapped
-    String[] truffStringsSwapped = {"-h", "-nc", directoryPath};
-
-    TruffulaOptions optionsSwapped = new TruffulaOptions(truffStringsSwapped);
-    TruffulaPrinter tPrinterSwapped = new TruffulaPrinter(optionsSwapped);
-    tPrinterSwapped.printTree();
-
+  /**
+   * Writes the output file through a memory-mapped region. A single text tree
+   * is encoded straight into the mapping; anything else goes through a UTF-8
+   * PrintStream over it.
+   */
+  private static void printMapped(TruffulaOptions options) throws IOException {
+    try (MappedOutputStream file = new MappedOutputStream(options.getOutput())) {
+      if (options.getRoots().size() == 1 && options.getFormat() == TruffulaOptions.Format.TEXT) {
+        new TruffulaPrinter(options, new MappedColorPrinter(file)).printTree();
+      } else {
+        PrintStream out = new PrintStream(file, false, StandardCharsets.UTF_8);
+        new BatchPrinter(options, out).printAll();
+        out.flush();
+      }
+    }
+  }
 
-  //truffula obj with one param
-    String[] truffStringsOneParam = {directoryPath};
+  /**
+   * Runs a TruffulaDaemon until the process is stopped.
+   * Arguments: --daemon socket root [root ...]
+   */
+  private static void runDaemon(String[] args) throws Exception {
+    if (args.length < 3) {
+      System.err.println("truffula: usage: --daemon socket root [root ...]");
+      System.exit(1);
+    }
+    List<File> roots = new ArrayList<>();
+    for (int i = 2; i < args.length; i++) {
+      File root = new File(args[i]);
+      if (!root.isDirectory()) {
+        System.err.println("truffula: file not found: " + args[i]);
+        System.exit(1);
+      }
+      roots.add(root);
+    }
+    TruffulaDaemon daemon = new TruffulaDaemon(Path.of(args[1]), roots);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        daemon.close();
+      } catch (IOException e) {
+        // exiting anyway
+      }
+    }));
+    daemon.start();
+    daemon.awaitTermination();
+  }
 
-    TruffulaOptions optionsOneParam = new TruffulaOptions(truffStringsOneParam);
-    TruffulaPrinter tPrinterOneParam = new TruffulaPrinter(optionsOneParam);
-    tPrinterOneParam.printTree();
+  /**
+   * Sends one query to a running daemon and returns the exit status.
+   * Arguments: --client socket COMMAND [args ...]
+   */
+  private static int runClient(String[] args) throws IOException {
+    if (args.length < 3) {
+      System.err.println("truffula: usage: --client socket COMMAND [args ...]");
+      return 1;
+    }
+    String request = String.join(" ", Arrays.copyOfRange(args, 2, args.length));
+    return TruffulaClient.query(Path.of(args[1]), request, System.out, System.err);
   }
 }
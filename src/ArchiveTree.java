@@ -0,0 +1,385 @@
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The entries of a ZIP, JAR or TAR archive arranged as a directory tree, so an
+ * archive can be printed like a directory without extracting it.
+ *
+ * Archives are read in a single pass and nothing is written to disk:
+ * - ZIP and JAR files are read from their central directory at the end of the
+ *   file, so none of the entries are decompressed.
+ * - TAR files are read header by header, skipping over the contents of each
+ *   entry. Plain TAR files skip by seeking; gzipped ones (.tar.gz, .tgz) must be
+ *   decompressed as they are read, but are still never held in memory.
+ *
+ * Directories that only appear as part of an entry's path, such as "a/" for an
+ * archive holding just "a/b.txt", are added too. Children are sorted with the
+ * same rules as AlphabeticalFileSorter, and names starting with a dot are
+ * treated as hidden.
+ *
+ * Example Usage:
+ *
+ * ArchiveTree tree = ArchiveTree.read(new File("release.tar.gz"));
+ * for (ArchiveTree.Node child : tree.getRoot().getChildren()) {
+ *   System.out.println(child.getName());
+ * }
+ */
+public class ArchiveTree {
+
+  private static final String[] SUFFIXES = {".zip", ".jar", ".war", ".ear", ".tar", ".tar.gz", ".tgz"};
+
+  private static final int BLOCK = 512;
+
+  /**
+   * Orders nodes by name the same way AlphabeticalFileSorter orders files.
+   */
+  private static final Comparator<Node> BY_NAME = new Comparator<Node>() {
+    @Override
+    public int compare(Node n1, Node n2) {
+      return AlphabeticalFileSorter.compareNames(n1.name, n2.name);
+    }
+  };
+
+  private final Node root;
+  private int size;
+
+  private ArchiveTree(String name) {
+    this.root = new Node(name, true);
+  }
+
+  /**
+   * Indicates whether a file looks like an archive this class can read, judging
+   * by its name alone.
+   *
+   * @param file the file to check
+   * @return true if the name ends in a supported archive suffix
+   */
+  public static boolean isArchive(File file) {
+    String name = file.getName().toLowerCase();
+    for (String suffix : SUFFIXES) {
+      if (name.endsWith(suffix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads the entries of an archive.
+   *
+   * @param archive the archive to read
+   * @return the entries of the archive as a tree, with the archive as the root
+   * @throws IOException if the archive cannot be read or is not a valid archive
+   */
+  public static ArchiveTree read(File archive) throws IOException {
+    ArchiveTree tree = new ArchiveTree(archive.getName());
+    String name = archive.getName().toLowerCase();
+    if (name.endsWith(".tar")) {
+      try (InputStream in = new FileInputStream(archive)) {
+        tree.readTar(in);
+      }
+    } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+      try (InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(archive)), 1 << 16)) {
+        tree.readTar(in);
+      }
+    } else {
+      tree.readZip(archive);
+    }
+    return tree;
+  }
+
+  /**
+   * Returns the node standing for the archive itself.
+   *
+   * @return the root node
+   */
+  public Node getRoot() {
+    return root;
+  }
+
+  /**
+   * Returns the number of entries in the archive, including implied directories
+   * but not the archive itself.
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    return size;
+  }
+
+  private void readZip(File archive) throws IOException {
+    try (ZipFile zip = new ZipFile(archive)) {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        add(entry.getName(), entry.isDirectory());
+      }
+    }
+  }
+
+  private void readTar(InputStream in) throws IOException {
+    byte[] header = new byte[BLOCK];
+    String longName = null;
+    while (readBlock(in, header)) {
+      if (isZeroBlock(header)) {
+        return; //end of archive marker
+      }
+      long size = parseSize(header);
+      byte type = header[156];
+
+      if (type == 'L') {
+        //GNU long name: the data holds the name of the next entry
+        longName = cString(readData(in, size), 0, (int) size);
+        continue;
+      }
+      if (type == 'x') {
+        //pax extended header: a "path" record overrides the name of the next entry
+        String path = paxPath(readData(in, size));
+        if (path != null) {
+          longName = path;
+        }
+        continue;
+      }
+      if (type == 'g' || type == 'K') {
+        skipData(in, size);
+        continue;
+      }
+
+      String name = longName;
+      longName = null;
+      if (name == null) {
+        name = cString(header, 0, 100);
+        String prefix = isUstar(header) ? cString(header, 345, 155) : "";
+        if (!prefix.isEmpty()) {
+          name = prefix + "/" + name;
+        }
+      }
+      add(name, type == '5' || name.endsWith("/"));
+      skipData(in, size);
+    }
+  }
+
+  /**
+   * Adds an entry and every directory on its path.
+   */
+  private void add(String path, boolean directory) {
+    Node node = root;
+    String[] parts = path.split("/");
+    int last = parts.length - 1;
+    while (last >= 0 && (parts[last].isEmpty() || parts[last].equals("."))) {
+      last--;
+    }
+    for (int p = 0; p <= last; p++) {
+      String part = parts[p];
+      if (part.isEmpty() || part.equals(".")) {
+        continue;
+      }
+      boolean isDirectory = p < last || directory;
+      Node child = node.children == null ? null : node.children.get(part);
+      if (child == null) {
+        child = new Node(part, isDirectory);
+        node.addChild(child);
+        size++;
+      } else if (isDirectory) {
+        child.directory = true;
+      }
+      node = child;
+    }
+  }
+
+  private static boolean readBlock(InputStream in, byte[] block) throws IOException {
+    int read = 0;
+    while (read < block.length) {
+      int n = in.read(block, read, block.length - read);
+      if (n < 0) {
+        if (read == 0) {
+          return false;
+        }
+        throw new EOFException("truncated tar header");
+      }
+      read += n;
+    }
+    return true;
+  }
+
+  private static byte[] readData(InputStream in, long size) throws IOException {
+    if (size > Integer.MAX_VALUE - BLOCK) {
+      throw new IOException("tar header too large: " + size);
+    }
+    byte[] data = new byte[(int) padded(size)];
+    if (data.length > 0 && !readBlock(in, data)) {
+      throw new EOFException("truncated tar header");
+    }
+    return data;
+  }
+
+  private static void skipData(InputStream in, long size) throws IOException {
+    long remaining = padded(size);
+    while (remaining > 0) {
+      long skipped = in.skip(remaining);
+      if (skipped <= 0) {
+        //skip may stop early without being at the end; a read tells the two apart
+        if (in.read() < 0) {
+          throw new EOFException("truncated tar entry");
+        }
+        skipped = 1;
+      }
+      remaining -= skipped;
+    }
+  }
+
+  private static long padded(long size) {
+    return (size + BLOCK - 1) / BLOCK * BLOCK;
+  }
+
+  private static boolean isZeroBlock(byte[] block) {
+    for (byte b : block) {
+      if (b != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isUstar(byte[] header) {
+    return header[257] == 'u' && header[258] == 's' && header[259] == 't'
+        && header[260] == 'a' && header[261] == 'r';
+  }
+
+  /**
+   * Parses the size field, which is octal text or, for very large entries,
+   * a base-256 number marked by the high bit of its first byte.
+   */
+  private static long parseSize(byte[] header) throws IOException {
+    if ((header[124] & 0x80) != 0) {
+      long size = 0;
+      for (int i = 125; i < 136; i++) {
+        size = (size << 8) | (header[i] & 0xff);
+      }
+      return size;
+    }
+    long size = 0;
+    for (int i = 124; i < 136; i++) {
+      byte b = header[i];
+      if (b == 0 || b == ' ') {
+        if (size > 0) {
+          break;
+        }
+        continue;
+      }
+      if (b < '0' || b > '7') {
+        throw new IOException("not a tar archive");
+      }
+      size = size * 8 + (b - '0');
+    }
+    return size;
+  }
+
+  private static String cString(byte[] bytes, int offset, int length) {
+    int end = offset;
+    while (end < offset + length && bytes[end] != 0) {
+      end++;
+    }
+    return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Finds the "path" record in a pax header made of "length key=value\n" records.
+   */
+  private static String paxPath(byte[] data) {
+    String path = null;
+    int pos = 0;
+    while (pos < data.length && data[pos] != 0) {
+      int space = pos;
+      while (space < data.length && data[space] != ' ') {
+        space++;
+      }
+      int length;
+      try {
+        length = Integer.parseInt(new String(data, pos, space - pos, StandardCharsets.UTF_8));
+      } catch (NumberFormatException e) {
+        return path;
+      }
+      if (length <= 0 || pos + length > data.length) {
+        return path;
+      }
+      String record = new String(data, space + 1, pos + length - space - 2, StandardCharsets.UTF_8);
+      if (record.startsWith("path=")) {
+        path = record.substring(5);
+      }
+      pos += length;
+    }
+    return path;
+  }
+
+  /**
+   * An entry in the archive.
+   */
+  public static class Node {
+    private final String name;
+    private boolean directory;
+    private Map<String, Node> children;
+    private Node[] sorted;
+
+    private Node(String name, boolean directory) {
+      this.name = name;
+      this.directory = directory;
+    }
+
+    private void addChild(Node child) {
+      if (children == null) {
+        children = new HashMap<>();
+      }
+      children.put(child.name, child);
+      sorted = null;
+    }
+
+    /**
+     * @return the name of the entry, without its path
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return true if the entry is a directory
+     */
+    public boolean isDirectory() {
+      return directory;
+    }
+
+    /**
+     * @return true if the name of the entry starts with a dot
+     */
+    public boolean isHidden() {
+      return name.startsWith(".");
+    }
+
+    /**
+     * Returns the entries directly inside this one, sorted by name. The array
+     * is shared and must not be changed.
+     *
+     * @return the sorted children; empty for a file
+     */
+    public synchronized Node[] getChildren() {
+      if (sorted == null) {
+        sorted = children == null ? new Node[0] : children.values().toArray(new Node[0]);
+        Arrays.sort(sorted, BY_NAME);
+      }
+      return sorted;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ArchiveTreeTest {
+
+  private static void writeZip(File zip, String... names) throws IOException {
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+      for (String name : names) {
+        out.putNextEntry(new ZipEntry(name));
+        if (!name.endsWith("/")) {
+          out.write(name.getBytes(StandardCharsets.UTF_8));
+        }
+        out.closeEntry();
+      }
+    }
+  }
+
+  /**
+   * Writes a minimal ustar entry: a header block followed by the padded contents.
+   */
+  private static void writeTarEntry(OutputStream out, String name, byte[] contents) throws IOException {
+    byte[] header = new byte[512];
+    byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+    System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+    byte[] size = String.format("%011o", contents.length).getBytes(StandardCharsets.US_ASCII);
+    System.arraycopy(size, 0, header, 124, size.length);
+    header[156] = (byte) (name.endsWith("/") ? '5' : '0');
+    System.arraycopy("ustar".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 5);
+    out.write(header);
+    out.write(contents);
+    out.write(new byte[(512 - contents.length % 512) % 512]);
+  }
+
+  private static List<String> names(ArchiveTree.Node node, int depth) {
+    List<String> names = new ArrayList<>();
+    for (ArchiveTree.Node child : node.getChildren()) {
+      names.add(depth + ":" + child.getName() + (child.isDirectory() ? "/" : ""));
+      names.addAll(names(child, depth + 1));
+    }
+    return names;
+  }
+
+  @Test
+  void testZipEntriesWithImpliedDirectories(@TempDir File tempDir) throws IOException {
+    // Arrange: "lib/" is never stored on its own
+    File zip = new File(tempDir, "release.zip");
+    writeZip(zip, "README.md", "lib/b.jar", "lib/A.jar", "docs/", ".env");
+
+    // Act
+    ArchiveTree tree = ArchiveTree.read(zip);
+
+    // Assert: sorted case-insensitively like AlphabeticalFileSorter
+    assertEquals(List.of("1:.env", "1:docs/", "1:lib/", "2:A.jar", "2:b.jar", "1:README.md"),
+        names(tree.getRoot(), 1));
+    assertEquals(6, tree.size());
+  }
+
+  @Test
+  void testGzippedTarSkipsContents(@TempDir File tempDir) throws IOException {
+    // Arrange: a large entry that must be skipped rather than read as headers
+    File tar = new File(tempDir, "release.tar.gz");
+    try (OutputStream out = new GZIPOutputStream(new FileOutputStream(tar))) {
+      writeTarEntry(out, "pkg/", new byte[0]);
+      writeTarEntry(out, "pkg/data.bin", new byte[5000]);
+      writeTarEntry(out, "pkg/bin/run", "#!/bin/sh".getBytes(StandardCharsets.UTF_8));
+      out.write(new byte[1024]);
+    }
+
+    // Act
+    ArchiveTree tree = ArchiveTree.read(tar);
+
+    // Assert
+    assertEquals(List.of("1:pkg/", "2:bin/", "3:run", "2:data.bin"), names(tree.getRoot(), 1));
+  }
+
+  @Test
+  void testWalkerShowsArchivesAsDirectories(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = new File(tempDir, "root");
+    root.mkdir();
+    writeZip(new File(root, "app.jar"), "META-INF/MANIFEST.MF", ".hidden");
+    new File(root, "notes.txt").createNewFile();
+
+    // Act
+    List<String> withArchives = new TreeWalker(root, false, -1, null, true).stream()
+        .map(e -> e.getDepth() + ":" + e.getName() + (e.isDirectory() ? "/" : ""))
+        .collect(Collectors.toList());
+    List<String> withoutArchives = new TreeWalker(root, false).stream()
+        .map(e -> e.getDepth() + ":" + e.getName())
+        .collect(Collectors.toList());
+
+    // Assert: entries are nested below the archive, hidden ones skipped
+    assertEquals(List.of("0:root/", "1:app.jar/", "2:META-INF/", "3:MANIFEST.MF", "1:notes.txt"), withArchives);
+    assertEquals(List.of("0:root", "1:app.jar", "1:notes.txt"), withoutArchives);
+    assertTrue(ArchiveTree.isArchive(new File("x.TAR.GZ")));
+    assertFalse(ArchiveTree.isArchive(new File("x.gz")));
+  }
+}
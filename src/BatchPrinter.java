@@ -0,0 +1,361 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Prints the trees of several roots in one run, one block per root, in the order
+ * the roots were given.
+ *
+ * Roots that overlap are walked only once: when one root is the same directory
+ * as another or lies below it, the outer root is walked into a CompactTree deep
+ * enough for every root inside it, and each of those roots is printed from its
+ * node of that tree. Symbolic links are resolved first, so two spellings of the
+ * same directory count as the same root. Each root is still printed under the
+ * name it was given and hidden or shown by its own name, the same as when it is
+ * printed on its own.
+ *
+ * When the options ask for more than one thread, the groups are walked and
+ * rendered concurrently on one shared pool, and an OrderedEmitter writes their
+ * output to one ColorPrinter in argument order, so the output is the same as
+ * printing the roots one after the other. The root the output is waiting on is
+ * written straight through; later roots are held in memory up to the hold limit
+ * in the options. Past the limit, a group does not start its next root until
+ * the output reaches it; a root already being rendered is finished. With a
+ * single thread every root is printed straight to the output stream. Limits on
+ * metadata operations hold for the run as a whole: every group takes from the
+ * same Throttle, and its waits are recorded in the metrics of the walk that
+ * waited.
+ *
+ * The pool only spreads roots over threads. A root printed with the parallel or
+ * adaptive engine still walks on a pool of that engine's own.
+ *
+ * An HTML page is written by HtmlTreePrinter, one tree after the other.
+ *
+ * A --find or --summarize run walks each root on its own, one after the other,
+ * and the --max-matches limit applies to each root.
+ *
+ * Example Usage:
+ *
+ * TruffulaOptions options = new TruffulaOptions(new String[] {"-t", "4", "/srv/a", "/srv/b"});
+ * new BatchPrinter(options, System.out).printAll();
+ */
+public class BatchPrinter {
+
+  /**
+   * How much a root renders before handing its buffer to the emitter.
+   */
+  private static final int CHUNK_SIZE = 16 * 1024;
+
+  private final TruffulaOptions options;
+  private final PrintStream out;
+  private final Throttle throttle;
+
+  /**
+   * Constructs a BatchPrinter.
+   *
+   * @param options the options to print with; every root in them is printed
+   * @param out     the stream every block is written to
+   */
+  public BatchPrinter(TruffulaOptions options, PrintStream out) {
+    this.options = options;
+    this.out = out;
+    this.throttle = Throttle.forOptions(options, null);
+  }
+
+  /**
+   * Prints every root, then flushes the output stream.
+   *
+   * @throws IOException if walking a root on the pool fails
+   */
+  public void printAll() throws IOException {
+    List<File> roots = options.getRoots();
+    if (options.getFormat() == TruffulaOptions.Format.HTML) {
+      new HtmlTreePrinter(options, out).print();
+      return;
+    }
+    if (roots.size() == 1) {
+      new TruffulaPrinter(options, out).printTree();
+      return;
+    }
+    if (options.getFindPatterns() != null || options.isSummarize()) {
+      //searches and summaries print few lines, so each root is walked on its own, in order
+      for (File root : roots) {
+        TruffulaPrinter printer = new TruffulaPrinter(options.toBuilder().root(root).build(), out);
+        printer.setThrottle(throttle);
+        printer.printTree();
+      }
+      return;
+    }
+
+    List<Group> groups = group(roots);
+    if (options.getThreads() == 1 || groups.size() == 1) {
+      for (int i = 0; i < roots.size(); i++) {
+        groupOf(groups, i).print(i, out);
+      }
+      out.flush();
+      return;
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(options.getThreads(), groups.size()),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "truffula-batch");
+            t.setDaemon(true);
+            return t;
+          }
+        });
+    ColorPrinter printer = new ColorPrinter(out);
+    OrderedEmitter emitter = new OrderedEmitter(printer, options.getHoldLimit(), null);
+    OrderedEmitter.Segment[] segments = new OrderedEmitter.Segment[roots.size()];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = emitter.fork(emitter.getRoot());
+    }
+    emitter.close(emitter.getRoot());
+    try {
+      for (Group group : groups) {
+        pool.execute(() -> group.render(emitter, segments, pool));
+      }
+      emitter.await();
+      printer.flush();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while printing", e);
+    } catch (IllegalStateException e) {
+      throw new IOException("failed to print a root: " + e.getCause().getMessage(), e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Splits the roots into groups whose trees overlap. Each group is led by its
+   * outermost root; when two roots are the same directory, the first one leads.
+   *
+   * @param roots the roots in argument order
+   * @return the groups, in the order of their first member
+   */
+  List<Group> group(List<File> roots) {
+    String[] paths = new String[roots.size()];
+    for (int i = 0; i < paths.length; i++) {
+      paths[i] = canonicalPath(roots.get(i));
+    }
+
+    Map<Integer, Group> byLeader = new LinkedHashMap<>();
+    for (int i = 0; i < paths.length; i++) {
+      int leader = i;
+      for (int j = 0; j < paths.length; j++) {
+        if (contains(paths[j], paths[leader]) && (paths[j].length() < paths[leader].length() || j < leader)) {
+          leader = j;
+        }
+      }
+      Group group = byLeader.get(leader);
+      if (group == null) {
+        group = new Group(paths[leader]);
+        byLeader.put(leader, group);
+      }
+      group.add(i, roots.get(i), paths[i]);
+    }
+    return new ArrayList<>(byLeader.values());
+  }
+
+  private static Group groupOf(List<Group> groups, int root) {
+    for (Group group : groups) {
+      if (group.members.contains(root)) {
+        return group;
+      }
+    }
+    throw new IllegalStateException("root " + root + " is in no group");
+  }
+
+  /**
+   * Returns true if inner is the same path as outer or lies below it.
+   */
+  private static boolean contains(String outer, String inner) {
+    if (inner.equals(outer)) {
+      return true;
+    }
+    String prefix = outer.endsWith(File.separator) ? outer : outer + File.separator;
+    return inner.startsWith(prefix);
+  }
+
+  private static String canonicalPath(File file) {
+    try {
+      return file.getCanonicalPath();
+    } catch (IOException e) {
+      return file.getAbsolutePath();
+    }
+  }
+
+  /**
+   * Roots that share one walk of the file system.
+   */
+  class Group {
+    private final String leaderPath;
+    private final List<Integer> members = new ArrayList<>();
+    private final List<File> memberRoots = new ArrayList<>();
+    private final List<String> memberPaths = new ArrayList<>();
+    private CompactTree tree;
+    private boolean walked;
+
+    private Group(String leaderPath) {
+      this.leaderPath = leaderPath;
+    }
+
+    private void add(int index, File root, String path) {
+      members.add(index);
+      memberRoots.add(root);
+      memberPaths.add(path);
+    }
+
+    /**
+     * Returns the argument positions of the roots in this group.
+     */
+    List<Integer> getMembers() {
+      return members;
+    }
+
+    /**
+     * Walks the leader deep enough for every member, or returns null when the
+     * group is a single root that can be printed straight from the disk.
+     */
+    private CompactTree walk() {
+      walked = true;
+      if (members.size() == 1) {
+        return null;
+      }
+      int depth = -1;
+      if (options.getMaxDepth() >= 0) {
+        for (String path : memberPaths) {
+          depth = Math.max(depth, levelsBelowLeader(path) + options.getMaxDepth());
+        }
+      }
+      TruffulaOptions walkOptions = options.toBuilder().root(new File(leaderPath)).maxDepth(depth).build();
+      TraversalMetrics metrics = options.isCollectMetrics() ? new TraversalMetrics() : null;
+      CompactTree shared = CompactTree.build(
+          new TreeWalker(walkOptions, metrics, throttle == null ? null : throttle.withMetrics(metrics)));
+      if (metrics != null) {
+        metrics.report(System.err);
+      }
+      return shared;
+    }
+
+    private int levelsBelowLeader(String path) {
+      if (path.length() <= leaderPath.length()) {
+        return 0;
+      }
+      int levels = 0;
+      for (int c = leaderPath.length(); c < path.length(); c++) {
+        if (path.charAt(c) == File.separatorChar) {
+          levels++;
+        }
+      }
+      return leaderPath.endsWith(File.separator) ? levels + 1 : levels;
+    }
+
+    /**
+     * Walks the group and renders its members into their segments, in order.
+     */
+    private void render(OrderedEmitter emitter, OrderedEmitter.Segment[] segments, ExecutorService pool) {
+      try {
+        tree = walk();
+      } catch (Throwable t) {
+        emitter.fail(t);
+        return;
+      }
+      render(0, emitter, segments, pool);
+    }
+
+    /**
+     * Renders the members from the given position on, and puts the rest off
+     * until the output reaches them once too much output is held back.
+     */
+    private void render(int from, OrderedEmitter emitter, OrderedEmitter.Segment[] segments, ExecutorService pool) {
+      for (int m = from; m < members.size(); m++) {
+        OrderedEmitter.Segment segment = segments[members.get(m)];
+        if (emitter.shouldDefer(segment)) {
+          int next = m;
+          //runs inside the emitter, so it only hands the rest back to the pool
+          emitter.defer(segment, () -> pool.execute(() -> render(next, emitter, segments, pool)));
+          return;
+        }
+        try {
+          PrintStream stream = new PrintStream(new SegmentStream(emitter, segment), false);
+          print(members.get(m), stream);
+          stream.flush();
+          emitter.close(segment);
+        } catch (Throwable t) {
+          emitter.fail(t);
+          return;
+        }
+      }
+    }
+
+    /**
+     * Prints one member of an already walked group.
+     */
+    private void print(int root, PrintStream stream) {
+      if (!walked) {
+        tree = walk();
+      }
+      int m = members.indexOf(root);
+      TruffulaOptions rootOptions = options.toBuilder().root(memberRoots.get(m)).build();
+      TruffulaPrinter printer = new TruffulaPrinter(rootOptions, stream);
+      printer.setThrottle(throttle);
+      int node = tree == null ? -1 : new TreeIndex(new File(leaderPath), tree).find(new File(memberPaths.get(m)));
+      if (node < 0) {
+        //a single root, or one the shared walk could not reach, such as one below a hidden directory
+        printer.printTree();
+      } else {
+        printer.printTree(tree, node, memberRoots.get(m));
+      }
+    }
+  }
+
+  /**
+   * Hands what a root prints to its segment of the output, a chunk at a time.
+   */
+  private static class SegmentStream extends OutputStream {
+    private final OrderedEmitter emitter;
+    private final OrderedEmitter.Segment segment;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(CHUNK_SIZE * 2);
+
+    private SegmentStream(OrderedEmitter emitter, OrderedEmitter.Segment segment) {
+      this.emitter = emitter;
+      this.segment = segment;
+    }
+
+    @Override
+    public void write(int b) {
+      buffer.write(b);
+      if (buffer.size() >= CHUNK_SIZE) {
+        flush();
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      buffer.write(b, off, len);
+      if (buffer.size() >= CHUNK_SIZE) {
+        flush();
+      }
+    }
+
+    @Override
+    public void flush() {
+      if (buffer.size() > 0) {
+        emitter.write(segment, buffer.toByteArray());
+        buffer.reset();
+      }
+    }
+  }
+}
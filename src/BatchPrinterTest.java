@@ -0,0 +1,174 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BatchPrinterTest {
+
+  /**
+   * Builds:
+   * root/
+   *    apple.txt
+   *    Docs/
+   *       notes.txt
+   *       Old/
+   *          draft.txt
+   *    zebra.txt
+   * other/
+   *    b.txt
+   */
+  private static File buildTree(File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    File docs = new File(root, "Docs");
+    File old = new File(docs, "Old");
+    File other = new File(tempDir, "other");
+    old.mkdirs();
+    other.mkdir();
+    new File(root, "apple.txt").createNewFile();
+    new File(root, "zebra.txt").createNewFile();
+    new File(docs, "notes.txt").createNewFile();
+    new File(old, "draft.txt").createNewFile();
+    new File(other, "b.txt").createNewFile();
+    return root;
+  }
+
+  private static String printOne(File root, int maxDepth) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(output);
+    TruffulaOptions options = TruffulaOptions.builder(root).maxDepth(maxDepth).build();
+    new TruffulaPrinter(options, out).printTree();
+    return output.toString();
+  }
+
+  private static String printBatch(List<File> roots, int threads, int maxDepth) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(output);
+    TruffulaOptions options = TruffulaOptions.builder(roots.get(0))
+        .roots(roots).threads(threads).maxDepth(maxDepth).build();
+    new BatchPrinter(options, out).printAll();
+    return output.toString();
+  }
+
+  private static String printArgs(List<String> flags, List<File> roots) throws IOException {
+    List<String> args = new ArrayList<>(flags);
+    for (File root : roots) {
+      args.add(root.getPath());
+    }
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(output);
+    new BatchPrinter(new TruffulaOptions(args.toArray(new String[0])), out).printAll();
+    return output.toString();
+  }
+
+  @Test
+  void testOverlappingRootsShareOneWalk(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = buildTree(tempDir);
+    File docs = new File(root, "Docs");
+    File other = new File(tempDir, "other");
+    List<File> roots = List.of(docs, other, root, new File(root, "."));
+    TruffulaOptions options = TruffulaOptions.builder(root).roots(roots).build();
+
+    // Act
+    List<BatchPrinter.Group> groups = new BatchPrinter(options, System.out).group(roots);
+
+    // Assert: Docs and both spellings of root are one group, other is its own
+    assertEquals(2, groups.size());
+    assertEquals(List.of(0, 2, 3), groups.get(0).getMembers());
+    assertEquals(List.of(1), groups.get(1).getMembers());
+  }
+
+  @Test
+  void testBatchMatchesPrintingEachRoot(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = buildTree(tempDir);
+    File docs = new File(root, "Docs");
+    File other = new File(tempDir, "other");
+    List<File> roots = List.of(docs, other, root, root);
+
+    for (int maxDepth : new int[] {-1, 1}) {
+      String expected = printOne(docs, maxDepth) + printOne(other, maxDepth)
+          + printOne(root, maxDepth) + printOne(root, maxDepth);
+
+      // Act & Assert: the same output on one thread and on a pool
+      assertEquals(expected, printBatch(roots, 1, maxDepth));
+      assertEquals(expected, printBatch(roots, 4, maxDepth));
+    }
+  }
+
+  @Test
+  void testBatchPastTheHoldLimitKeepsItsOrder(@TempDir File tempDir) throws IOException {
+    // Arrange: more roots than threads, and nothing may be held back
+    File root = buildTree(tempDir);
+    File docs = new File(root, "Docs");
+    File other = new File(tempDir, "other");
+    List<File> roots = List.of(other, docs, root, other, docs);
+    StringBuilder expected = new StringBuilder();
+    for (File each : roots) {
+      expected.append(printOne(each, -1));
+    }
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    TruffulaOptions options = TruffulaOptions.builder(root).roots(roots).threads(2).holdLimit(0).build();
+
+    // Act
+    new BatchPrinter(options, new PrintStream(output)).printAll();
+
+    // Assert
+    assertEquals(expected.toString(), output.toString());
+  }
+
+  @Test
+  void testGroupedRootsKeepTheirOwnNames(@TempDir File tempDir) throws IOException {
+    // Arrange: a link to root and a "root/." spelling share the walk of root
+    File root = buildTree(tempDir);
+    File link = new File(tempDir, "link");
+    Files.createSymbolicLink(link.toPath(), root.toPath());
+    List<File> roots = List.of(root, link, new File(link, "Docs"), new File(root, "."));
+
+    for (List<String> flags : List.of(List.of("-nc"), List.of("-nc", "-h"), List.of("-nc", "-t", "4"))) {
+      StringBuilder expected = new StringBuilder();
+      for (File one : roots) {
+        expected.append(printArgs(flags, List.of(one)));
+      }
+
+      // Act & Assert: each root prints under its own name, "." only with -h
+      assertEquals(expected.toString(), printArgs(flags, roots), "flags " + flags);
+    }
+  }
+
+  @Test
+  void testGroupedRootsKeepLongListingColumns(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = buildTree(tempDir);
+    File link = new File(tempDir, "link");
+    Files.createSymbolicLink(link.toPath(), root.toPath());
+    List<File> roots = List.of(root, new File(root, "Docs"), link);
+
+    for (List<String> flags : List.of(List.of("-nc", "-l"), List.of("-nc", "-l", "-t", "4"))) {
+      StringBuilder expected = new StringBuilder();
+      for (File one : roots) {
+        expected.append(printArgs(flags, List.of(one)));
+      }
+
+      // Act
+      String batch = printArgs(flags, roots);
+
+      // Assert: every line of the shared walk has its columns, the link its own
+      assertEquals(expected.toString(), batch, "flags " + flags);
+      assertTrue(batch.contains("draft.txt"));
+      String plain = batch.replace(ConsoleColor.WHITE.toString(), "").replace(ConsoleColor.RESET.toString(), "");
+      for (String line : plain.split(System.lineSeparator())) {
+        assertTrue(line.matches("[-dl?][-rwx?]{9} .*"), line);
+      }
+    }
+  }
+}
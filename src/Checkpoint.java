@@ -0,0 +1,186 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The position of an interrupted walk, saved so a later run can carry on where
+ * it stopped instead of starting again.
+ *
+ * A checkpoint holds the path from the root to the last entry that was printed,
+ * one level per directory on the walk's stack: the entry's position among its
+ * sorted siblings and its name. It also holds how many bytes of output had been
+ * written at that point, whether the walk was about to descend into the last
+ * entry, and a fingerprint of the options that shape the output, so a resume
+ * with different options is refused rather than producing a mixed tree.
+ *
+ * Checkpoints are written to a temporary file next to the target and renamed
+ * over it, so a crash while saving leaves the previous checkpoint intact.
+ *
+ * File format, big-endian (DataOutputStream):
+ *
+ * int     MAGIC
+ * UTF     options fingerprint
+ * long    output offset
+ * boolean descend into the last entry
+ * int     number of levels
+ * per level: int position, UTF name
+ */
+public class Checkpoint {
+
+  private static final int MAGIC = 0x54524331; // "TRC1"
+
+  private final String fingerprint;
+  private final long outputOffset;
+  private final boolean descend;
+  private final int[] positions;
+  private final String[] names;
+
+  /**
+   * Constructs a Checkpoint.
+   *
+   * @param fingerprint  the fingerprint of the options the walk was printed with
+   * @param outputOffset the number of bytes of output written up to the last entry
+   * @param descend      whether the walk was about to read the children of the last entry
+   * @param positions    the position of each entry on the path among its siblings, root's child first
+   * @param names        the name of each entry on the path, root's child first
+   */
+  public Checkpoint(String fingerprint, long outputOffset, boolean descend, int[] positions, String[] names) {
+    this.fingerprint = fingerprint;
+    this.outputOffset = outputOffset;
+    this.descend = descend;
+    this.positions = positions;
+    this.names = names;
+  }
+
+  /**
+   * Returns the fingerprint of the options that shape the printed tree: the
+   * root, the hidden file, color, long listing, depth and sort settings.
+   *
+   * @param options the options to fingerprint
+   * @return a string that differs whenever the output would differ
+   */
+  public static String fingerprint(TruffulaOptions options) {
+    return options.getRoot().getAbsolutePath() + "|" + options.isShowHidden() + "|" + options.isUseColor()
+        + "|" + options.isLongListing() + "|" + options.getMaxDepth() + "|" + options.getSortOrder()
+        + "|" + options.getFormat();
+  }
+
+  /**
+   * @return the fingerprint of the options the walk was printed with
+   */
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * @return the number of bytes of output written up to and including the last entry
+   */
+  public long getOutputOffset() {
+    return outputOffset;
+  }
+
+  /**
+   * @return true if the children of the last entry were still to be read
+   */
+  public boolean isDescend() {
+    return descend;
+  }
+
+  /**
+   * Returns the number of levels below the root on the saved path. Zero means
+   * only the root had been printed.
+   *
+   * @return the number of levels
+   */
+  public int getLevels() {
+    return names.length;
+  }
+
+  /**
+   * @param level the level, 0 for a child of the root
+   * @return the position of the entry at that level among its sorted siblings
+   */
+  public int getPosition(int level) {
+    return positions[level];
+  }
+
+  /**
+   * @param level the level, 0 for a child of the root
+   * @return the name of the entry at that level
+   */
+  public String getName(int level) {
+    return names[level];
+  }
+
+  /**
+   * Saves the checkpoint to a file, replacing any earlier checkpoint there in
+   * a single rename.
+   *
+   * @param file the file to save to
+   * @throws IOException if the checkpoint cannot be written
+   */
+  public void write(File file) throws IOException {
+    File temp = new File(file.getPath() + ".tmp");
+    FileOutputStream stream = new FileOutputStream(temp);
+    try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(stream))) {
+      data.writeInt(MAGIC);
+      data.writeUTF(fingerprint);
+      data.writeLong(outputOffset);
+      data.writeBoolean(descend);
+      data.writeInt(names.length);
+      for (int i = 0; i < names.length; i++) {
+        data.writeInt(positions[i]);
+        data.writeUTF(names[i]);
+      }
+      data.flush();
+      stream.getFD().sync();
+    }
+    try {
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Reads a checkpoint saved by write.
+   *
+   * @param file the file to read
+   * @return the checkpoint
+   * @throws IOException if the file cannot be read or is not a checkpoint
+   */
+  public static Checkpoint read(File file) throws IOException {
+    try (DataInputStream data = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (data.readInt() != MAGIC) {
+        throw new IOException("not a checkpoint: " + file);
+      }
+      String fingerprint = data.readUTF();
+      long outputOffset = data.readLong();
+      boolean descend = data.readBoolean();
+      int levels = data.readInt();
+      if (levels < 0 || outputOffset < 0) {
+        throw new IOException("corrupt checkpoint: " + file);
+      }
+      int[] positions = new int[levels];
+      String[] names = new String[levels];
+      for (int i = 0; i < levels; i++) {
+        positions[i] = data.readInt();
+        names[i] = data.readUTF();
+      }
+      return new Checkpoint(fingerprint, outputOffset, descend, positions, names);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "Checkpoint [offset=" + outputOffset + ", levels=" + names.length + ", descend=" + descend + "]";
+  }
+}
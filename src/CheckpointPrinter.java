@@ -0,0 +1,132 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+
+/**
+ * Prints a tree to an output file while saving the walk's position every few
+ * seconds, so a run that crashes or is stopped can be resumed instead of
+ * starting again from the root.
+ *
+ * Before each checkpoint the output is flushed and synced, so the checkpoint
+ * never points past what is on disk. On resume, output written after the last
+ * checkpoint is cut off, the walk is rebuilt from the saved path (see
+ * TreeWalker.traversal(Checkpoint)) and printing carries on by appending. The
+ * finished file is the same as the output of an uninterrupted run, and the
+ * checkpoint is deleted once the walk completes.
+ *
+ * The walk runs on a single thread whatever the engine setting, since a
+ * checkpoint is one position in tree order.
+ *
+ * Example Usage:
+ *
+ * TruffulaOptions options = new TruffulaOptions(new String[] {"--output=tree.txt", "--resume", "/srv/data"});
+ * new CheckpointPrinter(options).print();
+ */
+public class CheckpointPrinter {
+
+  /**
+   * Time between checkpoints.
+   */
+  static final long DEFAULT_INTERVAL_MILLIS = 5000;
+
+  private final TruffulaOptions options;
+  private final File checkpointFile;
+  private final long intervalMillis;
+
+  /**
+   * Constructs a CheckpointPrinter that saves a checkpoint every few seconds.
+   *
+   * @param options the options to print with; they must name an output file and a checkpoint
+   */
+  public CheckpointPrinter(TruffulaOptions options) {
+    this(options, DEFAULT_INTERVAL_MILLIS);
+  }
+
+  /**
+   * Constructs a CheckpointPrinter.
+   *
+   * @param options        the options to print with
+   * @param intervalMillis the time between checkpoints, 0 for one after every entry
+   */
+  CheckpointPrinter(TruffulaOptions options, long intervalMillis) {
+    if (options.getOutput() == null || options.getCheckpoint() == null) {
+      throw new IllegalArgumentException("checkpoints need an output file");
+    }
+    this.options = options;
+    this.checkpointFile = options.getCheckpoint();
+    this.intervalMillis = intervalMillis;
+  }
+
+  /**
+   * Prints the tree, resuming from the checkpoint if the options ask for it and
+   * one exists, and deletes the checkpoint when done.
+   *
+   * @throws IOException if the output or the checkpoint cannot be written
+   * @throws IllegalArgumentException if the checkpoint was saved with different options
+   */
+  public void print() throws IOException {
+    print(Long.MAX_VALUE);
+  }
+
+  /**
+   * Prints at most the given number of entries, then stops as if the run had
+   * been killed, leaving the last checkpoint in place.
+   *
+   * @param limit the most entries to print
+   * @return true if the walk completed
+   */
+  boolean print(long limit) throws IOException {
+    File output = options.getOutput();
+    String fingerprint = Checkpoint.fingerprint(options);
+    Checkpoint resumeFrom = null;
+    if (options.isResume() && checkpointFile.isFile()) {
+      resumeFrom = Checkpoint.read(checkpointFile);
+      if (!resumeFrom.getFingerprint().equals(fingerprint)) {
+        throw new IllegalArgumentException("checkpoint was saved with different options: " + checkpointFile);
+      }
+      if (output.length() < resumeFrom.getOutputOffset()) {
+        throw new IOException("output is shorter than its checkpoint: " + output);
+      }
+      //drop whatever was written after the checkpoint
+      try (RandomAccessFile file = new RandomAccessFile(output, "rw")) {
+        file.setLength(resumeFrom.getOutputOffset());
+      }
+    }
+
+    TraversalMetrics metrics = options.isCollectMetrics() ? new TraversalMetrics() : null;
+    Throttle throttle = Throttle.forOptions(options, metrics);
+    TreeWalker walker = new TreeWalker(options, metrics, throttle);
+    TreeWalker.Traversal traversal = resumeFrom == null ? walker.traversal() : walker.traversal(resumeFrom);
+    FileOutputStream file = new FileOutputStream(output, resumeFrom != null);
+    try (PrintStream stream = new PrintStream(new BufferedOutputStream(file, options.getBufferSize()), false)) {
+      TruffulaPrinter printer = new TruffulaPrinter(options, stream);
+      printer.setMetrics(metrics);
+      printer.setThrottle(throttle);
+      long lastCheckpoint = System.currentTimeMillis();
+      long printed = 0;
+      while (traversal.hasNext()) {
+        if (printed == limit) {
+          return false;
+        }
+        printer.printEntry(traversal.next());
+        printed++;
+        long now = System.currentTimeMillis();
+        if (now - lastCheckpoint >= intervalMillis) {
+          printer.flush();
+          file.getFD().sync();
+          traversal.checkpoint(fingerprint, output.length()).write(checkpointFile);
+          lastCheckpoint = now;
+        }
+      }
+      printer.flush();
+    }
+    checkpointFile.delete();
+    if (metrics != null) {
+      metrics.report(System.err);
+    }
+    return true;
+  }
+}
@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CheckpointPrinterTest {
+
+  /**
+   * Builds a tree of 3 directories with 2 subdirectories of 3 files each, plus
+   * a file and an empty directory at the top.
+   */
+  private static File buildTree(File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    for (int d = 0; d < 3; d++) {
+      for (int s = 0; s < 2; s++) {
+        File sub = new File(root, "dir" + d + "/sub" + s);
+        sub.mkdirs();
+        for (int f = 0; f < 3; f++) {
+          new File(sub, "file" + f + ".txt").createNewFile();
+        }
+      }
+    }
+    new File(root, "top.txt").createNewFile();
+    new File(root, "empty").mkdir();
+    return root;
+  }
+
+  private static String printUninterrupted(File root) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new TruffulaPrinter(TruffulaOptions.builder(root).build(), new PrintStream(output)).printTree();
+    return output.toString();
+  }
+
+  @Test
+  void testResumeGivesSameOutputAsOneRun(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = buildTree(tempDir);
+    String expected = printUninterrupted(root);
+    File output = new File(tempDir, "tree.txt");
+    File checkpoint = new File(tempDir, "tree.ckpt");
+    TruffulaOptions options = TruffulaOptions.builder(root).output(output).checkpoint(checkpoint).build();
+    TruffulaOptions resume = options.toBuilder().resume(true).build();
+
+    long entries = new TreeWalker(root, false).stream().count();
+
+    for (int stopAfter = 1; stopAfter < entries; stopAfter++) {
+      // Act: stop after some entries, then resume, possibly stopping again
+      assertFalse(new CheckpointPrinter(options, 0).print(stopAfter));
+      new CheckpointPrinter(resume, 0).print(3);
+      boolean done = new CheckpointPrinter(resume, 0).print(Long.MAX_VALUE);
+
+      // Assert
+      assertTrue(done);
+      assertEquals(expected, Files.readString(output.toPath()), "stopped after " + stopAfter);
+      assertFalse(checkpoint.exists());
+    }
+  }
+
+  @Test
+  void testResumeCutsOffOutputAfterCheckpoint(@TempDir File tempDir) throws IOException {
+    // Arrange: the last checkpoint is older than the output
+    File root = buildTree(tempDir);
+    File output = new File(tempDir, "tree.txt");
+    TruffulaOptions options = TruffulaOptions.builder(root).output(output).resume(true).build();
+    new CheckpointPrinter(options, Long.MAX_VALUE).print(10);
+    new CheckpointPrinter(options, 0).print(5);
+    Files.writeString(output.toPath(), "partial line", java.nio.file.StandardOpenOption.APPEND);
+
+    // Act
+    new CheckpointPrinter(options, Long.MAX_VALUE).print();
+
+    // Assert
+    assertEquals(printUninterrupted(root), Files.readString(output.toPath()));
+    assertEquals(new File(tempDir, "tree.txt.checkpoint"), options.getCheckpoint());
+  }
+
+  @Test
+  void testResumeWithOtherOptionsIsRefused(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = buildTree(tempDir);
+    File output = new File(tempDir, "tree.txt");
+    TruffulaOptions options = TruffulaOptions.builder(root).output(output).resume(true).build();
+    new CheckpointPrinter(options, 0).print(5);
+
+    // Act + Assert
+    TruffulaOptions other = options.toBuilder().useColor(false).build();
+    assertThrows(IllegalArgumentException.class, () -> new CheckpointPrinter(other, 0).print());
+  }
+}
@@ -16,6 +16,11 @@ import java.io.PrintStream;
  * printer.println("This is red text");
  * 
  * The printed text will appear in the terminal with the specified colors if the terminal supports ANSI codes.
+ *
+ * A ColorPrinter is not thread safe: the current color is shared by every caller.
+ * Threads whose lines may interleave in any order, such as progress or log
+ * lines, can share a ConcurrentColorPrinter. The engines that print one tree
+ * from several threads keep its order with their own buffers instead.
  */
 public class ColorPrinter {
   /**
@@ -88,16 +93,35 @@ public class ColorPrinter {
   public void print(String message, boolean reset) {
     if (reset == true) 
     {
-      printStream.print(currentColor + message + ConsoleColor.RESET);
+      printStream.print(getCurrentColor() + message + ConsoleColor.RESET);
       setCurrentColor(ConsoleColor.RESET);
     } 
     else 
     {
-      printStream.print(currentColor + message);
+      printStream.print(getCurrentColor() + message);
     }
     
   }//end print
 
+  /**
+   * Writes output that has already been rendered, color codes included, as is.
+   * Used to pass on lines that were printed into a buffer by another ColorPrinter.
+   * 
+   * @param bytes  the rendered output
+   * @param offset the first byte to write
+   * @param length the number of bytes to write
+   */
+  public void write(byte[] bytes, int offset, int length) {
+    printStream.write(bytes, offset, length);
+  }
+
+  /**
+   * Flushes the underlying PrintStream so that everything printed so far is written out.
+   */
+  public void flush() {
+    printStream.flush();
+  }
+
   /**
    * Constructs a ColorPrinter with the specified PrintStream.
    * The default color is set to ConsoleColor.WHITE.
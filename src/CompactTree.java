@@ -0,0 +1,678 @@
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A memory-compact, immutable tree of names that can hold tens of millions of
+ * entries without one object per entry.
+ *
+ * Structure is kept in int arrays indexed by node: parent, first child and next
+ * sibling. Nodes are numbered in print order (the root is node 0), and siblings
+ * are linked in the order TruffulaPrinter prints them.
+ *
+ * Names are stored as UTF-8 in a single shared byte arena. Each name is
+ * front-coded against its previous sibling: a node stores how many leading bytes
+ * it shares with the sibling before it plus a reference to the remaining suffix.
+ * Suffixes are interned, so a suffix such as "README.md" or "0001.log" that
+ * appears in many directories is stored once. Sorted sibling runs like
+ * part-00000, part-00001, ... therefore cost a few bytes each.
+ *
+ * A node costs 18 bytes in the arrays plus its share of the arena; 20 million
+ * entries take roughly 400 MB.
+ *
+ * Example Usage:
+ *
+ * CompactTree tree = CompactTree.build(new File("/srv/data"), true);
+ * printer.printTree(tree);
+ * printer.printTree(tree); // re-render without walking the disk again
+ */
+public class CompactTree {
+
+  /**
+   * Marks a missing parent, child or sibling.
+   */
+  public static final int NONE = -1;
+
+  private static final byte DIRECTORY = 1;
+  private static final byte HIDDEN = 2;
+
+  /**
+   * Longest prefix a node may share with its previous sibling, so it fits in a byte.
+   */
+  private static final int MAX_PREFIX = 255;
+
+  private final int[] parent;
+  private final int[] firstChild;
+  private final int[] nextSibling;
+  private final int[] suffixRef;
+  private final byte[] prefixLen;
+  private final byte[] flags;
+  private final byte[] arena;
+  private final int nodeCount;
+
+  private CompactTree(Builder b) {
+    this.nodeCount = b.count;
+    this.parent = Arrays.copyOf(b.parent, b.count);
+    this.firstChild = Arrays.copyOf(b.firstChild, b.count);
+    this.nextSibling = Arrays.copyOf(b.nextSibling, b.count);
+    this.suffixRef = Arrays.copyOf(b.suffixRef, b.count);
+    this.prefixLen = Arrays.copyOf(b.prefixLen, b.count);
+    this.flags = Arrays.copyOf(b.flags, b.count);
+    this.arena = Arrays.copyOf(b.arena, b.arenaSize);
+  }
+
+  /**
+   * Walks the tree below root and stores it.
+   *
+   * @param root       the directory to walk
+   * @param showHidden whether hidden entries should be stored (they are flagged either way)
+   * @return the stored tree
+   */
+  public static CompactTree build(File root, boolean showHidden) {
+    return build(root, showHidden, -1);
+  }
+
+  /**
+   * Walks the tree below root, at most maxDepth levels deep, and stores it.
+   *
+   * @param root       the directory to walk
+   * @param showHidden whether hidden entries should be stored (they are flagged either way)
+   * @param maxDepth   the deepest level to store, or -1 for no limit
+   * @return the stored tree
+   */
+  public static CompactTree build(File root, boolean showHidden, int maxDepth) {
+    return build(new TreeWalker(root, showHidden, maxDepth, null));
+  }
+
+  /**
+   * Stores everything a walker produces, with its settings for hidden files,
+   * depth and archives.
+   *
+   * @param walker the walker to take the entries from
+   * @return the stored tree
+   */
+  public static CompactTree build(TreeWalker walker) {
+    Builder builder = new Builder();
+    walker.walk(entry -> {
+      builder.add(entry.getName(), entry.getDepth(), entry.isDirectory(), entry.isHidden());
+      return true;
+    });
+    return builder.build();
+  }
+
+  /**
+   * Callback for walking the nodes of a CompactTree in print order.
+   */
+  @FunctionalInterface
+  public interface NodeVisitor {
+    /**
+     * Called for every node, parents before children.
+     *
+     * @param node    the node being visited
+     * @param depth   the depth below the node the walk started from
+     * @param name    a buffer holding the UTF-8 name of the node; only valid during the call
+     * @param nameLen the number of bytes of the name in the buffer
+     * @return true to visit the children of the node; false to skip them
+     */
+    boolean visit(int node, int depth, byte[] name, int nameLen);
+  }
+
+  /**
+   * Returns the number of nodes in the tree.
+   *
+   * @return the node count
+   */
+  public int size() {
+    return nodeCount;
+  }
+
+  /**
+   * Returns the parent of a node.
+   *
+   * @param node the node
+   * @return the parent, or NONE for the root
+   */
+  public int parent(int node) {
+    return parent[node];
+  }
+
+  /**
+   * Returns the first child of a node in sorted order.
+   *
+   * @param node the node
+   * @return the first child, or NONE if the node has no children
+   */
+  public int firstChild(int node) {
+    return firstChild[node];
+  }
+
+  /**
+   * Returns the sibling that follows a node in sorted order.
+   *
+   * @param node the node
+   * @return the next sibling, or NONE if the node is the last child
+   */
+  public int nextSibling(int node) {
+    return nextSibling[node];
+  }
+
+  /**
+   * Indicates whether a node is a directory.
+   *
+   * @param node the node
+   * @return true if the node is a directory; false otherwise
+   */
+  public boolean isDirectory(int node) {
+    return (flags[node] & DIRECTORY) != 0;
+  }
+
+  /**
+   * Indicates whether a node is hidden.
+   *
+   * @param node the node
+   * @return true if the node is hidden; false otherwise
+   */
+  public boolean isHidden(int node) {
+    return (flags[node] & HIDDEN) != 0;
+  }
+
+  /**
+   * Returns the name of a node. Names are front-coded, so this decodes the
+   * node's earlier siblings as well; walks should use the names handed to a
+   * NodeVisitor instead.
+   *
+   * @param node the node
+   * @return the name of the node
+   */
+  public String name(int node) {
+    NameBuffer buf = new NameBuffer();
+    int first = parent[node] == NONE ? node : firstChild[parent[node]];
+    for (int n = first; ; n = nextSibling[n]) {
+      decode(n, buf);
+      if (n == node) {
+        return buf.toString();
+      }
+    }
+  }
+
+  /**
+   * Finds a direct child of a node by name.
+   *
+   * @param node the node whose children are searched
+   * @param name the name of the child
+   * @return the child, or NONE if there is no such child
+   */
+  public int child(int node, String name) {
+    byte[] wanted = name.getBytes(StandardCharsets.UTF_8);
+    NameBuffer buf = new NameBuffer();
+    for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) {
+      decode(c, buf);
+      if (buf.len == wanted.length && Arrays.equals(buf.bytes, 0, buf.len, wanted, 0, buf.len)) {
+        return c;
+      }
+    }
+    return NONE;
+  }
+
+  /**
+   * Visits a node and everything below it in print order, decoding names as it goes.
+   *
+   * @param start   the node to start from
+   * @param visitor the visitor to call
+   */
+  public void walk(int start, NodeVisitor visitor) {
+    NameBuffer[] names = new NameBuffer[16];
+    names[0] = new NameBuffer();
+    byte[] startName = name(start).getBytes(StandardCharsets.UTF_8);
+    names[0].bytes = startName;
+    names[0].len = startName.length;
+    if (!visitor.visit(start, 0, names[0].bytes, names[0].len) || firstChild[start] == NONE) {
+      return;
+    }
+    int depth = 1;
+    int node = firstChild[start];
+    names[1] = new NameBuffer();
+    decode(node, names[1]);
+    while (true) {
+      boolean descend = visitor.visit(node, depth, names[depth].bytes, names[depth].len);
+      if (descend && firstChild[node] != NONE) {
+        node = firstChild[node];
+        depth++;
+        if (depth == names.length) {
+          names = Arrays.copyOf(names, depth * 2);
+        }
+        if (names[depth] == null) {
+          names[depth] = new NameBuffer();
+        }
+        decode(node, names[depth]);
+        continue;
+      }
+      while (nextSibling[node] == NONE) {
+        node = parent[node];
+        depth--;
+        if (depth == 0) {
+          return;
+        }
+      }
+      node = nextSibling[node];
+      decode(node, names[depth]);
+    }
+  }
+
+  /**
+   * A reusable buffer holding one decoded name. Each walk uses its own buffers,
+   * so a tree can be read by many threads at once.
+   */
+  private static final class NameBuffer {
+    private byte[] bytes = new byte[64];
+    private int len;
+
+    @Override
+    public String toString() {
+      return new String(bytes, 0, len, StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * Decodes a node's name into buf. The first bytes of the name are shared with
+   * the previous sibling, whose name buf is expected to hold; a first child
+   * shares nothing, so any buffer works for it.
+   */
+  private void decode(int node, NameBuffer buf) {
+    int shared = prefixLen[node] & 0xFF;
+    int pos = suffixRef[node];
+    int suffixLen = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = arena[pos++];
+      suffixLen |= (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    int len = shared + suffixLen;
+    if (len > buf.bytes.length) {
+      buf.bytes = Arrays.copyOf(buf.bytes, Math.max(len, buf.bytes.length * 2));
+    }
+    System.arraycopy(arena, pos, buf.bytes, shared, suffixLen);
+    buf.len = len;
+  }
+
+  /**
+   * Prints a node and everything below it through a TruffulaPrinter, with the
+   * node as the root of the printed tree.
+   *
+   * @param node       the node to print
+   * @param printer    the printer to render lines with
+   * @param showHidden whether hidden entries should be printed
+   * @param maxDepth   the deepest level below the node to print, or -1 for no limit
+   */
+  public void print(int node, TruffulaPrinter printer, boolean showHidden, int maxDepth) {
+    print(node, null, printer, showHidden, maxDepth);
+  }
+
+  /**
+   * Prints a node and everything below it through a TruffulaPrinter, with the
+   * node as the root of the printed tree under the name of the given path.
+   *
+   * When the printer is in long listing mode and the path is given, the path
+   * of every printed node is rebuilt below it, so each line gets the attribute
+   * columns of its file.
+   *
+   * @param node       the node to print
+   * @param nodeFile   the path the node is printed as, or null to print its stored name
+   * @param printer    the printer to render lines with
+   * @param showHidden whether hidden entries should be printed
+   * @param maxDepth   the deepest level below the node to print, or -1 for no limit
+   */
+  public void print(int node, File nodeFile, TruffulaPrinter printer, boolean showHidden, int maxDepth) {
+    boolean files = nodeFile != null && printer.isLongListing();
+    File[][] path = {new File[16]};
+    walk(node, (n, depth, name, len) -> {
+      if (!showHidden && depth > 0 && isHidden(n)) {
+        return false;
+      }
+      String text = depth == 0 && nodeFile != null
+          ? nodeFile.getName() : new String(name, 0, len, StandardCharsets.UTF_8);
+      if (files) {
+        if (depth >= path[0].length) {
+          path[0] = Arrays.copyOf(path[0], depth * 2);
+        }
+        path[0][depth] = depth == 0 ? nodeFile : new File(path[0][depth - 1], text);
+        printer.printEntry(path[0][depth], text, depth, isDirectory(n));
+      } else {
+        printer.printLine(text, depth, isDirectory(n));
+      }
+      return maxDepth < 0 || depth < maxDepth;
+    });
+    printer.flush();
+  }
+
+  /**
+   * Counts the files and directories below a node, not counting the node itself.
+   *
+   * @param node       the node to count below
+   * @param showHidden whether hidden entries should be counted
+   * @return a two element array holding the file count and the directory count
+   */
+  public long[] count(int node, boolean showHidden) {
+    long[] counts = new long[2];
+    walk(node, (n, depth, name, len) -> {
+      if (depth == 0) {
+        return true;
+      }
+      if (!showHidden && isHidden(n)) {
+        return false;
+      }
+      counts[isDirectory(n) ? 1 : 0]++;
+      return true;
+    });
+    return counts;
+  }
+
+  /**
+   * Finds every entry below a node whose name starts with the given prefix.
+   * Names are compared as UTF-8 bytes, so no strings are built for non-matches.
+   *
+   * @param node       the node to search below
+   * @param nodePath   the path to put in front of every match
+   * @param prefix     the name prefix to match
+   * @param showHidden whether hidden entries should be searched
+   * @param limit      the most matches to return, or -1 for no limit
+   * @return the paths of the matching entries in tree order
+   */
+  public List<String> findByPrefix(int node, String nodePath, String prefix, boolean showHidden, int limit) {
+    byte[] wanted = prefix.getBytes(StandardCharsets.UTF_8);
+    List<String> matches = new ArrayList<>();
+    List<String> path = new ArrayList<>();
+    walk(node, (n, depth, name, len) -> {
+      if (limit >= 0 && matches.size() >= limit) {
+        return false;
+      }
+      if (depth == 0) {
+        return true;
+      }
+      if (!showHidden && isHidden(n)) {
+        return false;
+      }
+      boolean match = len >= wanted.length && Arrays.equals(name, 0, wanted.length, wanted, 0, wanted.length);
+      if (match || isDirectory(n)) {
+        while (path.size() <= depth) {
+          path.add(null);
+        }
+        path.set(depth, new String(name, 0, len, StandardCharsets.UTF_8));
+      }
+      if (match) {
+        StringBuilder sb = new StringBuilder(nodePath);
+        for (int d = 1; d <= depth; d++) {
+          sb.append(File.separatorChar).append(path.get(d));
+        }
+        matches.add(sb.toString());
+      }
+      return true;
+    });
+    return matches;
+  }
+
+  /**
+   * Returns the paths of every directory at or below a node, node first.
+   *
+   * @param node     the node to start from
+   * @param nodePath the path of the node
+   * @return the directory paths
+   */
+  public List<File> directories(int node, File nodePath) {
+    List<File> result = new ArrayList<>();
+    File[][] path = {new File[16]};
+    walk(node, (n, depth, name, len) -> {
+      if (!isDirectory(n)) {
+        return false;
+      }
+      if (depth >= path[0].length) {
+        path[0] = Arrays.copyOf(path[0], depth * 2);
+      }
+      path[0][depth] = depth == 0 ? nodePath : new File(path[0][depth - 1], new String(name, 0, len, StandardCharsets.UTF_8));
+      result.add(path[0][depth]);
+      return true;
+    });
+    return result;
+  }
+
+  /**
+   * Returns a copy of this tree in which the subtree of one node is replaced
+   * by another tree, whose root takes the node's place. Only the names are
+   * copied, so an index can be brought up to date after a change in one
+   * directory without walking the rest of the tree again.
+   *
+   * @param node    the node whose subtree is replaced
+   * @param subtree the new subtree; if it is empty the node is dropped
+   * @return the new tree
+   */
+  public CompactTree replace(int node, CompactTree subtree) {
+    Builder builder = new Builder();
+    walk(0, (n, depth, name, len) -> {
+      if (n != node) {
+        builder.add(new String(name, 0, len, StandardCharsets.UTF_8), depth, isDirectory(n), isHidden(n));
+        return true;
+      }
+      if (subtree.size() > 0) {
+        subtree.walk(0, (s, subDepth, subName, subLen) -> {
+          builder.add(new String(subName, 0, subLen, StandardCharsets.UTF_8), depth + subDepth,
+              subtree.isDirectory(s), subtree.isHidden(s));
+          return true;
+        });
+      }
+      return false;
+    });
+    return builder.build();
+  }
+
+  /**
+   * Returns roughly how many bytes the tree occupies on the heap.
+   *
+   * @return the estimated size in bytes
+   */
+  public long memoryBytes() {
+    return 18L * nodeCount + arena.length;
+  }
+
+  /**
+   * Builds a CompactTree from nodes added in print order.
+   *
+   * Example Usage:
+   *
+   * CompactTree.Builder builder = new CompactTree.Builder();
+   * builder.add("root", 0, true, false);
+   * builder.add("a.txt", 1, false, false);
+   * CompactTree tree = builder.build();
+   */
+  public static class Builder {
+    private int[] parent = new int[1024];
+    private int[] firstChild = new int[1024];
+    private int[] nextSibling = new int[1024];
+    private int[] suffixRef = new int[1024];
+    private byte[] prefixLen = new byte[1024];
+    private byte[] flags = new byte[1024];
+    private int count;
+
+    private byte[] arena = new byte[1 << 16];
+    private int arenaSize;
+
+    /**
+     * Open-addressing table of arena offsets + 1, used to intern suffixes.
+     */
+    private int[] internTable = new int[1 << 12];
+    private int internCount;
+
+    /**
+     * The most recent node at each depth and its name bytes.
+     */
+    private int[] lastAtDepth = new int[16];
+    private byte[][] lastNameAtDepth = new byte[16][];
+
+    /**
+     * Adds the next node in print order. Nodes must be added parents first and
+     * siblings in sorted order, exactly as a TreeWalker produces them.
+     *
+     * @param name      the name of the node
+     * @param depth     the depth of the node (0 for the root)
+     * @param directory whether the node is a directory
+     * @param hidden    whether the node is hidden
+     * @return the number of the new node
+     */
+    public int add(String name, int depth, boolean directory, boolean hidden) {
+      if (count == parent.length) {
+        int grown = count + (count >> 1);
+        parent = Arrays.copyOf(parent, grown);
+        firstChild = Arrays.copyOf(firstChild, grown);
+        nextSibling = Arrays.copyOf(nextSibling, grown);
+        suffixRef = Arrays.copyOf(suffixRef, grown);
+        prefixLen = Arrays.copyOf(prefixLen, grown);
+        flags = Arrays.copyOf(flags, grown);
+      }
+      if (depth + 1 >= lastAtDepth.length) {
+        lastAtDepth = Arrays.copyOf(lastAtDepth, (depth + 1) * 2);
+        lastNameAtDepth = Arrays.copyOf(lastNameAtDepth, (depth + 1) * 2);
+      }
+      if (depth > 0 && (count == 0 || lastAtDepth[depth - 1] == NONE)) {
+        throw new IllegalStateException("node at depth " + depth + " has no parent");
+      }
+
+      int node = count++;
+      byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+      int previous = depth == 0 ? NONE : lastAtDepth[depth];
+      int parentNode = depth == 0 ? NONE : lastAtDepth[depth - 1];
+
+      int shared = 0;
+      if (previous != NONE) {
+        byte[] prevName = lastNameAtDepth[depth];
+        int max = Math.min(MAX_PREFIX, Math.min(prevName.length, bytes.length));
+        while (shared < max && prevName[shared] == bytes[shared]) {
+          shared++;
+        }
+        nextSibling[previous] = node;
+      } else if (parentNode != NONE) {
+        firstChild[parentNode] = node;
+      }
+
+      parent[node] = parentNode;
+      firstChild[node] = NONE;
+      nextSibling[node] = NONE;
+      prefixLen[node] = (byte) shared;
+      suffixRef[node] = intern(bytes, shared, bytes.length - shared);
+      flags[node] = (byte) ((directory ? DIRECTORY : 0) | (hidden ? HIDDEN : 0));
+
+      lastAtDepth[depth] = node;
+      lastNameAtDepth[depth] = bytes;
+      lastAtDepth[depth + 1] = NONE;
+      return node;
+    }
+
+    /**
+     * Returns the arena offset of a suffix record, adding it if it is new.
+     */
+    private int intern(byte[] bytes, int from, int len) {
+      int hash = 1;
+      for (int i = from; i < from + len; i++) {
+        hash = 31 * hash + bytes[i];
+      }
+      int mask = internTable.length - 1;
+      for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+        int entry = internTable[slot];
+        if (entry == 0) {
+          int offset = append(bytes, from, len);
+          internTable[slot] = offset + 1;
+          if (++internCount * 2 > internTable.length) {
+            rehash();
+          }
+          return offset;
+        }
+        if (suffixEquals(entry - 1, bytes, from, len)) {
+          return entry - 1;
+        }
+      }
+    }
+
+    private boolean suffixEquals(int offset, byte[] bytes, int from, int len) {
+      int pos = offset;
+      int stored = 0;
+      int shift = 0;
+      int b;
+      do {
+        b = arena[pos++];
+        stored |= (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return stored == len && Arrays.equals(arena, pos, pos + len, bytes, from, from + len);
+    }
+
+    private int append(byte[] bytes, int from, int len) {
+      if (arenaSize + len + 5 > arena.length) {
+        arena = Arrays.copyOf(arena, Math.max(arenaSize + len + 5, arena.length + (arena.length >> 1)));
+      }
+      int offset = arenaSize;
+      int v = len;
+      while (v >= 0x80) {
+        arena[arenaSize++] = (byte) (v | 0x80);
+        v >>>= 7;
+      }
+      arena[arenaSize++] = (byte) v;
+      System.arraycopy(bytes, from, arena, arenaSize, len);
+      arenaSize += len;
+      return offset;
+    }
+
+    private void rehash() {
+      int[] old = internTable;
+      internTable = new int[old.length * 2];
+      int mask = internTable.length - 1;
+      for (int entry : old) {
+        if (entry == 0) {
+          continue;
+        }
+        int pos = entry - 1;
+        int len = 0;
+        int shift = 0;
+        int b;
+        do {
+          b = arena[pos++];
+          len |= (b & 0x7F) << shift;
+          shift += 7;
+        } while ((b & 0x80) != 0);
+        int hash = 1;
+        for (int i = pos; i < pos + len; i++) {
+          hash = 31 * hash + arena[i];
+        }
+        int slot = mix(hash) & mask;
+        while (internTable[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        internTable[slot] = entry;
+      }
+    }
+
+    private static int mix(int hash) {
+      return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns the number of nodes added so far.
+     *
+     * @return the node count
+     */
+    public int size() {
+      return count;
+    }
+
+    /**
+     * Returns the finished tree. The builder should not be used afterwards.
+     *
+     * @return the tree
+     */
+    public CompactTree build() {
+      internTable = null;
+      return new CompactTree(this);
+    }
+  }
+}
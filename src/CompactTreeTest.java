@@ -0,0 +1,128 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CompactTreeTest {
+
+  @Test
+  void testLinksAndNames() {
+    // Arrange: root/{a/{x.txt}, ab.txt, abc.txt}
+    CompactTree.Builder builder = new CompactTree.Builder();
+    builder.add("root", 0, true, false);
+    builder.add("a", 1, true, false);
+    builder.add("x.txt", 2, false, false);
+    builder.add("ab.txt", 1, false, false);
+    builder.add("abc.txt", 1, false, false);
+
+    // Act
+    CompactTree tree = builder.build();
+
+    // Assert
+    assertEquals(5, tree.size());
+    assertEquals(1, tree.firstChild(0));
+    assertEquals(3, tree.nextSibling(1));
+    assertEquals(4, tree.nextSibling(3));
+    assertEquals(CompactTree.NONE, tree.nextSibling(4));
+    assertEquals(1, tree.parent(2));
+    assertEquals("root", tree.name(0));
+    assertEquals("x.txt", tree.name(2));
+    assertEquals("ab.txt", tree.name(3));
+    assertEquals("abc.txt", tree.name(4));
+    assertEquals(4, tree.child(0, "abc.txt"));
+    assertEquals(CompactTree.NONE, tree.child(0, "abcd.txt"));
+  }
+
+  @Test
+  void testReplaceSwapsOneSubtree() {
+    // Arrange: root/{a/{x.txt}, b.txt} and a new a/{y/{z.txt}}
+    CompactTree.Builder builder = new CompactTree.Builder();
+    builder.add("root", 0, true, false);
+    builder.add("a", 1, true, false);
+    builder.add("x.txt", 2, false, false);
+    builder.add("b.txt", 1, false, false);
+    CompactTree tree = builder.build();
+    CompactTree.Builder subBuilder = new CompactTree.Builder();
+    subBuilder.add("a", 0, true, false);
+    subBuilder.add("y", 1, true, false);
+    subBuilder.add("z.txt", 2, false, true);
+
+    // Act
+    CompactTree replaced = tree.replace(1, subBuilder.build());
+
+    // Assert: the new subtree sits where the old one was, the rest is unchanged
+    List<String> lines = new ArrayList<>();
+    replaced.walk(0, (node, depth, name, len) -> {
+      lines.add(depth + " " + replaced.name(node) + (replaced.isHidden(node) ? " hidden" : ""));
+      return true;
+    });
+    assertEquals(List.of("0 root", "1 a", "2 y", "3 z.txt hidden", "1 b.txt"), lines);
+    assertEquals(4, tree.size());
+  }
+
+  @Test
+  void testPrintAndReprintMatchTruffulaPrinter(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = new File(tempDir, "root");
+    root.mkdir();
+    File docs = new File(root, "Docs");
+    docs.mkdir();
+    new File(docs, "notes.txt").createNewFile();
+    new File(root, "apple.txt").createNewFile();
+    new File(root, ".hidden").createNewFile();
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    TruffulaOptions options = new TruffulaOptions(root, false, true);
+    new TruffulaPrinter(options, new PrintStream(expected)).printTree();
+
+    // Act: build once, print twice
+    CompactTree tree = CompactTree.build(root, true);
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    TruffulaPrinter printer = new TruffulaPrinter(options, new PrintStream(actual));
+    printer.printTree(tree);
+    String first = actual.toString();
+    actual.reset();
+    printer.printTree(tree);
+
+    // Assert
+    assertEquals(expected.toString(), first);
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  @Test
+  void testFrontCodingAndInterningKeepTreeSmall() {
+    // Arrange: 100 directories each holding part-00000 .. part-00999
+    CompactTree.Builder builder = new CompactTree.Builder();
+    builder.add("root", 0, true, false);
+    for (int d = 0; d < 100; d++) {
+      builder.add("shard-" + d, 1, true, false);
+      for (int f = 0; f < 1000; f++) {
+        builder.add(String.format("part-%05d", f), 2, false, false);
+      }
+    }
+
+    // Act
+    CompactTree tree = builder.build();
+
+    // Assert: well under 25 bytes per entry, and names still decode
+    assertEquals(100_101, tree.size());
+    assertTrue(tree.memoryBytes() < 25L * tree.size(), "tree used " + tree.memoryBytes() + " bytes");
+    int shard = tree.child(0, "shard-42");
+    assertEquals("part-00999", tree.name(tree.child(shard, "part-00999")));
+    List<String> names = new ArrayList<>();
+    tree.walk(shard, (n, depth, name, len) -> {
+      if (depth == 1 && names.size() < 3) {
+        names.add(new String(name, 0, len));
+      }
+      return true;
+    });
+    assertEquals(List.of("part-00000", "part-00001", "part-00002"), names);
+  }
+}
@@ -0,0 +1,191 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A ColorPrinter that any number of threads can print to at once.
+ *
+ * Each thread has a current color of its own, and each print is rendered,
+ * color codes included, as one record into a buffer of the calling thread's.
+ * A record is never split: once a thread's buffer holds a chunk's worth of
+ * records, the whole buffer is written to the shared stream under one lock.
+ * Records from different threads therefore interleave only between chunks,
+ * the stream is locked once per chunk rather than once per line, and the
+ * output of one thread keeps its order. A line printed with several calls is
+ * several records and may be split, so each line should be printed with one.
+ *
+ * flush() writes out the calling thread's buffer and lets go of it, so a
+ * thread should call it when it is done printing, and a pooled thread before
+ * it goes back to the pool; the thread's next print starts a new buffer, in
+ * white. Buffers of threads that ended without flushing are written out and
+ * let go of by the next flush() of any thread, so their output is not lost
+ * and their buffers are not kept. flushAll() writes out every buffer and may
+ * only be called once the printing threads have stopped, such as after
+ * joining them.
+ *
+ * Example Usage:
+ *
+ * ConcurrentColorPrinter printer = new ConcurrentColorPrinter(System.out);
+ * pool.submit(() -> {
+ *   printer.setCurrentColor(ConsoleColor.GREEN);
+ *   printer.println("from a worker");
+ *   printer.flush();
+ * });
+ */
+public class ConcurrentColorPrinter extends ColorPrinter {
+
+  /**
+   * Buffered output per thread before it is written to the stream.
+   */
+  static final int CHUNK_SIZE = 8 * 1024;
+
+  private final PrintStream sink;
+  private final int chunkSize;
+
+  /**
+   * Every thread's buffer that has not been flushed yet, so flushAll and the
+   * sweep for ended threads can reach them.
+   */
+  private final List<Buffer> buffers = new CopyOnWriteArrayList<>();
+
+  private final ThreadLocal<Buffer> local = new ThreadLocal<Buffer>() {
+    @Override
+    protected Buffer initialValue() {
+      Buffer buffer = new Buffer(Thread.currentThread());
+      buffers.add(buffer);
+      return buffer;
+    }
+  };
+
+  /**
+   * Constructs a ConcurrentColorPrinter whose threads start printing in white.
+   *
+   * @param printStream the stream every thread's output is written to
+   */
+  public ConcurrentColorPrinter(PrintStream printStream) {
+    this(printStream, CHUNK_SIZE);
+  }
+
+  /**
+   * Constructs a ConcurrentColorPrinter.
+   *
+   * @param printStream the stream every thread's output is written to
+   * @param chunkSize   the bytes a thread buffers before writing them to the stream
+   */
+  ConcurrentColorPrinter(PrintStream printStream, int chunkSize) {
+    super(printStream);
+    this.sink = printStream;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Returns the number of threads whose buffers are held, for tests.
+   */
+  int heldBuffers() {
+    return buffers.size();
+  }
+
+  /**
+   * Returns the calling thread's current color.
+   *
+   * @return the current ConsoleColor of this thread
+   */
+  @Override
+  public ConsoleColor getCurrentColor() {
+    return local.get().color;
+  }
+
+  /**
+   * Sets the calling thread's current color, leaving other threads' as they are.
+   *
+   * @param color the ConsoleColor to set as the current color
+   */
+  @Override
+  public void setCurrentColor(ConsoleColor color) {
+    local.get().color = color;
+  }
+
+  @Override
+  public void print(String message, boolean reset) {
+    Buffer buffer = local.get();
+    //one print call per record, so a record is never split between chunks
+    if (reset) {
+      buffer.stream.print(buffer.color + message + ConsoleColor.RESET);
+      buffer.color = ConsoleColor.RESET;
+    } else {
+      buffer.stream.print(buffer.color + message);
+    }
+    if (buffer.bytes.size() >= chunkSize) {
+      drain(buffer);
+    }
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) {
+    Buffer buffer = local.get();
+    buffer.stream.write(bytes, offset, length);
+    if (buffer.bytes.size() >= chunkSize) {
+      drain(buffer);
+    }
+  }
+
+  /**
+   * Writes the calling thread's buffered output to the stream, along with that
+   * of threads that ended without flushing, and flushes it. The calling
+   * thread's buffer and color are let go of.
+   */
+  @Override
+  public void flush() {
+    Buffer own = local.get();
+    local.remove();
+    buffers.remove(own);
+    drain(own);
+    for (Buffer buffer : buffers) {
+      if (!buffer.owner.isAlive() && buffers.remove(buffer)) {
+        drain(buffer);
+      }
+    }
+    synchronized (sink) {
+      sink.flush();
+    }
+  }
+
+  /**
+   * Writes every thread's buffered output to the stream and flushes it. The
+   * threads that printed must have stopped printing.
+   */
+  public void flushAll() {
+    for (Buffer buffer : buffers) {
+      drain(buffer);
+    }
+    synchronized (sink) {
+      sink.flush();
+    }
+  }
+
+  private void drain(Buffer buffer) {
+    buffer.stream.flush();
+    if (buffer.bytes.size() == 0) {
+      return;
+    }
+    synchronized (sink) {
+      sink.write(buffer.bytes.toByteArray(), 0, buffer.bytes.size());
+    }
+    buffer.bytes.reset();
+  }
+
+  /**
+   * One thread's current color and pending output.
+   */
+  private static class Buffer {
+    private final Thread owner;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(CHUNK_SIZE + 256);
+    private final PrintStream stream = new PrintStream(bytes, false);
+    private ConsoleColor color = ConsoleColor.WHITE;
+
+    private Buffer(Thread owner) {
+      this.owner = owner;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentColorPrinterTest {
+
+  private static final ConsoleColor[] COLORS = {
+      ConsoleColor.RED, ConsoleColor.GREEN, ConsoleColor.YELLOW, ConsoleColor.BLUE,
+      ConsoleColor.PURPLE, ConsoleColor.CYAN, ConsoleColor.WHITE, ConsoleColor.BLACK
+  };
+
+  @Test
+  void testColorsArePerThread() throws InterruptedException {
+    // Arrange
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ConcurrentColorPrinter printer = new ConcurrentColorPrinter(new PrintStream(output));
+    printer.setCurrentColor(ConsoleColor.RED);
+
+    // Act: another thread changes its own color
+    Thread other = new Thread(() -> printer.setCurrentColor(ConsoleColor.GREEN));
+    other.start();
+    other.join();
+    printer.println("mine");
+    printer.flush();
+
+    // Assert
+    assertEquals(ConsoleColor.RED + "mine" + System.lineSeparator() + ConsoleColor.RESET, output.toString());
+  }
+
+  @Test
+  void testRecordsStayWholeUnderContention() throws InterruptedException {
+    // Arrange: a small chunk size so threads hand off to the stream constantly
+    int threads = 8;
+    int lines = 20_000;
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ConcurrentColorPrinter printer = new ConcurrentColorPrinter(new PrintStream(output), 256);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int id = t;
+      workers.add(new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int i = 0; i < lines; i++) {
+          printer.setCurrentColor(COLORS[id]);
+          printer.println("t" + id + " line " + i);
+        }
+        printer.flush();
+      }));
+    }
+
+    // Act
+    for (Thread worker : workers) {
+      worker.start();
+    }
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    printer.flushAll();
+
+    // Assert: every line whole, in its thread's color, and each thread's lines in order
+    Pattern record = Pattern.compile("(\u001B\\[0;3\\dm)t(\\d+) line (\\d+)");
+    String reset = ConsoleColor.RESET.toString();
+    String[] records = output.toString().split(Pattern.quote(System.lineSeparator()), -1);
+    int[] next = new int[threads];
+    for (int r = 0; r < records.length - 1; r++) {
+      String text = r == 0 ? records[r] : records[r].substring(reset.length());
+      Matcher matcher = record.matcher(text);
+      assertTrue(matcher.matches(), "broken record: " + records[r]);
+      int id = Integer.parseInt(matcher.group(2));
+      assertEquals(COLORS[id].toString(), matcher.group(1));
+      assertEquals(next[id]++, Integer.parseInt(matcher.group(3)));
+    }
+    assertEquals(reset, records[records.length - 1]);
+    for (int t = 0; t < threads; t++) {
+      assertEquals(lines, next[t]);
+    }
+  }
+
+  @Test
+  void testBuffersAreLetGoOf() throws InterruptedException {
+    // Arrange
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ConcurrentColorPrinter printer = new ConcurrentColorPrinter(new PrintStream(output));
+    Thread flushed = new Thread(() -> {
+      printer.println("flushed");
+      printer.flush();
+    });
+    Thread ended = new Thread(() -> printer.println("ended"));
+
+    // Act: one thread flushes, the other ends without flushing
+    flushed.start();
+    flushed.join();
+    int afterFlush = printer.heldBuffers();
+    ended.start();
+    ended.join();
+    printer.flush();
+
+    // Assert: no buffer is kept, and the ended thread's line is written by the next flush
+    String nl = System.lineSeparator();
+    assertEquals(0, afterFlush);
+    assertEquals(0, printer.heldBuffers());
+    assertEquals(ConsoleColor.WHITE + "flushed" + nl + ConsoleColor.RESET
+        + ConsoleColor.WHITE + "ended" + nl + ConsoleColor.RESET, output.toString());
+  }
+}
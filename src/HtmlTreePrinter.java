@@ -0,0 +1,245 @@
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the trees of the roots in the options as one HTML page of collapsible
+ * directories, for --format=html.
+ *
+ * Every directory is a details element whose summary is its name, and every
+ * file a div, so the page needs no script to be browsed. The depth-based color
+ * cycling of the text output becomes CSS classes, one per ConsoleColor, in the
+ * same sequence (TruffulaPrinter.DEFAULT_COLOR_SEQUENCE); without color every
+ * entry gets the white class.
+ *
+ * The page is streamed as the walk goes: lines are gathered into chunks of
+ * about 16k, encoded as UTF-8 and written out, so memory stays flat whatever
+ * the size of the tree. Since the size of a subtree is not known when it is
+ * opened, pages with a million entries are kept light in the browser another
+ * way: the contents of every directory below the roots are written inside a
+ * template element, which the browser parses but does not render, and a small
+ * script moves them into the page when the directory is first opened. Within a
+ * directory, children come 1000 at a time: past each thousand, the rest go into
+ * a template of their own behind a "more" entry, so a huge flat directory opens
+ * one page at a time too.
+ *
+ * Hidden files, depth, sort order and long listing columns follow the options
+ * as for the text output. The walk always runs on the calling thread.
+ *
+ * Example Usage:
+ *
+ * TruffulaOptions options = new TruffulaOptions(new String[] {"--format=html", "-o", "tree.html", "/srv/build"});
+ * new HtmlTreePrinter(options, System.out).print();
+ */
+public class HtmlTreePrinter {
+
+  /**
+   * Children of a directory written directly before the rest go behind "more".
+   */
+  static final int LIVE_CHILDREN = 1000;
+
+  /**
+   * Output gathered before it is encoded and written.
+   */
+  private static final int CHUNK_SIZE = 16 * 1024;
+
+  private static final String HEAD = "<!DOCTYPE html>\n"
+      + "<html>\n<head>\n<meta charset=\"utf-8\">\n<title>truffula</title>\n<style>\n"
+      + "body { background: #1e1e1e; font: 14px/1.4 monospace; }\n"
+      + "summary, div { white-space: pre; }\n"
+      + "summary { cursor: pointer; }\n"
+      + "details > :not(summary) { margin-left: 3ch; }\n"
+      + "details.more > :not(summary) { margin-left: 0; }\n"
+      + "details.more > summary { color: #888; }\n"
+      + ".meta { color: #888; }\n"
+      + ".black { color: #555; }\n"
+      + ".red { color: #e05252; }\n"
+      + ".green { color: #5fbf5f; }\n"
+      + ".yellow { color: #d7c45a; }\n"
+      + ".blue { color: #5c8fe6; }\n"
+      + ".purple { color: #c678dd; }\n"
+      + ".cyan { color: #56b6c2; }\n"
+      + ".white { color: #e5e5e5; }\n"
+      + "</style>\n<script>\n"
+      + "document.addEventListener('toggle', function (event) {\n"
+      + "  var details = event.target;\n"
+      + "  var template = details.open && details.querySelector(':scope > template');\n"
+      + "  if (template) details.replaceChild(template.content, template);\n"
+      + "}, true);\n"
+      + "</script>\n</head>\n<body>\n";
+
+  private static final String TAIL = "</body>\n</html>\n";
+
+  private final TruffulaOptions options;
+  private final PrintStream out;
+  private final List<ConsoleColor> colorSequence;
+  private final LongListing longListing;
+  private final StringBuilder chunk = new StringBuilder(CHUNK_SIZE + 1024);
+
+  /**
+   * The directories being written, innermost last.
+   */
+  private final List<Frame> open = new ArrayList<>();
+
+  /**
+   * Constructs an HtmlTreePrinter with the default color sequence.
+   *
+   * @param options the options to walk and print with
+   * @param out     the stream the page is written to
+   */
+  public HtmlTreePrinter(TruffulaOptions options, PrintStream out) {
+    this(options, out, TruffulaPrinter.DEFAULT_COLOR_SEQUENCE);
+  }
+
+  /**
+   * Constructs an HtmlTreePrinter.
+   *
+   * @param options       the options to walk and print with
+   * @param out           the stream the page is written to
+   * @param colorSequence the colors to cycle through by depth
+   */
+  public HtmlTreePrinter(TruffulaOptions options, PrintStream out, List<ConsoleColor> colorSequence) {
+    this.options = options;
+    this.out = out;
+    this.colorSequence = colorSequence;
+    this.longListing = options.isLongListing() ? new LongListing() : null;
+  }
+
+  /**
+   * Writes the page with one tree per root, then flushes the stream.
+   */
+  public void print() {
+    TraversalMetrics metrics = options.isCollectMetrics() ? new TraversalMetrics() : null;
+    Throttle throttle = Throttle.forOptions(options, metrics);
+    chunk.append(HEAD);
+    for (File root : options.getRoots()) {
+      TruffulaOptions rootOptions = options.toBuilder().root(root).build();
+      TreeWalker.Traversal traversal = new TreeWalker(rootOptions, metrics, throttle).traversal();
+      while (traversal.hasNext()) {
+        TreeEntry entry = traversal.next();
+        closeTo(entry.getDepth());
+        if (throttle != null && longListing != null && entry.getAttributes() == null) {
+          throttle.acquireOperations(1);
+        }
+        append(entry);
+        if (chunk.length() >= CHUNK_SIZE) {
+          writeChunk();
+        }
+      }
+      closeTo(0);
+    }
+    chunk.append(TAIL);
+    writeChunk();
+    out.flush();
+    if (metrics != null) {
+      metrics.report(System.err);
+    }
+  }
+
+  /**
+   * Appends one entry, as a file line or as the start of a directory.
+   */
+  private void append(TreeEntry entry) {
+    int depth = entry.getDepth();
+    if (!open.isEmpty()) {
+      Frame parent = open.get(open.size() - 1);
+      if (parent.children > 0 && parent.children % LIVE_CHILDREN == 0) {
+        chunk.append("<details class=\"more\"><summary>more</summary><template>\n");
+        parent.more++;
+      }
+      parent.children++;
+    }
+    String color = cssClass(depth);
+    if (entry.isDirectory()) {
+      //roots start open; everything below them is filled in when opened
+      chunk.append(depth == 0 ? "<details open><summary class=\"" : "<details><summary class=\"");
+      chunk.append(color).append("\">");
+      appendLabel(entry);
+      chunk.append("/</summary>");
+      chunk.append(depth == 0 ? "\n" : "<template>\n");
+      open.add(new Frame(depth));
+    } else {
+      chunk.append("<div class=\"").append(color).append("\">");
+      appendLabel(entry);
+      chunk.append("</div>\n");
+    }
+  }
+
+  private void appendLabel(TreeEntry entry) {
+    if (longListing != null) {
+      StringBuilder columns = new StringBuilder(64);
+      if (entry.getAttributes() != null) {
+        longListing.appendColumns(columns, entry.getAttributes());
+      } else {
+        longListing.appendColumns(columns, entry.getFile());
+      }
+      chunk.append("<span class=\"meta\">");
+      escape(columns);
+      chunk.append("</span>");
+    }
+    escape(entry.getName());
+  }
+
+  /**
+   * Ends every open directory at the given depth or deeper.
+   */
+  private void closeTo(int depth) {
+    while (!open.isEmpty() && open.get(open.size() - 1).depth >= depth) {
+      Frame frame = open.remove(open.size() - 1);
+      for (int i = 0; i < frame.more; i++) {
+        chunk.append("</template></details>\n");
+      }
+      chunk.append(frame.depth == 0 ? "</details>\n" : "</template></details>\n");
+    }
+  }
+
+  private String cssClass(int depth) {
+    if (!options.isUseColor()) {
+      return "white";
+    }
+    return colorSequence.get(depth % colorSequence.size()).name().toLowerCase();
+  }
+
+  private void escape(CharSequence text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '&':
+          chunk.append("&amp;");
+          break;
+        case '<':
+          chunk.append("&lt;");
+          break;
+        case '>':
+          chunk.append("&gt;");
+          break;
+        case '"':
+          chunk.append("&quot;");
+          break;
+        default:
+          chunk.append(c);
+      }
+    }
+  }
+
+  private void writeChunk() {
+    byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+    out.write(bytes, 0, bytes.length);
+    chunk.setLength(0);
+  }
+
+  /**
+   * A directory whose end tag is not written yet.
+   */
+  private static class Frame {
+    private final int depth;
+    private int children;
+    private int more;
+
+    private Frame(int depth) {
+      this.depth = depth;
+    }
+  }
+}
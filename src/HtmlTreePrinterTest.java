@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class HtmlTreePrinterTest {
+
+  private static final File ROOT = new File("/mem/site");
+
+  private static String print(TruffulaOptions options) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new HtmlTreePrinter(options, new PrintStream(output)).print();
+    return output.toString(StandardCharsets.UTF_8);
+  }
+
+  private static int count(String text, String part) {
+    int count = 0;
+    for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+      count++;
+    }
+    return count;
+  }
+
+  @Test
+  void testDirectoriesNestAndColorsCycle() {
+    // Arrange
+    MemoryFileSystem fs = MemoryFileSystem.builder(ROOT)
+        .addFile("docs/a<b>&c.txt", 1)
+        .addFile("docs/img/logo.png", 1)
+        .addFile("index.html", 1)
+        .addFile("résumé.pdf", 1)
+        .addFile(".hidden", 1)
+        .build();
+    TruffulaOptions options = TruffulaOptions.builder(ROOT).fileSystem(fs).format(TruffulaOptions.Format.HTML).build();
+
+    // Act
+    String html = print(options);
+
+    // Assert: white, purple, yellow by depth, below-root contents in templates
+    assertTrue(html.startsWith("<!DOCTYPE html>"));
+    assertTrue(html.contains("<details open><summary class=\"white\">site/</summary>\n"));
+    assertTrue(html.contains("<details><summary class=\"purple\">docs/</summary><template>\n"
+        + "<div class=\"yellow\">a&lt;b&gt;&amp;c.txt</div>\n"
+        + "<details><summary class=\"yellow\">img/</summary><template>\n"
+        + "<div class=\"white\">logo.png</div>\n"
+        + "</template></details>\n"
+        + "</template></details>\n"
+        + "<div class=\"purple\">index.html</div>\n"
+        + "<div class=\"purple\">résumé.pdf</div>\n"
+        + "</details>\n"));
+    assertFalse(html.contains(".hidden<"));
+    assertEquals(count(html, "<details"), count(html, "</details>"));
+    assertEquals(count(html, "<template>"), count(html, "</template>"));
+    assertTrue(html.endsWith("</html>\n"));
+  }
+
+  @Test
+  void testLargeDirectoryPutsTheRestBehindMore() {
+    // Arrange
+    MemoryFileSystem fs = MemoryFileSystem.generate(ROOT, 1, 1, 2 * HtmlTreePrinter.LIVE_CHILDREN + 5);
+    TruffulaOptions options = TruffulaOptions.builder(ROOT).fileSystem(fs).useColor(false)
+        .format(TruffulaOptions.Format.HTML).build();
+
+    // Act
+    String html = print(options);
+
+    // Assert: twice in the root and twice in dir0
+    assertEquals(4, count(html, "<details class=\"more\"><summary>more</summary><template>"));
+    assertEquals(count(html, "<details"), count(html, "</details>"));
+    assertEquals(count(html, "<template>"), count(html, "</template>"));
+    assertEquals(0, count(html, "class=\"purple\""));
+  }
+}
@@ -0,0 +1,119 @@
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Utility class for stable sorts by precomputed keys.
+ *
+ * The keys are computed once per entry before sorting, and the sort orders an
+ * array of positions instead of the entries themselves, so the entries and any
+ * arrays that run parallel to them can be put in order afterwards. Long keys
+ * are compared as primitives, without boxing. Every order is made by the same
+ * merge sort, which keeps entries with equal keys in the order they were
+ * given, so a list already sorted by name stays in name order among equal
+ * keys.
+ */
+public class KeySorter {
+
+  /**
+   * Below this many entries a range is sorted by insertion instead of merging.
+   */
+  private static final int INSERTION_LIMIT = 16;
+
+  /**
+   * Returns the positions of the keys in ascending order, ties kept in input order.
+   *
+   * @param keys the keys to order
+   * @return the position in keys of the smallest, second smallest, ... key
+   */
+  public static int[] order(long[] keys) {
+    return order(keys.length, (a, b) -> Long.compare(keys[a], keys[b]));
+  }
+
+  /**
+   * Returns the positions of the keys in ascending String.compareTo order, ties
+   * kept in input order.
+   *
+   * @param keys the keys to order
+   * @return the position in keys of the smallest, second smallest, ... key
+   */
+  public static int[] order(String[] keys) {
+    return order(keys.length, (a, b) -> keys[a].compareTo(keys[b]));
+  }
+
+  /**
+   * Returns the positions of the keys in ascending String.compareTo order, with
+   * equal keys ordered by a second array of strings, such as the names the
+   * keys were built from, and ties in both kept in input order.
+   *
+   * @param keys     the keys to order
+   * @param tieBreak the strings that order entries with equal keys, parallel to keys
+   * @return the position in keys of the smallest, second smallest, ... key
+   */
+  public static int[] order(String[] keys, String[] tieBreak) {
+    return order(keys.length, (a, b) -> {
+      int c = keys[a].compareTo(keys[b]);
+      return c != 0 ? c : tieBreak[a].compareTo(tieBreak[b]);
+    });
+  }
+
+  /**
+   * Puts values in the given order.
+   *
+   * @param values the values to reorder in place
+   * @param order  the positions returned by one of the order methods
+   * @return values, reordered
+   */
+  public static String[] apply(String[] values, int[] order) {
+    String[] copy = values.clone();
+    for (int i = 0; i < order.length; i++) {
+      values[i] = copy[order[i]];
+    }
+    return values;
+  }
+
+  /**
+   * Returns the positions 0 to length - 1 sorted by a comparison of two
+   * positions.
+   */
+  private static int[] order(int length, IntBinaryOperator compare) {
+    int[] order = new int[length];
+    for (int i = 0; i < length; i++) {
+      order[i] = i;
+    }
+    sort(order, new int[length], 0, length, compare);
+    return order;
+  }
+
+  /**
+   * Stable merge sort of order[from, to), using scratch as working space.
+   */
+  private static void sort(int[] order, int[] scratch, int from, int to, IntBinaryOperator compare) {
+    if (to - from < INSERTION_LIMIT) {
+      for (int i = from + 1; i < to; i++) {
+        int value = order[i];
+        int j = i - 1;
+        while (j >= from && compare.applyAsInt(order[j], value) > 0) {
+          order[j + 1] = order[j];
+          j--;
+        }
+        order[j + 1] = value;
+      }
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    sort(order, scratch, from, mid, compare);
+    sort(order, scratch, mid, to, compare);
+    if (compare.applyAsInt(order[mid - 1], order[mid]) <= 0) {
+      return;
+    }
+    System.arraycopy(order, from, scratch, from, to - from);
+    int left = from;
+    int right = mid;
+    for (int k = from; k < to; k++) {
+      if (right >= to || (left < mid && compare.applyAsInt(scratch[left], scratch[right]) <= 0)) {
+        order[k] = scratch[left++];
+      } else {
+        order[k] = scratch[right++];
+      }
+    }
+  }
+}
@@ -0,0 +1,99 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps another TreeFileSystem and waits a fixed time before every listing and
+ * every stat, to simulate a network mount such as NFS. The hidden file rule
+ * costs nothing, since it only looks at names.
+ *
+ * Waits shorter than the platform's sleep resolution are spun instead of
+ * slept, so small latencies are not rounded up to a scheduler tick.
+ *
+ * Example Usage:
+ *
+ * TreeFileSystem nfs = new LatencyFileSystem(LocalFileSystem.INSTANCE, 2_000_000, 300_000);
+ */
+public class LatencyFileSystem implements TreeFileSystem {
+
+  /**
+   * Waits at least this long are slept; shorter ones are spun.
+   */
+  private static final long SLEEP_THRESHOLD_NANOS = 100_000;
+
+  private final TreeFileSystem delegate;
+  private final long listNanos;
+  private final long statNanos;
+
+  /**
+   * Constructs a LatencyFileSystem.
+   *
+   * @param delegate  the file system to pass the calls on to
+   * @param listNanos the time every listing takes before it starts, in nanoseconds
+   * @param statNanos the time every stat query takes before it starts, in nanoseconds
+   */
+  public LatencyFileSystem(TreeFileSystem delegate, long listNanos, long statNanos) {
+    this.delegate = delegate;
+    this.listNanos = listNanos;
+    this.statNanos = statNanos;
+  }
+
+  @Override
+  public String[] list(File dir) throws IOException {
+    pause(listNanos);
+    return delegate.list(dir);
+  }
+
+  @Override
+  public String[] list(File dir, NameFilter filter) throws IOException {
+    pause(listNanos);
+    return delegate.list(dir, filter);
+  }
+
+  @Override
+  public boolean isDirectory(File file) {
+    pause(statNanos);
+    return delegate.isDirectory(file);
+  }
+
+  @Override
+  public boolean isFile(File file) {
+    pause(statNanos);
+    return delegate.isFile(file);
+  }
+
+  @Override
+  public long length(File file) {
+    pause(statNanos);
+    return delegate.length(file);
+  }
+
+  @Override
+  public long lastModified(File file) {
+    pause(statNanos);
+    return delegate.lastModified(file);
+  }
+
+  @Override
+  public boolean isHidden(File dir, String name) {
+    return delegate.isHidden(dir, name);
+  }
+
+  private static void pause(long nanos) {
+    if (nanos <= 0) {
+      return;
+    }
+    if (nanos >= SLEEP_THRESHOLD_NANOS) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(nanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return;
+    }
+    long end = System.nanoTime() + nanos;
+    while (System.nanoTime() < end) {
+      Thread.onSpinWait();
+    }
+  }
+}
@@ -0,0 +1,93 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The real file system, read through java.io.File, with directories listed
+ * through a DirectoryStream.
+ *
+ * A directory is read one entry at a time and only each entry's name is kept,
+ * which avoids File.listFiles building a File with a full path for every entry
+ * before the walk has even filtered them.
+ */
+public class LocalFileSystem implements TreeFileSystem {
+
+  /**
+   * The shared instance; the class has no state.
+   */
+  public static final LocalFileSystem INSTANCE = new LocalFileSystem();
+
+  /**
+   * On Unix-like systems a file is hidden exactly when its name starts with a
+   * dot, which is how File.isHidden decides it there too.
+   */
+  private static final boolean DOT_FILES_HIDDEN = File.separatorChar == '/';
+
+  @Override
+  public String[] list(File dir) throws IOException {
+    return list(dir, null);
+  }
+
+  /**
+   * Checks each name as the directory is streamed, before it is stored.
+   */
+  @Override
+  public String[] list(File dir, NameFilter filter) throws IOException {
+    String[] names = new String[16];
+    int count = 0;
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir.toPath())) {
+      for (Path entry : entries) {
+        String name = entry.getFileName().toString();
+        if (filter != null && !filter.accept(name)) {
+          continue;
+        }
+        if (count == names.length) {
+          names = Arrays.copyOf(names, count * 2);
+        }
+        names[count++] = name;
+      }
+    } catch (DirectoryIteratorException e) {
+      throw e.getCause();
+    } catch (InvalidPathException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+    return count == names.length ? names : Arrays.copyOf(names, count);
+  }
+
+  @Override
+  public boolean isDirectory(File file) {
+    return file.isDirectory();
+  }
+
+  @Override
+  public boolean isFile(File file) {
+    return file.isFile();
+  }
+
+  @Override
+  public long length(File file) {
+    return file.length();
+  }
+
+  @Override
+  public long lastModified(File file) {
+    return file.lastModified();
+  }
+
+  /**
+   * Decides by the name alone where the rule only depends on the name, without
+   * building a File.
+   */
+  @Override
+  public boolean isHidden(File dir, String name) {
+    if (DOT_FILES_HIDDEN) {
+      return name.startsWith(".");
+    }
+    return new File(dir, name).isHidden();
+  }
+}
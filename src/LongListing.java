@@ -0,0 +1,290 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Renders the ls -l style columns shown in front of each entry in long listing
+ * mode: permissions, owner, size and modification time.
+ *
+ * All four values come from a single attribute read per entry (the unix view's
+ * mode, uid, size and time, or the basic attributes where that view is not
+ * supported), and are appended into the caller's line buffer as fixed-width
+ * columns:
+ *
+ * drwxr-xr-x alice          4096 2024-05-01 13:37  src/
+ *
+ * Owner names are looked up once per uid rather than once per entry, the
+ * formatted permission strings are cached by permission bits and the formatted
+ * time by minute, so wide directories of similar files spend almost no time on
+ * anything but the read itself. Entries whose attributes cannot be read, such
+ * as entries inside archives, get question marks in every column.
+ *
+ * The read can also be made up front with read(), as the walker does in long
+ * listing mode, so that the same attributes answer its directory check and
+ * fill the columns, and each entry is read from the disk once.
+ *
+ * An instance keeps its caches unsynchronized; use one per thread.
+ */
+public class LongListing {
+
+  /**
+   * Width of the owner column; longer names push the line to the right.
+   */
+  private static final int OWNER_WIDTH = 8;
+
+  /**
+   * Width of the size column, enough for sizes below 10 GB without overflowing.
+   */
+  private static final int SIZE_WIDTH = 11;
+
+  private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+  /**
+   * Width of the time column, the length of a time in TIME_FORMAT.
+   */
+  private static final int TIME_WIDTH = 16;
+
+  /**
+   * The columns for an entry whose attributes cannot be read.
+   */
+  private static final String UNKNOWN;
+
+  static {
+    StringBuilder unknown = new StringBuilder("??????????").append(' ');
+    pad(unknown, "?", OWNER_WIDTH, false);
+    unknown.append(' ');
+    pad(unknown, "?", SIZE_WIDTH, true);
+    UNKNOWN = unknown.append(" ????-??-?? ??:??  ").toString();
+  }
+
+  /**
+   * The attributes read from the unix view, in one call.
+   */
+  private static final String UNIX_ATTRIBUTES = "unix:mode,uid,size,lastModifiedTime";
+
+  /**
+   * File type bits of a unix mode, and the types shown.
+   */
+  private static final int S_IFMT = 0170000;
+  private static final int S_IFDIR = 0040000;
+  private static final int S_IFLNK = 0120000;
+  private static final int S_IFREG = 0100000;
+
+  /**
+   * Permission letters from the highest permission bit, owner read, down.
+   */
+  private static final char[] PERMISSION_CHARS = {'r', 'w', 'x', 'r', 'w', 'x', 'r', 'w', 'x'};
+
+  private final ZoneId zone = ZoneId.systemDefault();
+  private final String[] permissionCache = new String[512];
+  /**
+   * Cleared the first time the unix view turns out not to be supported.
+   */
+  private static volatile boolean unix = true;
+
+  private final Map<Integer, String> owners = new HashMap<>();
+  private long cachedMinute = Long.MIN_VALUE;
+  private String cachedTime;
+
+  /**
+   * Appends the columns for a file, followed by two spaces.
+   *
+   * @param line the line buffer to append to
+   * @param file the file to describe
+   */
+  public void appendColumns(StringBuilder line, File file) {
+    appendColumns(line, read(file));
+  }
+
+  /**
+   * Appends the columns for attributes that were already read, followed by two
+   * spaces.
+   *
+   * @param line       the line buffer to append to
+   * @param attributes the attributes, or null if they could not be read
+   */
+  public void appendColumns(StringBuilder line, Attributes attributes) {
+    if (attributes == null) {
+      line.append(UNKNOWN);
+      return;
+    }
+    int start = line.length();
+    try {
+      if (attributes.unix != null) {
+        appendUnix(line, attributes.path, attributes.unix);
+      } else {
+        appendBasic(line, attributes.basic);
+      }
+    } catch (IOException | RuntimeException e) {
+      line.setLength(start);
+      line.append(UNKNOWN);
+    }
+  }
+
+  /**
+   * Reads the attributes the columns show, in one call, without following a
+   * symbolic link.
+   *
+   * @param file the file to read
+   * @return the attributes, or null if they cannot be read
+   */
+  public static Attributes read(File file) {
+    try {
+      Path path = file.toPath();
+      if (unix) {
+        try {
+          return new Attributes(path, Files.readAttributes(path, UNIX_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS), null);
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+          unix = false;
+        }
+      }
+      return new Attributes(path, null,
+          Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Appends columns for a line that stands for several files, such as a run
+   * collapsed by RunSummarizer: their total size in the size column and the
+   * other columns blank, followed by two spaces, so the names that follow line
+   * up with those of single entries.
+   *
+   * @param line the line buffer to append to
+   * @param size the total size of the files in bytes
+   */
+  public void appendTotalColumns(StringBuilder line, long size) {
+    pad(line, "", 10, false);
+    line.append(' ');
+    pad(line, "", OWNER_WIDTH, false);
+    line.append(' ');
+    pad(line, Long.toString(size), SIZE_WIDTH, true);
+    line.append(' ');
+    pad(line, "", TIME_WIDTH, false);
+    line.append("  ");
+  }
+
+  private void appendUnix(StringBuilder line, Path path, Map<String, Object> attributes) throws IOException {
+    int mode = (Integer) attributes.get("mode");
+    int type = mode & S_IFMT;
+    line.append(type == S_IFDIR ? 'd' : type == S_IFLNK ? 'l' : type == S_IFREG ? '-' : '?');
+    line.append(permissions(mode & 0777));
+    line.append(' ');
+    pad(line, owner((Integer) attributes.get("uid"), path), OWNER_WIDTH, false);
+    appendSizeAndTime(line, (Long) attributes.get("size"), (FileTime) attributes.get("lastModifiedTime"));
+  }
+
+  private void appendBasic(StringBuilder line, BasicFileAttributes attributes) {
+    line.append(attributes.isDirectory() ? 'd' : attributes.isSymbolicLink() ? 'l'
+        : attributes.isRegularFile() ? '-' : '?');
+    line.append("?????????");
+    line.append(' ');
+    pad(line, "-", OWNER_WIDTH, false);
+    appendSizeAndTime(line, attributes.size(), attributes.lastModifiedTime());
+  }
+
+  private void appendSizeAndTime(StringBuilder line, long size, FileTime modified) {
+    line.append(' ');
+    pad(line, Long.toString(size), SIZE_WIDTH, true);
+    line.append(' ');
+    line.append(time(modified.toMillis()));
+    line.append("  ");
+  }
+
+  /**
+   * Returns the name of the owner with the given uid, looking it up through
+   * the file the first time the uid is seen.
+   */
+  private String owner(int uid, Path path) throws IOException {
+    String name = owners.get(uid);
+    if (name == null) {
+      name = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS).getName();
+      owners.put(uid, name);
+    }
+    return name;
+  }
+
+  private String permissions(int bits) {
+    String cached = permissionCache[bits];
+    if (cached == null) {
+      char[] chars = new char[9];
+      for (int i = 0; i < 9; i++) {
+        chars[i] = (bits & (1 << (8 - i))) != 0 ? PERMISSION_CHARS[i] : '-';
+      }
+      cached = new String(chars);
+      permissionCache[bits] = cached;
+    }
+    return cached;
+  }
+
+  private String time(long millis) {
+    long minute = Math.floorDiv(millis, 60_000L);
+    if (minute != cachedMinute) {
+      cachedTime = TIME_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone));
+      cachedMinute = minute;
+    }
+    return cachedTime;
+  }
+
+  private static void pad(StringBuilder line, String value, int width, boolean right) {
+    if (!right) {
+      line.append(value);
+    }
+    for (int i = value.length(); i < width; i++) {
+      line.append(' ');
+    }
+    if (right) {
+      line.append(value);
+    }
+  }
+
+  /**
+   * The attributes of one file from a single read: the unix view's values, or
+   * the basic attributes where that view is not supported.
+   */
+  public static final class Attributes {
+    private final Path path;
+    private final Map<String, Object> unix;
+    private final BasicFileAttributes basic;
+
+    private Attributes(Path path, Map<String, Object> unix, BasicFileAttributes basic) {
+      this.path = path;
+      this.unix = unix;
+      this.basic = basic;
+    }
+
+    /**
+     * Indicates whether the file is a directory, not counting a symbolic link
+     * to one.
+     *
+     * @return true if the file is a directory; false otherwise
+     */
+    public boolean isDirectory() {
+      return unix != null ? type() == S_IFDIR : basic.isDirectory();
+    }
+
+    /**
+     * Indicates whether the file is a symbolic link.
+     *
+     * @return true if the file is a symbolic link; false otherwise
+     */
+    public boolean isSymbolicLink() {
+      return unix != null ? type() == S_IFLNK : basic.isSymbolicLink();
+    }
+
+    private int type() {
+      return (Integer) unix.get("mode") & S_IFMT;
+    }
+  }
+}
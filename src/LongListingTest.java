@@ -0,0 +1,81 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LongListingTest {
+
+  @Test
+  void testColumnsAreFixedWidth(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File file = new File(tempDir, "data.bin");
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[1234]);
+    }
+    File dir = new File(tempDir, "sub");
+    dir.mkdir();
+    LongListing listing = new LongListing();
+    StringBuilder fileLine = new StringBuilder();
+    StringBuilder dirLine = new StringBuilder();
+
+    // Act
+    listing.appendColumns(fileLine, file);
+    listing.appendColumns(dirLine, dir);
+
+    // Assert: type, size right aligned, time, two spaces, same width for both
+    assertEquals('-', fileLine.charAt(0));
+    assertEquals('d', dirLine.charAt(0));
+    assertTrue(fileLine.toString().matches(".{10} \\S+ +1234 \\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d  "), fileLine.toString());
+    assertEquals(fileLine.length(), dirLine.length());
+  }
+
+  @Test
+  void testUnreadableEntryGetsQuestionMarks(@TempDir File tempDir) {
+    // Arrange
+    StringBuilder line = new StringBuilder("> ");
+
+    // Act
+    new LongListing().appendColumns(line, new File(tempDir, "missing"));
+
+    // Assert
+    assertTrue(line.toString().startsWith("> ?????????? ?"), line.toString());
+    assertTrue(line.toString().endsWith(" ????-??-?? ??:??  "), line.toString());
+  }
+
+  @Test
+  void testWalkerReadsColumnsWithItsStat(@TempDir File tempDir) throws IOException {
+    // Arrange: a file, a directory and a link to the directory
+    new File(tempDir, "data.bin").createNewFile();
+    File dir = new File(tempDir, "sub");
+    dir.mkdir();
+    Files.createSymbolicLink(new File(tempDir, "link").toPath(), dir.toPath());
+    TruffulaOptions options = TruffulaOptions.builder(tempDir).longListing(true).maxDepth(1).build();
+    LongListing listing = new LongListing();
+    Map<String, Boolean> directories = new HashMap<>();
+
+    // Act
+    new TreeWalker(options, null).walk(entry -> {
+      // Assert: every entry carries the columns it would have read itself
+      assertNotNull(entry.getAttributes(), entry.getName());
+      StringBuilder cached = new StringBuilder();
+      StringBuilder read = new StringBuilder();
+      listing.appendColumns(cached, entry.getAttributes());
+      listing.appendColumns(read, entry.getFile());
+      assertEquals(read.toString(), cached.toString());
+      directories.put(entry.getName(), entry.isDirectory());
+      return true;
+    });
+
+    // Assert: the link to a directory is still walked as one
+    assertEquals(Map.of(tempDir.getName(), true, "data.bin", false, "sub", true, "link", true), directories);
+  }
+}
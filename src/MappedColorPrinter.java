@@ -0,0 +1,81 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+
+/**
+ * A ColorPrinter that writes straight into a MappedOutputStream, for --mmap.
+ *
+ * Output skips PrintStream and its charset encoder: color codes are written as
+ * they are, being ASCII, and text goes through MappedOutputStream.writeUtf8,
+ * which copies ASCII characters into the mapped region one byte each. Output
+ * rendered by other printers, such as the parallel engine's buffers, is copied
+ * in as it is.
+ *
+ * The output is byte for byte what a ColorPrinter over a UTF-8 PrintStream
+ * would write. Like ColorPrinter it is not thread safe.
+ *
+ * Example Usage:
+ *
+ * try (MappedOutputStream file = new MappedOutputStream(new File("tree.txt"))) {
+ *   new TruffulaPrinter(options, new MappedColorPrinter(file)).printTree();
+ * }
+ */
+public class MappedColorPrinter extends ColorPrinter {
+
+  private static final String LINE_SEPARATOR = System.lineSeparator();
+
+  private final MappedOutputStream file;
+
+  /**
+   * Constructs a MappedColorPrinter whose current color is white.
+   *
+   * @param file the mapped file to write to
+   */
+  public MappedColorPrinter(MappedOutputStream file) {
+    super(new PrintStream(file, false));
+    this.file = file;
+  }
+
+  @Override
+  public void println(String message, boolean reset) {
+    print(message, LINE_SEPARATOR, reset);
+  }
+
+  @Override
+  public void print(String message, boolean reset) {
+    print(message, null, reset);
+  }
+
+  /**
+   * Writes a message and an optional line end without joining them first.
+   */
+  private void print(String message, String lineEnd, boolean reset) {
+    try {
+      file.writeUtf8(getCurrentColor().toString());
+      file.writeUtf8(message);
+      if (lineEnd != null) {
+        file.writeUtf8(lineEnd);
+      }
+      if (reset) {
+        file.writeUtf8(ConsoleColor.RESET.toString());
+        setCurrentColor(ConsoleColor.RESET);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) {
+    try {
+      file.write(bytes, offset, length);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void flush() {
+    file.flush();
+  }
+}
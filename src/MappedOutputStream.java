@@ -0,0 +1,200 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Writes a file through a memory-mapped region that moves along the file as it
+ * fills, for dumping very large trees with --mmap.
+ *
+ * Bytes are copied straight into the page cache, without a write system call
+ * per buffer. The file is mapped a region at a time; when a region is full the
+ * next one is mapped right after it, which grows the file by a region. writeUtf8
+ * encodes text directly into the region, a byte per character for ASCII, so
+ * most lines never pass through a charset encoder.
+ *
+ * Every few seconds a background thread forces what has been written so far to
+ * disk, whatever the speed of the walk, so the writing thread never waits on
+ * the disk. flush() does nothing: what is written is already visible to readers
+ * of the file. close() cuts the file down to the bytes written and syncs it.
+ *
+ * A run that ends without close(), such as one stopped with Ctrl-C or killed,
+ * leaves everything written before it ended, followed by NUL bytes up to the
+ * end of the last mapped region: less than a region, 1 MB by default. A crash
+ * of the machine can also lose what was written since the last force.
+ *
+ * Example Usage:
+ *
+ * try (MappedOutputStream out = new MappedOutputStream(new File("tree.txt"))) {
+ *   out.writeUtf8("myFolder/\n");
+ * }
+ */
+public class MappedOutputStream extends OutputStream {
+
+  /**
+   * Size of each mapped region, which bounds the padding a run that is stopped
+   * before close() leaves behind.
+   */
+  static final int DEFAULT_REGION_SIZE = 1024 * 1024;
+
+  /**
+   * Time between forces of the written bytes to disk.
+   */
+  static final long FORCE_INTERVAL_MILLIS = 5000;
+
+  private final FileChannel channel;
+  private final int regionSize;
+  private final Timer forcer;
+  private volatile long forces;
+  private MappedByteBuffer region;
+  private long regionStart;
+  private boolean closed;
+
+  /**
+   * Creates or truncates the file and maps its first region.
+   *
+   * @param file the file to write
+   * @throws IOException if the file cannot be opened or mapped
+   */
+  public MappedOutputStream(File file) throws IOException {
+    this(file, DEFAULT_REGION_SIZE, FORCE_INTERVAL_MILLIS);
+  }
+
+  /**
+   * Creates or truncates the file and maps its first region.
+   *
+   * @param file          the file to write
+   * @param regionSize    the size of each mapped region in bytes
+   * @param forceInterval the time between forces to disk in milliseconds
+   * @throws IOException if the file cannot be opened or mapped
+   */
+  MappedOutputStream(File file, int regionSize, long forceInterval) throws IOException {
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    this.regionSize = regionSize;
+    try {
+      this.region = channel.map(FileChannel.MapMode.READ_WRITE, 0, regionSize);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    this.forcer = new Timer("truffula-mmap-force", true);
+    forcer.schedule(new TimerTask() {
+      @Override
+      public void run() {
+        try {
+          //syncs the file's dirty pages, those of every mapped region included
+          channel.force(false);
+          forces++;
+        } catch (IOException e) {
+          //closed under the timer; close() syncs the file itself
+        }
+      }
+    }, forceInterval, forceInterval);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if (!region.hasRemaining()) {
+      nextRegion();
+    }
+    region.put((byte) b);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    while (length > 0) {
+      if (!region.hasRemaining()) {
+        nextRegion();
+      }
+      int n = Math.min(length, region.remaining());
+      region.put(bytes, offset, n);
+      offset += n;
+      length -= n;
+    }
+  }
+
+  /**
+   * Writes text as UTF-8, encoding ASCII characters straight into the region.
+   *
+   * @param text the text to write
+   * @throws IOException if the next region cannot be mapped
+   */
+  public void writeUtf8(String text) throws IOException {
+    int i = 0;
+    int length = text.length();
+    while (i < length) {
+      if (!region.hasRemaining()) {
+        nextRegion();
+      }
+      int end = Math.min(length, i + region.remaining());
+      for (; i < end; i++) {
+        char c = text.charAt(i);
+        if (c >= 0x80) {
+          //rare in file names; encode the rest the slow way
+          byte[] rest = text.substring(i).getBytes(StandardCharsets.UTF_8);
+          write(rest, 0, rest.length);
+          return;
+        }
+        region.put((byte) c);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes written so far.
+   *
+   * @return the position in the file
+   */
+  public long size() {
+    return regionStart + region.position();
+  }
+
+  /**
+   * Returns the number of times the written bytes were forced to disk by the
+   * background thread, for tests.
+   */
+  long getForces() {
+    return forces;
+  }
+
+  /**
+   * Does nothing: the mapped bytes are already visible to readers of the file.
+   */
+  @Override
+  public void flush() {
+  }
+
+  /**
+   * Cuts the file down to the bytes written, forces everything written to disk
+   * and closes the file.
+   *
+   * @throws IOException if the file cannot be truncated or closed
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    forcer.cancel();
+    try {
+      //regions left without a force are still dirty pages of this file, which the sync writes out
+      region.force();
+      channel.truncate(size());
+      channel.force(false);
+    } finally {
+      channel.close();
+    }
+  }
+
+  private void nextRegion() throws IOException {
+    regionStart += regionSize;
+    region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, regionSize);
+  }
+}
@@ -0,0 +1,95 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedOutputStreamTest {
+
+  @Test
+  void testWritesAcrossRegionsAndTruncates(@TempDir File tempDir) throws IOException {
+    // Arrange: regions of 16 bytes, so most writes cross one
+    File file = new File(tempDir, "out.txt");
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+    // Act
+    try (MappedOutputStream out = new MappedOutputStream(file, 16, MappedOutputStream.FORCE_INTERVAL_MILLIS)) {
+      for (int i = 0; i < 50; i++) {
+        String text = i % 7 == 0 ? "résumé-" + i + " 🌳\n" : "line-" + i + "\n";
+        out.writeUtf8(text);
+        expected.writeBytes(text.getBytes(StandardCharsets.UTF_8));
+        byte[] raw = {'#', (byte) i};
+        out.write(raw, 0, raw.length);
+        out.write('!');
+        expected.writeBytes(raw);
+        expected.write('!');
+      }
+      assertEquals(expected.size(), out.size());
+    }
+
+    // Assert
+    assertArrayEquals(expected.toByteArray(), Files.readAllBytes(file.toPath()));
+  }
+
+  @Test
+  void testMappedPrinterMatchesStreamPrinter(@TempDir File tempDir) throws IOException {
+    // Arrange
+    MemoryFileSystem fs = MemoryFileSystem.builder(new File("/mem/root"))
+        .addFile("docs/notes.txt", 1)
+        .addFile("docs/naïve café.txt", 1)
+        .addFile("src/main.java", 1)
+        .build();
+    TruffulaOptions options = TruffulaOptions.builder(new File("/mem/root")).fileSystem(fs).build();
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    new TruffulaPrinter(options, new PrintStream(stream, false, StandardCharsets.UTF_8)).printTree();
+    File file = new File(tempDir, "tree.txt");
+
+    // Act
+    try (MappedOutputStream out = new MappedOutputStream(file, 32, MappedOutputStream.FORCE_INTERVAL_MILLIS)) {
+      new TruffulaPrinter(options, new MappedColorPrinter(out)).printTree();
+    }
+
+    // Assert
+    assertArrayEquals(stream.toByteArray(), Files.readAllBytes(file.toPath()));
+  }
+
+  @Test
+  void testStoppedRunLeavesAtMostARegionOfPadding(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File file = new File(tempDir, "out.txt");
+
+    // Act: 40 bytes in regions of 16, read before close as a killed run would leave them
+    try (MappedOutputStream out = new MappedOutputStream(file, 16, MappedOutputStream.FORCE_INTERVAL_MILLIS)) {
+      out.writeUtf8("0123456789".repeat(4));
+
+      // Assert
+      assertEquals(48, file.length());
+    }
+    assertEquals(40, file.length());
+  }
+
+  @Test
+  void testSlowWriterIsForcedOnTime(@TempDir File tempDir) throws IOException, InterruptedException {
+    // Arrange: a force every 20 ms and a writer that never fills a region
+    File file = new File(tempDir, "out.txt");
+
+    // Act
+    try (MappedOutputStream out = new MappedOutputStream(file, 1024, 20)) {
+      for (int i = 0; i < 10 && out.getForces() == 0; i++) {
+        out.writeUtf8("line " + i + "\n");
+        Thread.sleep(50);
+      }
+
+      // Assert
+      assertTrue(out.getForces() > 0);
+    }
+  }
+}
@@ -0,0 +1,361 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A read-only tree held in memory, under a root path that does not need to
+ * exist on disk.
+ *
+ * Like CompactTree, the tree is stored in parallel arrays indexed by node
+ * number rather than as node objects: for each node its name, the position of
+ * its first child, its number of children (-1 for a file), its size and its
+ * modification time, about 30 bytes per node on top of the names. Children
+ * are stored next to each other, sorted by name, so a path is resolved by a
+ * binary search per level. Generated trees share one String per distinct name,
+ * so a tree of millions of nodes takes tens of megabytes.
+ *
+ * Names starting with a dot are hidden.
+ *
+ * Example Usage:
+ *
+ * MemoryFileSystem fs = MemoryFileSystem.builder(new File("/mem"))
+ *     .addFile("docs/notes.txt", 120)
+ *     .addDirectory("empty")
+ *     .build();
+ * MemoryFileSystem big = MemoryFileSystem.generate(new File("/mem"), 4, 10, 100);
+ */
+public class MemoryFileSystem implements TreeFileSystem {
+
+  /**
+   * The child count of a node that is a file.
+   */
+  private static final int FILE = -1;
+
+  private final String rootPath;
+  private final String rootPrefix;
+  private final String[] names;
+  private final int[] firstChild;
+  private final int[] childCount;
+  private final long[] sizes;
+  private final long[] modified;
+
+  private MemoryFileSystem(File root, int nodes) {
+    this.rootPath = root.getPath();
+    this.rootPrefix = rootPath.endsWith(File.separator) ? rootPath : rootPath + File.separator;
+    this.names = new String[nodes];
+    this.firstChild = new int[nodes];
+    this.childCount = new int[nodes];
+    this.sizes = new long[nodes];
+    this.modified = new long[nodes];
+    names[0] = root.getName();
+  }
+
+  /**
+   * Generates a uniform tree: every directory holds filesPerDir files named
+   * file0, file1, ..., and every directory less than depth levels below the
+   * root also holds dirsPerDir directories named dir0, dir1, .... Sizes and
+   * times vary from file to file but are the same on every run.
+   *
+   * @param root        the path of the root directory
+   * @param depth       the number of directory levels below the root
+   * @param dirsPerDir  the number of subdirectories of each directory above the last level
+   * @param filesPerDir the number of files in each directory
+   * @return the file system
+   * @throws IllegalArgumentException if the tree would have more than Integer.MAX_VALUE nodes
+   */
+  public static MemoryFileSystem generate(File root, int depth, int dirsPerDir, int filesPerDir) {
+    long total = 1;
+    long dirs = 1;
+    for (int level = 0; level <= depth; level++) {
+      long subdirs = level < depth ? dirs * dirsPerDir : 0;
+      total += subdirs + dirs * filesPerDir;
+      dirs = subdirs;
+      if (total > Integer.MAX_VALUE - 8) {
+        throw new IllegalArgumentException("tree too large: more than " + Integer.MAX_VALUE + " nodes");
+      }
+    }
+
+    //one shared, sorted set of names for every directory; "dir" sorts before "file"
+    String[] dirNames = numbered("dir", dirsPerDir);
+    String[] fileNames = numbered("file", filesPerDir);
+
+    MemoryFileSystem fs = new MemoryFileSystem(root, (int) total);
+    long now = System.currentTimeMillis();
+    fs.modified[0] = now;
+    int next = 1;
+    int levelStart = 0;
+    int levelEnd = 1;
+    for (int level = 0; level <= depth; level++) {
+      for (int node = levelStart; node < levelEnd; node++) {
+        if (fs.childCount[node] == FILE) {
+          continue;
+        }
+        int subdirs = level < depth ? dirsPerDir : 0;
+        fs.firstChild[node] = next;
+        fs.childCount[node] = subdirs + filesPerDir;
+        for (int i = 0; i < subdirs; i++) {
+          fs.names[next] = dirNames[i];
+          fs.modified[next] = now;
+          next++;
+        }
+        for (int i = 0; i < filesPerDir; i++) {
+          long hash = next * 0x9E3779B97F4A7C15L;
+          fs.names[next] = fileNames[i];
+          fs.childCount[next] = FILE;
+          fs.sizes[next] = (hash >>> 40) & 0xFFFFF;
+          fs.modified[next] = now - ((hash >>> 20) & 0xFFFFFFF);
+          next++;
+        }
+      }
+      levelStart = levelEnd;
+      levelEnd = next;
+    }
+    return fs;
+  }
+
+  private static String[] numbered(String prefix, int count) {
+    String[] numbered = new String[count];
+    for (int i = 0; i < count; i++) {
+      numbered[i] = prefix + i;
+    }
+    Arrays.sort(numbered);
+    return numbered;
+  }
+
+  /**
+   * Creates a builder for a tree with the given root path.
+   *
+   * @param root the path of the root directory
+   * @return a new builder
+   */
+  public static Builder builder(File root) {
+    return new Builder(root);
+  }
+
+  /**
+   * Returns the number of files and directories, the root included.
+   *
+   * @return the number of nodes
+   */
+  public int size() {
+    return names.length;
+  }
+
+  @Override
+  public String[] list(File dir) throws IOException {
+    int node = resolve(dir);
+    if (node < 0 || childCount[node] == FILE) {
+      throw new IOException("not a directory: " + dir);
+    }
+    return Arrays.copyOfRange(names, firstChild[node], firstChild[node] + childCount[node]);
+  }
+
+  @Override
+  public boolean isDirectory(File file) {
+    int node = resolve(file);
+    return node >= 0 && childCount[node] != FILE;
+  }
+
+  @Override
+  public boolean isFile(File file) {
+    int node = resolve(file);
+    return node >= 0 && childCount[node] == FILE;
+  }
+
+  @Override
+  public long length(File file) {
+    int node = resolve(file);
+    return node < 0 ? 0 : sizes[node];
+  }
+
+  @Override
+  public long lastModified(File file) {
+    int node = resolve(file);
+    return node < 0 ? 0 : modified[node];
+  }
+
+  @Override
+  public boolean isHidden(File dir, String name) {
+    return name.startsWith(".");
+  }
+
+  /**
+   * Returns the node for a path, or -1 if there is none.
+   */
+  private int resolve(File file) {
+    String path = file.getPath();
+    if (path.equals(rootPath)) {
+      return 0;
+    }
+    if (!path.startsWith(rootPrefix)) {
+      return -1;
+    }
+    int node = 0;
+    int start = rootPrefix.length();
+    while (start < path.length()) {
+      int end = path.indexOf(File.separatorChar, start);
+      if (end < 0) {
+        end = path.length();
+      }
+      node = child(node, path, start, end);
+      if (node < 0) {
+        return -1;
+      }
+      start = end + 1;
+    }
+    return node;
+  }
+
+  /**
+   * Binary searches the children of a node for the name at path[start, end).
+   */
+  private int child(int node, String path, int start, int end) {
+    if (childCount[node] == FILE) {
+      return -1;
+    }
+    int low = firstChild[node];
+    int high = low + childCount[node] - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int c = compare(names[mid], path, start, end);
+      if (c < 0) {
+        low = mid + 1;
+      } else if (c > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * String.compareTo between a name and a region of a path, without copying the region.
+   */
+  private static int compare(String name, String path, int start, int end) {
+    int length = end - start;
+    int n = Math.min(name.length(), length);
+    for (int i = 0; i < n; i++) {
+      char a = name.charAt(i);
+      char b = path.charAt(start + i);
+      if (a != b) {
+        return a - b;
+      }
+    }
+    return name.length() - length;
+  }
+
+  /**
+   * Builds a MemoryFileSystem from paths relative to the root. Parent
+   * directories are created as needed.
+   */
+  public static class Builder {
+    private final File root;
+    private final Entry rootEntry = new Entry(true, 0);
+    private int count = 1;
+
+    private Builder(File root) {
+      this.root = root;
+    }
+
+    /**
+     * @param path the path of the directory relative to the root, with / between names
+     * @return this builder
+     */
+    public Builder addDirectory(String path) {
+      entry(path, true, 0);
+      return this;
+    }
+
+    /**
+     * @param path the path of the file relative to the root, with / between names
+     * @param size the size of the file in bytes
+     * @return this builder
+     */
+    public Builder addFile(String path, long size) {
+      entry(path, false, size);
+      return this;
+    }
+
+    /**
+     * @param path     the path of the file relative to the root, with / between names
+     * @param size     the size of the file in bytes
+     * @param modified the last modified time in milliseconds since the epoch
+     * @return this builder
+     */
+    public Builder addFile(String path, long size, long modified) {
+      entry(path, false, size).modified = modified;
+      return this;
+    }
+
+    private Entry entry(String path, boolean directory, long size) {
+      Entry parent = rootEntry;
+      String[] parts = path.split("/");
+      for (int i = 0; i < parts.length; i++) {
+        if (parts[i].isEmpty()) {
+          continue;
+        }
+        if (parent.children == null) {
+          throw new IllegalArgumentException("not a directory in " + path);
+        }
+        boolean last = i == parts.length - 1;
+        Entry child = parent.children.get(parts[i]);
+        if (child == null) {
+          child = new Entry(!last || directory, last ? size : 0);
+          parent.children.put(parts[i], child);
+          count++;
+        }
+        parent = child;
+      }
+      return parent;
+    }
+
+    /**
+     * @return the file system
+     */
+    public MemoryFileSystem build() {
+      MemoryFileSystem fs = new MemoryFileSystem(root, count);
+      ArrayDeque<Entry> queue = new ArrayDeque<>();
+      ArrayDeque<Integer> nodes = new ArrayDeque<>();
+      queue.add(rootEntry);
+      nodes.add(0);
+      int next = 1;
+      while (!queue.isEmpty()) {
+        Entry entry = queue.poll();
+        int node = nodes.poll();
+        fs.sizes[node] = entry.size;
+        fs.modified[node] = entry.modified;
+        if (entry.children == null) {
+          fs.childCount[node] = FILE;
+          continue;
+        }
+        fs.firstChild[node] = next;
+        fs.childCount[node] = entry.children.size();
+        for (Map.Entry<String, Entry> child : entry.children.entrySet()) {
+          fs.names[next] = child.getKey();
+          queue.add(child.getValue());
+          nodes.add(next);
+          next++;
+        }
+      }
+      return fs;
+    }
+  }
+
+  /**
+   * A node of a tree being built.
+   */
+  private static class Entry {
+    private final TreeMap<String, Entry> children;
+    private final long size;
+    private long modified = System.currentTimeMillis();
+
+    private Entry(boolean directory, long size) {
+      this.children = directory ? new TreeMap<>() : null;
+      this.size = size;
+    }
+  }
+}
@@ -0,0 +1,175 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class MemoryFileSystemTest {
+
+  private static final File ROOT = new File("/mem/root");
+
+  @Test
+  void testPrintsBuiltTreeWithoutTouchingDisk() {
+    // Arrange
+    MemoryFileSystem fs = MemoryFileSystem.builder(ROOT)
+        .addFile("zebra.txt", 1)
+        .addFile("Docs/notes.txt", 2)
+        .addFile("Docs/images/cat.png", 3)
+        .addFile(".hidden", 4)
+        .addDirectory("empty")
+        .build();
+    TruffulaOptions options = TruffulaOptions.builder(ROOT).useColor(false).fileSystem(fs).build();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    // Act
+    new TruffulaPrinter(options, new PrintStream(output)).printTree();
+
+    // Assert
+    String nl = System.lineSeparator();
+    String expected = "root/" + nl
+        + "   Docs/" + nl
+        + "      images/" + nl
+        + "         cat.png" + nl
+        + "      notes.txt" + nl
+        + "   empty/" + nl
+        + "   zebra.txt" + nl;
+    assertEquals(expected, output.toString().replace(ConsoleColor.WHITE.toString(), "")
+        .replace(ConsoleColor.RESET.toString(), ""));
+  }
+
+  @Test
+  void testStatQueries() throws IOException {
+    // Arrange
+    MemoryFileSystem fs = MemoryFileSystem.builder(ROOT).addFile("a/b.txt", 42, 1000).build();
+
+    // Assert
+    assertTrue(fs.isDirectory(ROOT));
+    assertTrue(fs.isDirectory(new File(ROOT, "a")));
+    assertTrue(fs.isFile(new File(ROOT, "a/b.txt")));
+    assertEquals(42, fs.length(new File(ROOT, "a/b.txt")));
+    assertEquals(1000, fs.lastModified(new File(ROOT, "a/b.txt")));
+    assertFalse(fs.isFile(new File(ROOT, "a/c.txt")));
+    assertFalse(fs.isDirectory(new File("/elsewhere")));
+    assertArrayEquals(new String[] {"b.txt"}, fs.list(new File(ROOT, "a")));
+    assertThrows(IOException.class, () -> fs.list(new File(ROOT, "a/b.txt")));
+  }
+
+  @Test
+  void testGeneratedTreeIsWalkedCompletely() {
+    // Arrange: 1 + 10 + 100 + 1000 directories, each with 20 files
+    MemoryFileSystem fs = MemoryFileSystem.generate(ROOT, 3, 10, 20);
+    TruffulaOptions options = TruffulaOptions.builder(ROOT).fileSystem(fs).build();
+
+    // Act
+    long entries = new TreeWalker(options, null).stream().count();
+
+    // Assert
+    assertEquals(1111 + 1111 * 20, fs.size());
+    assertEquals(fs.size(), entries);
+  }
+
+  @Test
+  void testSizeOrderReadsFromFileSystem() {
+    // Arrange
+    MemoryFileSystem fs = MemoryFileSystem.builder(ROOT)
+        .addFile("small", 1).addFile("large", 300).addFile("medium", 20).build();
+    TruffulaOptions options = TruffulaOptions.builder(ROOT).fileSystem(fs)
+        .sortOrder(TruffulaOptions.SortOrder.SIZE).build();
+
+    // Act
+    Object[] names = new TreeWalker(options, null).stream().skip(1).map(TreeEntry::getName).toArray();
+
+    // Assert
+    assertEquals(Arrays.asList("large", "medium", "small"), Arrays.asList(names));
+  }
+
+  @Test
+  void testEntryMetadataReadsFromFileSystem() {
+    // Arrange
+    MemoryFileSystem fs = MemoryFileSystem.builder(ROOT)
+        .addFile("small", 1, 3000).addFile("large", 300, 1000).addFile("medium", 20, 2000).build();
+    TruffulaOptions options = TruffulaOptions.builder(ROOT).fileSystem(fs).build();
+
+    // Act
+    long[] sizes = new TreeWalker(options, null).stream().skip(1)
+        .sorted((a, b) -> Long.compare(b.length(), a.length())).mapToLong(TreeEntry::length).toArray();
+    long[] modified = new TreeWalker(options, null).stream().skip(1).mapToLong(TreeEntry::lastModified).toArray();
+
+    // Assert: none of these paths exist on disk
+    assertArrayEquals(new long[] {300, 20, 1}, sizes);
+    assertArrayEquals(new long[] {1000, 2000, 3000}, modified);
+  }
+
+  @Test
+  void testCompactTreeHidesByFileSystemRule() {
+    // Arrange: a file system that hides backups instead of dot files
+    MemoryFileSystem memory = MemoryFileSystem.builder(ROOT)
+        .addFile("notes.txt", 1).addFile("notes.txt~", 1).addFile(".profile", 1).build();
+    TreeFileSystem fs = new TreeFileSystem() {
+      @Override
+      public String[] list(File dir) throws IOException {
+        return memory.list(dir);
+      }
+
+      @Override
+      public boolean isDirectory(File file) {
+        return memory.isDirectory(file);
+      }
+
+      @Override
+      public boolean isFile(File file) {
+        return memory.isFile(file);
+      }
+
+      @Override
+      public long length(File file) {
+        return memory.length(file);
+      }
+
+      @Override
+      public long lastModified(File file) {
+        return memory.lastModified(file);
+      }
+
+      @Override
+      public boolean isHidden(File dir, String name) {
+        return name.endsWith("~");
+      }
+    };
+    TruffulaOptions options = TruffulaOptions.builder(ROOT).useColor(false).fileSystem(fs).build();
+    CompactTree tree = CompactTree.build(new TreeWalker(options.toBuilder().showHidden(true).build(), null));
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    // Act
+    new TruffulaPrinter(options, new PrintStream(output)).printTree(tree);
+
+    // Assert
+    String nl = System.lineSeparator();
+    assertEquals("root/" + nl + "   .profile" + nl + "   notes.txt" + nl, output.toString()
+        .replace(ConsoleColor.WHITE.toString(), "").replace(ConsoleColor.RESET.toString(), ""));
+  }
+
+  @Test
+  void testLatencyIsAddedToEveryCall() throws IOException {
+    // Arrange: 2 ms per listing
+    TreeFileSystem fs = new LatencyFileSystem(MemoryFileSystem.generate(ROOT, 0, 0, 3), 2_000_000, 0);
+    long start = System.nanoTime();
+
+    // Act
+    for (int i = 0; i < 10; i++) {
+      fs.list(ROOT);
+    }
+
+    // Assert
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 20);
+  }
+}
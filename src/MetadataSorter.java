@@ -0,0 +1,143 @@
+import java.io.File;
+import java.util.stream.IntStream;
+
+/**
+ * Utility class for sorting the entries of a directory by size, modification
+ * time or extension.
+ *
+ * The names are first sorted with AlphabeticalFileSorter, so entries with equal
+ * keys stay in name order. For size and time, the metadata of every entry is
+ * then fetched in one pass before sorting, one stat call per entry, and the
+ * sort compares the fetched values as longs with KeySorter; nothing is read
+ * from the file system while comparing. When the first few stat calls show the
+ * file system is slow, such as a network mount, the rest are made in parallel.
+ *
+ * Orders:
+ * - SIZE: largest first, like ls -S.
+ * - MTIME: most recently modified first, like ls -t.
+ * - EXTENSION: by the text after the last dot, ignoring case, names without an
+ *   extension first, like ls -X.
+ */
+public class MetadataSorter {
+
+  /**
+   * A stat call slower than this, on average, marks the file system as slow.
+   */
+  static final long SLOW_STAT_NANOS = 200_000;
+
+  /**
+   * Number of stat calls timed before deciding whether to go parallel.
+   */
+  private static final int SAMPLE_SIZE = 16;
+
+  /**
+   * Fewest remaining entries worth handing to other threads.
+   */
+  private static final int MIN_PARALLEL = 64;
+
+  /**
+   * Sorts the names of a directory's entries in the given order.
+   *
+   * @param dir   the directory the names are in
+   * @param names the names to sort, in place
+   * @param order SIZE, MTIME or EXTENSION; any other order sorts by name
+   * @return the sorted names
+   */
+  public static String[] sort(File dir, String[] names, TruffulaOptions.SortOrder order) {
+    return sort(LocalFileSystem.INSTANCE, dir, names, order);
+  }
+
+  /**
+   * Sorts the names of a directory's entries in the given order, reading sizes
+   * and times from the given file system.
+   *
+   * @param fs    the file system the directory is on
+   * @param dir   the directory the names are in
+   * @param names the names to sort, in place
+   * @param order SIZE, MTIME or EXTENSION; any other order sorts by name
+   * @return the sorted names
+   */
+  public static String[] sort(TreeFileSystem fs, File dir, String[] names, TruffulaOptions.SortOrder order) {
+    AlphabeticalFileSorter.sort(names);
+    switch (order) {
+      case SIZE:
+        return KeySorter.apply(names, KeySorter.order(negate(prefetch(fs, dir, names, false))));
+      case MTIME:
+        return KeySorter.apply(names, KeySorter.order(negate(prefetch(fs, dir, names, true))));
+      case EXTENSION:
+        return KeySorter.apply(names, KeySorter.order(extensions(names)));
+      default:
+        return names;
+    }
+  }
+
+  /**
+   * Reads the size or modification time of every entry, in parallel when the
+   * file system turns out to be slow.
+   *
+   * @param dir      the directory the names are in
+   * @param names    the names of the entries
+   * @param modified true to read modification times, false to read sizes
+   * @return the value for each name, 0 for entries that cannot be read
+   */
+  public static long[] prefetch(File dir, String[] names, boolean modified) {
+    return prefetch(LocalFileSystem.INSTANCE, dir, names, modified);
+  }
+
+  /**
+   * Reads the size or modification time of every entry from the given file
+   * system, in parallel when it turns out to be slow.
+   *
+   * @param fs       the file system the directory is on
+   * @param dir      the directory the names are in
+   * @param names    the names of the entries
+   * @param modified true to read modification times, false to read sizes
+   * @return the value for each name, 0 for entries that cannot be read
+   */
+  public static long[] prefetch(TreeFileSystem fs, File dir, String[] names, boolean modified) {
+    long[] values = new long[names.length];
+    int sample = Math.min(SAMPLE_SIZE, names.length);
+    long start = System.nanoTime();
+    for (int i = 0; i < sample; i++) {
+      values[i] = stat(fs, dir, names[i], modified);
+    }
+    long perStat = sample == 0 ? 0 : (System.nanoTime() - start) / sample;
+    if (names.length - sample >= MIN_PARALLEL && perStat >= SLOW_STAT_NANOS) {
+      IntStream.range(sample, names.length).parallel()
+          .forEach(i -> values[i] = stat(fs, dir, names[i], modified));
+    } else {
+      for (int i = sample; i < names.length; i++) {
+        values[i] = stat(fs, dir, names[i], modified);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Returns the lower case extension of each name, or "" for names without one.
+   * A leading dot, as in ".profile", does not start an extension.
+   *
+   * @param names the names
+   * @return the extension of each name
+   */
+  public static String[] extensions(String[] names) {
+    String[] extensions = new String[names.length];
+    for (int i = 0; i < names.length; i++) {
+      int dot = names[i].lastIndexOf('.');
+      extensions[i] = dot > 0 ? names[i].substring(dot + 1).toLowerCase() : "";
+    }
+    return extensions;
+  }
+
+  private static long stat(TreeFileSystem fs, File dir, String name, boolean modified) {
+    File file = new File(dir, name);
+    return modified ? fs.lastModified(file) : fs.length(file);
+  }
+
+  private static long[] negate(long[] values) {
+    for (int i = 0; i < values.length; i++) {
+      values[i] = -values[i];
+    }
+    return values;
+  }
+}
@@ -0,0 +1,69 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MetadataSorterTest {
+
+  private static File write(File dir, String name, int size, long modified) throws IOException {
+    File file = new File(dir, name);
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[size]);
+    }
+    file.setLastModified(modified);
+    return file;
+  }
+
+  @Test
+  void testSizeAndTimeOrders(@TempDir File tempDir) throws IOException {
+    // Arrange: b and c are the same size, so they stay in name order
+    write(tempDir, "a.txt", 10, 3_000_000);
+    write(tempDir, "B.txt", 30, 1_000_000);
+    write(tempDir, "c.txt", 30, 2_000_000);
+
+    // Act
+    String[] bySize = MetadataSorter.sort(tempDir, new String[] {"c.txt", "a.txt", "B.txt"},
+        TruffulaOptions.SortOrder.SIZE);
+    String[] byTime = MetadataSorter.sort(tempDir, new String[] {"c.txt", "a.txt", "B.txt"},
+        TruffulaOptions.SortOrder.MTIME);
+
+    // Assert
+    assertArrayEquals(new String[] {"B.txt", "c.txt", "a.txt"}, bySize);
+    assertArrayEquals(new String[] {"a.txt", "c.txt", "B.txt"}, byTime);
+  }
+
+  @Test
+  void testExtensionOrder(@TempDir File tempDir) {
+    // Arrange
+    String[] names = {"z.TXT", "b.log", ".profile", "a.txt", "Makefile", "a.LOG"};
+
+    // Act
+    MetadataSorter.sort(tempDir, names, TruffulaOptions.SortOrder.EXTENSION);
+
+    // Assert: no extension first, then by extension, then by name
+    assertArrayEquals(new String[] {".profile", "Makefile", "a.LOG", "b.log", "a.txt", "z.TXT"}, names);
+  }
+
+  @Test
+  void testKeySorterIsStable() {
+    // Arrange: enough keys to go through the merge step
+    long[] keys = new long[100];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = (99 - i) / 10;
+    }
+
+    // Act
+    int[] order = KeySorter.order(keys);
+
+    // Assert: each group of equal keys keeps its input order
+    int[] expected = new int[100];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = 90 - (i / 10) * 10 + i % 10;
+    }
+    assertArrayEquals(expected, order);
+  }
+}
@@ -0,0 +1,181 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Matches file names against several patterns at once, for --find.
+ *
+ * A pattern matches a name that contains it. A pattern starting with ^ only
+ * matches a name that starts with the rest of it. Matching is case sensitive,
+ * like the file system.
+ *
+ * The patterns are compiled once into an Aho-Corasick automaton, turned into a
+ * transition table so that matching reads each character of a name once and
+ * never backtracks, whatever the number of patterns. To keep the table small,
+ * characters are first mapped to classes: one per distinct character in the
+ * patterns, and one shared by every other character, which always leads back
+ * to the start. A ^ pattern is stored behind a marker character that is fed in
+ * before each name and never occurs in one, so prefixes need no second pass.
+ *
+ * Example Usage:
+ *
+ * NameMatcher matcher = NameMatcher.compile(List.of("report", "^tmp"));
+ * matcher.matches("q3-report.pdf"); // true
+ * matcher.matches("old-tmp");       // false
+ */
+public class NameMatcher {
+
+  /**
+   * Marks the start of a name; '\0' cannot occur in a file name.
+   */
+  private static final char START = '\0';
+
+  /**
+   * Characters below this are mapped to classes through an array.
+   */
+  private static final int DIRECT = 128;
+
+  private final int[] directClasses;
+  private final char[] otherChars;
+  private final int[] otherClasses;
+  private final int classes;
+  private final int[] next;
+  private final boolean[] accepting;
+
+  private NameMatcher(int[] directClasses, char[] otherChars, int[] otherClasses, int classes,
+      int[] next, boolean[] accepting) {
+    this.directClasses = directClasses;
+    this.otherChars = otherChars;
+    this.otherClasses = otherClasses;
+    this.classes = classes;
+    this.next = next;
+    this.accepting = accepting;
+  }
+
+  /**
+   * Compiles the patterns into a matcher.
+   *
+   * @param patterns the patterns, each a substring or ^ followed by a prefix
+   * @return the matcher
+   * @throws IllegalArgumentException if there are no patterns or one is empty
+   */
+  public static NameMatcher compile(List<String> patterns) {
+    if (patterns.isEmpty()) {
+      throw new IllegalArgumentException("no patterns to find");
+    }
+    List<String> keys = new ArrayList<>();
+    for (String pattern : patterns) {
+      String key = pattern.startsWith("^") ? START + pattern.substring(1) : pattern;
+      if (key.isEmpty() || key.equals(String.valueOf(START))) {
+        throw new IllegalArgumentException("empty pattern to find");
+      }
+      keys.add(key);
+    }
+
+    //class 0 is every character that is in no pattern
+    int[] directClasses = new int[DIRECT];
+    char[] seen = new char[0];
+    int classes = 1;
+    for (String key : keys) {
+      for (int i = 0; i < key.length(); i++) {
+        char c = key.charAt(i);
+        if (c < DIRECT) {
+          if (directClasses[c] == 0) {
+            directClasses[c] = classes++;
+          }
+        } else if (Arrays.binarySearch(seen, c) < 0) {
+          seen = Arrays.copyOf(seen, seen.length + 1);
+          seen[seen.length - 1] = c;
+          Arrays.sort(seen);
+        }
+      }
+    }
+    int[] otherClasses = new int[seen.length];
+    for (int i = 0; i < seen.length; i++) {
+      otherClasses[i] = classes++;
+    }
+
+    //the trie, with -1 for a missing edge
+    int maxStates = 1;
+    for (String key : keys) {
+      maxStates += key.length();
+    }
+    int[] next = new int[maxStates * classes];
+    Arrays.fill(next, -1);
+    boolean[] accepting = new boolean[maxStates];
+    int states = 1;
+    for (String key : keys) {
+      int state = 0;
+      for (int i = 0; i < key.length(); i++) {
+        int slot = state * classes + classOf(key.charAt(i), directClasses, seen, otherClasses);
+        if (next[slot] < 0) {
+          next[slot] = states++;
+        }
+        state = next[slot];
+      }
+      accepting[state] = true;
+    }
+
+    //breadth first, fill in missing edges from the failure state's, which is already complete
+    int[] fail = new int[states];
+    ArrayDeque<Integer> queue = new ArrayDeque<>();
+    for (int c = 0; c < classes; c++) {
+      if (next[c] < 0) {
+        next[c] = 0;
+      } else {
+        fail[next[c]] = 0;
+        queue.add(next[c]);
+      }
+    }
+    while (!queue.isEmpty()) {
+      int state = queue.poll();
+      accepting[state] |= accepting[fail[state]];
+      for (int c = 0; c < classes; c++) {
+        int slot = state * classes + c;
+        int target = next[slot];
+        if (target < 0) {
+          next[slot] = next[fail[state] * classes + c];
+        } else {
+          fail[target] = next[fail[state] * classes + c];
+          queue.add(target);
+        }
+      }
+    }
+
+    return new NameMatcher(directClasses, seen, otherClasses, classes,
+        Arrays.copyOf(next, states * classes), Arrays.copyOf(accepting, states));
+  }
+
+  /**
+   * Returns whether any pattern matches the name.
+   *
+   * @param name the file name
+   * @return true if the name contains a pattern or starts with a ^ pattern
+   */
+  public boolean matches(String name) {
+    int state = next[classOf(START)];
+    if (accepting[state]) {
+      return true;
+    }
+    for (int i = 0; i < name.length(); i++) {
+      state = next[state * classes + classOf(name.charAt(i))];
+      if (accepting[state]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private int classOf(char c) {
+    return classOf(c, directClasses, otherChars, otherClasses);
+  }
+
+  private static int classOf(char c, int[] directClasses, char[] otherChars, int[] otherClasses) {
+    if (c < DIRECT) {
+      return directClasses[c];
+    }
+    int i = Arrays.binarySearch(otherChars, c);
+    return i < 0 ? 0 : otherClasses[i];
+  }
+}
@@ -0,0 +1,45 @@
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class NameMatcherTest {
+
+  @Test
+  void testSubstringsAndPrefixes() {
+    // Arrange
+    NameMatcher matcher = NameMatcher.compile(List.of("report", "^tmp", "ers", "résumé"));
+
+    // Act + Assert
+    assertTrue(matcher.matches("q3-report.pdf"));
+    assertTrue(matcher.matches("tmp-1234"));
+    assertTrue(matcher.matches("tmp"));
+    assertTrue(matcher.matches("users"));
+    assertTrue(matcher.matches("mon-résumé.doc"));
+    assertFalse(matcher.matches("old-tmp"));
+    assertFalse(matcher.matches("Report.pdf"));
+    assertFalse(matcher.matches("repor"));
+    assertFalse(matcher.matches(""));
+  }
+
+  @Test
+  void testOverlappingPatterns() {
+    // Arrange: the classic he, she, his, hers example, where matches hide inside each other
+    NameMatcher matcher = NameMatcher.compile(List.of("he", "she", "his", "hers"));
+
+    // Act + Assert
+    assertTrue(matcher.matches("ushers"));
+    assertTrue(matcher.matches("xhix-his"));
+    assertFalse(matcher.matches("shx-hi-es"));
+  }
+
+  @Test
+  void testEmptyPatternsAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> NameMatcher.compile(List.of()));
+    assertThrows(IllegalArgumentException.class, () -> NameMatcher.compile(List.of("a", "")));
+    assertThrows(IllegalArgumentException.class, () -> NameMatcher.compile(List.of("^")));
+  }
+}
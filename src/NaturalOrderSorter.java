@@ -0,0 +1,77 @@
+/**
+ * Utility class for sorting file names in natural order: like
+ * AlphabeticalFileSorter, ignoring case, except that runs of digits compare by
+ * their numeric value, so "file2.log" sorts before "file10.log".
+ *
+ * Every name is turned into a sort key once, before sorting, so comparing two
+ * names is a plain String.compareTo on their keys and never parses a number.
+ * In a key, each character is folded to lower case and each digit run becomes
+ * a '0' marker, one character holding the run's length without leading zeros,
+ * and the digits themselves. A longer run is a larger number, so comparing the
+ * length first and then the digits gives numeric order for any run length.
+ * Names whose keys are equal, such as "a01" and "a1", fall back to ordinary
+ * string order.
+ */
+public class NaturalOrderSorter {
+
+  /**
+   * Sorts an array of names in natural order.
+   *
+   * @param names the array of names to be sorted
+   * @return the sorted array of names
+   */
+  public static String[] sort(String[] names) {
+    return KeySorter.apply(names, order(names));
+  }
+
+  /**
+   * Returns the positions of the names in natural order, leaving the names as
+   * they are, so arrays that run parallel to the names can be put in the same
+   * order.
+   *
+   * @param names the names to order
+   * @return the position in names of the first, second, ... name in natural order
+   */
+  public static int[] order(String[] names) {
+    String[] keys = new String[names.length];
+    for (int i = 0; i < names.length; i++) {
+      keys[i] = key(names[i]);
+    }
+    return KeySorter.order(keys, names);
+  }
+
+  /**
+   * Builds the sort key of a name.
+   *
+   * @param name the name
+   * @return the key that orders the name naturally under String.compareTo
+   */
+  static String key(String name) {
+    StringBuilder key = new StringBuilder(name.length() + 4);
+    int i = 0;
+    int n = name.length();
+    while (i < n) {
+      char c = name.charAt(i);
+      if (isDigit(c)) {
+        int start = i;
+        while (start < n - 1 && name.charAt(start) == '0' && isDigit(name.charAt(start + 1))) {
+          start++;
+        }
+        int end = start;
+        while (end < n && isDigit(name.charAt(end))) {
+          end++;
+        }
+        key.append('0').append((char) Math.min(end - start, Character.MAX_VALUE)).append(name, start, end);
+        i = end;
+      } else {
+        key.append(Character.toLowerCase(Character.toUpperCase(c)));
+        i++;
+      }
+    }
+    return key.toString();
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+}
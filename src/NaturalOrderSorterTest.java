@@ -0,0 +1,58 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class NaturalOrderSorterTest {
+
+  @Test
+  void testDigitRunsCompareAsNumbers() {
+    // Arrange
+    String[] names = {"file10.log", "File2.log", "file1.log", "file02.log", "file.log", "v1.10", "v1.9",
+        "x99999999999999999999", "x100000000000000000000"};
+
+    // Act
+    NaturalOrderSorter.sort(names);
+
+    // Assert: case ignored, leading zeros only break ties, any length of number
+    assertArrayEquals(new String[] {"file.log", "file1.log", "File2.log", "file02.log", "file10.log", "v1.9",
+        "v1.10", "x99999999999999999999", "x100000000000000000000"}, names);
+  }
+
+  @Test
+  void testOrderLeavesNamesInPlace() {
+    // Arrange
+    String[] names = {"b3", "a", "b20"};
+
+    // Act
+    int[] order = NaturalOrderSorter.order(names);
+
+    // Assert
+    assertArrayEquals(new int[] {1, 0, 2}, order);
+    assertEquals("b3", names[0]);
+  }
+
+  @Test
+  void testWalkerUsesNaturalOrderFromOptions(@TempDir File tempDir) throws IOException {
+    // Arrange
+    for (String name : new String[] {"part-10", "part-9", "part-100"}) {
+      new File(tempDir, name).createNewFile();
+    }
+    TruffulaOptions options = TruffulaOptions.builder(tempDir).sortOrder(TruffulaOptions.SortOrder.NATURAL).build();
+
+    // Act
+    List<String> names = new TreeWalker(options, null).stream()
+        .filter(e -> e.getDepth() == 1)
+        .map(TreeEntry::getName)
+        .collect(Collectors.toList());
+
+    // Assert
+    assertEquals(List.of("part-9", "part-10", "part-100"), names);
+  }
+}
@@ -0,0 +1,266 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Writes output rendered by several threads in a fixed order, as soon as each
+ * prefix of that order is complete.
+ *
+ * The output is a tree of segments. A segment holds chunks of rendered bytes and
+ * placeholders for child segments, in order; forking a child segment reserves
+ * its place in the parent at the point where it is forked. The emitter keeps a
+ * cursor into the tree and writes every chunk once everything before it has been
+ * written, so the final output is the same as rendering the whole tree on one
+ * thread, no matter in which order the segments are filled.
+ *
+ * Chunks written to the segment the cursor is waiting on go straight to the
+ * ColorPrinter. Chunks written anywhere else are held back in memory. When more
+ * than the hold limit is held back, shouldDefer tells writers of other segments
+ * to stop and hand their remaining work to defer; the work is resumed once the
+ * cursor reaches that point, so memory stays bounded without ever blocking the
+ * writer the output is waiting on.
+ *
+ * Example Usage:
+ *
+ * OrderedEmitter emitter = new OrderedEmitter(printer, 16 << 20, null);
+ * OrderedEmitter.Segment root = emitter.getRoot();
+ * emitter.write(root, header);
+ * OrderedEmitter.Segment child = emitter.fork(root);  // filled by another thread
+ * emitter.write(root, footer);                        // held back until child is closed
+ * emitter.close(root);
+ * emitter.await();
+ */
+public class OrderedEmitter {
+
+  /**
+   * A part of the output, filled by one writer at a time.
+   */
+  public static final class Segment {
+    private final ArrayList<Object> parts = new ArrayList<>();
+    private boolean closed;
+
+    private Segment() {
+    }
+  }
+
+  /**
+   * Work put off by a writer, to be resumed when the output reaches it.
+   */
+  private static final class Deferred {
+    private final Runnable resume;
+
+    private Deferred(Runnable resume) {
+      this.resume = resume;
+    }
+  }
+
+  /**
+   * A position in a segment that the output has reached.
+   */
+  private static final class Cursor {
+    private final Segment segment;
+    private int next;
+
+    private Cursor(Segment segment) {
+      this.segment = segment;
+    }
+  }
+
+  private final ColorPrinter out;
+  private final long holdLimit;
+  private final TraversalMetrics metrics;
+  private final Segment root = new Segment();
+  private final ArrayDeque<Cursor> cursors = new ArrayDeque<>();
+
+  /**
+   * The segment the output is waiting on, or null once everything is written.
+   */
+  private volatile Segment current = root;
+  private volatile long held;
+  private long peakHeld;
+  private Throwable failure;
+
+  /**
+   * Constructs an OrderedEmitter with an empty, open root segment.
+   *
+   * @param out       the printer the output is written to, in order
+   * @param holdLimit how many bytes may be held back before writers are asked to defer
+   * @param metrics   the metrics to record held back output into, or null
+   */
+  public OrderedEmitter(ColorPrinter out, long holdLimit, TraversalMetrics metrics) {
+    this.out = out;
+    this.holdLimit = holdLimit;
+    this.metrics = metrics;
+    cursors.push(new Cursor(root));
+  }
+
+  /**
+   * Returns the segment the whole output is made of.
+   *
+   * @return the root segment
+   */
+  public Segment getRoot() {
+    return root;
+  }
+
+  /**
+   * Reserves the place of a new segment at the current end of a parent segment.
+   *
+   * @param parent the segment to fork from
+   * @return the new, open segment
+   */
+  public synchronized Segment fork(Segment parent) {
+    Segment child = new Segment();
+    parent.parts.add(child);
+    drain();
+    return child;
+  }
+
+  /**
+   * Appends rendered output to a segment. The emitter keeps the array, so the
+   * caller must not change it afterwards.
+   *
+   * @param segment the segment to append to
+   * @param bytes   the rendered output
+   */
+  public synchronized void write(Segment segment, byte[] bytes) {
+    if (bytes.length == 0) {
+      return;
+    }
+    if (segment == current) {
+      //everything before this segment's end has been written already
+      out.write(bytes, 0, bytes.length);
+      return;
+    }
+    segment.parts.add(bytes);
+    held += bytes.length;
+    peakHeld = Math.max(peakHeld, held);
+    if (metrics != null) {
+      metrics.recordHeldBack(bytes.length, held);
+    }
+  }
+
+  /**
+   * Indicates whether the writer of a segment should put its remaining work off:
+   * too much output is held back and the output is not waiting on this segment.
+   *
+   * @param segment the segment being written
+   * @return true if the writer should call defer and stop
+   */
+  public boolean shouldDefer(Segment segment) {
+    return held > holdLimit && segment != current;
+  }
+
+  /**
+   * Indicates whether more output is held back than the hold limit allows.
+   *
+   * @return true if the hold limit is exceeded
+   */
+  public boolean isOverLimit() {
+    return held > holdLimit;
+  }
+
+  /**
+   * Puts the rest of a segment's work off until the output reaches the current
+   * end of the segment. The resume task is run by whichever thread moves the
+   * output there, so it should only hand the work to another thread.
+   *
+   * @param segment the segment whose writer is stopping
+   * @param resume  the task that continues writing the segment
+   */
+  public synchronized void defer(Segment segment, Runnable resume) {
+    segment.parts.add(new Deferred(resume));
+    if (metrics != null) {
+      metrics.recordDeferral();
+    }
+    drain();
+  }
+
+  /**
+   * Marks a segment as complete; nothing more may be written to it.
+   *
+   * @param segment the segment to close
+   */
+  public synchronized void close(Segment segment) {
+    segment.closed = true;
+    drain();
+  }
+
+  /**
+   * Stops the output after a writer failed; await throws the failure.
+   *
+   * @param t the failure
+   */
+  public synchronized void fail(Throwable t) {
+    if (failure == null) {
+      failure = t;
+    }
+    notifyAll();
+  }
+
+  /**
+   * Waits until every segment has been closed and written, or a writer failed.
+   *
+   * @throws InterruptedException if the waiting thread is interrupted
+   * @throws IllegalStateException if a writer failed
+   */
+  public synchronized void await() throws InterruptedException {
+    while (current != null && failure == null) {
+      wait();
+    }
+    if (failure != null) {
+      throw new IllegalStateException("rendering failed: " + failure.getMessage(), failure);
+    }
+  }
+
+  /**
+   * Returns the number of bytes currently held back.
+   *
+   * @return the held back byte count
+   */
+  public long getHeldBytes() {
+    return held;
+  }
+
+  /**
+   * Returns the most bytes that were held back at any one time.
+   *
+   * @return the peak held back byte count
+   */
+  public synchronized long getPeakHeldBytes() {
+    return peakHeld;
+  }
+
+  /**
+   * Writes everything that is complete and moves the cursor to the first part
+   * that is not.
+   */
+  private void drain() {
+    while (!cursors.isEmpty()) {
+      Cursor cursor = cursors.peek();
+      ArrayList<Object> parts = cursor.segment.parts;
+      if (cursor.next < parts.size()) {
+        Object part = parts.get(cursor.next);
+        parts.set(cursor.next++, null);
+        if (part instanceof byte[]) {
+          byte[] bytes = (byte[]) part;
+          out.write(bytes, 0, bytes.length);
+          held -= bytes.length;
+        } else if (part instanceof Segment) {
+          cursors.push(new Cursor((Segment) part));
+        } else {
+          ((Deferred) part).resume.run();
+        }
+      } else if (cursor.segment.closed) {
+        cursors.pop();
+      } else {
+        //written up to the end of an open segment; drop what has been written
+        parts.clear();
+        cursor.next = 0;
+        current = cursor.segment;
+        return;
+      }
+    }
+    current = null;
+    notifyAll();
+  }
+}
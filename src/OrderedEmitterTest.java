@@ -0,0 +1,87 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class OrderedEmitterTest {
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void testSegmentsAreWrittenInTreeOrder() throws InterruptedException {
+    // Arrange
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    PrintStream stream = new PrintStream(output);
+    TraversalMetrics metrics = new TraversalMetrics();
+    OrderedEmitter emitter = new OrderedEmitter(new ColorPrinter(stream), 1 << 20, metrics);
+    OrderedEmitter.Segment root = emitter.getRoot();
+
+    // Act: fill the segments back to front
+    emitter.write(root, bytes("a"));
+    OrderedEmitter.Segment first = emitter.fork(root);
+    emitter.write(root, bytes("d"));
+    OrderedEmitter.Segment second = emitter.fork(root);
+    emitter.write(root, bytes("f"));
+    emitter.close(root);
+    emitter.write(second, bytes("e"));
+    emitter.close(second);
+    OrderedEmitter.Segment nested = emitter.fork(first);
+    emitter.write(first, bytes("c"));
+    emitter.close(first);
+    stream.flush();
+    String beforeNested = output.toString();
+    emitter.write(nested, bytes("b"));
+    emitter.close(nested);
+    emitter.await();
+    stream.flush();
+
+    // Assert: "a" went out at once, the rest waited for "b"
+    assertEquals("a", beforeNested);
+    assertEquals("abcdef", output.toString());
+    assertEquals(0, emitter.getHeldBytes());
+    assertEquals(4, emitter.getPeakHeldBytes());
+    assertEquals(4, metrics.getHeldBackBytes());
+  }
+
+  @Test
+  void testDeferredWorkResumesWhenOutputCatchesUp() throws InterruptedException {
+    // Arrange: a hold limit of one byte
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    PrintStream stream = new PrintStream(output);
+    OrderedEmitter emitter = new OrderedEmitter(new ColorPrinter(stream), 1, null);
+    OrderedEmitter.Segment root = emitter.getRoot();
+    OrderedEmitter.Segment first = emitter.fork(root);
+    OrderedEmitter.Segment second = emitter.fork(root);
+    emitter.close(root);
+    List<String> resumed = new ArrayList<>();
+
+    // Act
+    emitter.write(second, bytes("xy"));
+    boolean secondDefers = emitter.shouldDefer(second);
+    boolean firstDefers = emitter.shouldDefer(first);
+    emitter.defer(second, () -> resumed.add("second"));
+    boolean resumedEarly = !resumed.isEmpty();
+    emitter.write(first, bytes("w"));
+    emitter.close(first);
+    emitter.write(second, bytes("z"));
+    emitter.close(second);
+    emitter.await();
+    stream.flush();
+
+    // Assert: only the segment the output is not waiting on is asked to defer
+    assertTrue(secondDefers);
+    assertFalse(firstDefers);
+    assertFalse(resumedEarly);
+    assertEquals(List.of("second"), resumed);
+    assertEquals("wxyz", output.toString());
+  }
+}
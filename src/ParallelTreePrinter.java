@@ -0,0 +1,264 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The parallel engine: walks one tree with a pool of worker threads and prints
+ * exactly what TruffulaPrinter prints on a single thread, in the same order and
+ * with the same depth-based colors.
+ *
+ * Each task walks a subtree depth first and renders its lines into a buffer of
+ * its own. When a pool thread is idle, a task hands a subdirectory to a new task
+ * instead of walking it itself, and reserves the subdirectory's place in the
+ * output with OrderedEmitter.fork. The emitter writes the buffers to the
+ * ColorPrinter in tree order as soon as everything before them is complete.
+ *
+ * Output rendered ahead of its turn is held in memory up to the hold limit in
+ * the options. Past the limit, tasks whose output is not being waited on stop
+ * and are resumed when the output catches up with them.
+ *
+ * Tasks wait for a free thread in a priority queue. When workers are slowed by
+ * a Throttle and tasks pile up, resumed tasks run first, since the output is
+ * waiting on them, then the tasks for the shallowest subtrees, in the order
+ * they were queued; deep subtrees far ahead of the output wait their turn.
+ *
+ * Example Usage:
+ *
+ * TruffulaOptions options = TruffulaOptions.builder(root).engine(TruffulaOptions.Engine.PARALLEL).build();
+ * new ParallelTreePrinter(options, List.of(ConsoleColor.GREEN), new ColorPrinter(System.out), null).print();
+ */
+public class ParallelTreePrinter {
+
+  /**
+   * How much a task renders before handing its buffer to the emitter.
+   */
+  private static final int CHUNK_SIZE = 16 * 1024;
+
+  private final TruffulaOptions options;
+  private final List<ConsoleColor> colorSequence;
+  private final ColorPrinter out;
+  private final TraversalMetrics metrics;
+  private final Throttle throttle;
+  private final AtomicInteger queued = new AtomicInteger();
+  private final AtomicLong submitted = new AtomicLong();
+
+  private ExecutorService pool;
+  private OrderedEmitter emitter;
+  private ThreadFactory threadFactory;
+  private BooleanSupplier forkGate;
+
+  /**
+   * Constructs a ParallelTreePrinter.
+   *
+   * @param options       the options to print with; the thread count sizes the pool
+   * @param colorSequence the colors to cycle through by depth
+   * @param out           the printer the tree is written to
+   * @param metrics       the metrics to record into, or null to not collect metrics
+   */
+  public ParallelTreePrinter(TruffulaOptions options, List<ConsoleColor> colorSequence, ColorPrinter out,
+      TraversalMetrics metrics) {
+    this(options, colorSequence, out, metrics, Throttle.forOptions(options, metrics));
+  }
+
+  /**
+   * Constructs a ParallelTreePrinter whose workers share a throttle.
+   *
+   * @param options       the options to print with; the thread count sizes the pool
+   * @param colorSequence the colors to cycle through by depth
+   * @param out           the printer the tree is written to
+   * @param metrics       the metrics to record into, or null to not collect metrics
+   * @param throttle      the throttle every worker takes its metadata operations from, or null for no limits
+   */
+  public ParallelTreePrinter(TruffulaOptions options, List<ConsoleColor> colorSequence, ColorPrinter out,
+      TraversalMetrics metrics, Throttle throttle) {
+    this.options = options;
+    this.colorSequence = colorSequence;
+    this.out = out;
+    this.metrics = metrics;
+    this.throttle = throttle;
+  }
+
+  /**
+   * Prints the tree below the root of the options and waits until it is written.
+   * The ColorPrinter is not flushed.
+   *
+   * @throws IllegalStateException if a worker failed or the wait was interrupted
+   */
+  public void print() {
+    emitter = new OrderedEmitter(out, options.getHoldLimit(), metrics);
+    run(new Task(emitter.getRoot(), options.getRoot(), 0));
+  }
+
+  /**
+   * Prints the rest of a walk that was started on the calling thread, such as
+   * by AdaptiveTreePrinter, and waits until it is written. Everything the walk
+   * produced so far must already have been printed to the ColorPrinter.
+   *
+   * @param traversal the walk to carry on with, from the root of the options
+   * @throws IllegalStateException if a worker failed or the wait was interrupted
+   */
+  void print(TreeWalker.Traversal traversal) {
+    emitter = new OrderedEmitter(out, options.getHoldLimit(), metrics);
+    run(new Task(emitter.getRoot(), traversal, 0));
+  }
+
+  /**
+   * Sets the factory for the pool's threads, such as one for virtual threads.
+   *
+   * @param threadFactory the factory, or null for daemon platform threads
+   */
+  void setThreadFactory(ThreadFactory threadFactory) {
+    this.threadFactory = threadFactory;
+  }
+
+  /**
+   * Sets a check made before every fork, so a caller can turn forking off and
+   * on again while the walk runs.
+   *
+   * @param forkGate returns false when subdirectories should be walked inline, or null to always allow forks
+   */
+  void setForkGate(BooleanSupplier forkGate) {
+    this.forkGate = forkGate;
+  }
+
+  private void run(Task first) {
+    ThreadFactory factory = threadFactory != null ? threadFactory : new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "truffula-walk");
+        t.setDaemon(true);
+        return t;
+      }
+    };
+    //only Tasks are queued, so the queue can order them
+    pool = new ThreadPoolExecutor(options.getThreads(), options.getThreads(), 0, TimeUnit.MILLISECONDS,
+        new PriorityBlockingQueue<Runnable>(), factory);
+    try {
+      submit(first);
+      emitter.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while printing", e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private void submit(Task task) {
+    task.sequence = submitted.getAndIncrement();
+    queued.incrementAndGet();
+    pool.execute(task);
+  }
+
+  /**
+   * Indicates whether a subdirectory should go to a new task: only when there
+   * is a thread for it and output is not already piling up.
+   */
+  private boolean shouldFork() {
+    return queued.get() < options.getThreads() && !emitter.isOverLimit()
+        && (forkGate == null || forkGate.getAsBoolean());
+  }
+
+  /**
+   * Walks one subtree into one segment of the output. The root of the subtree
+   * was already printed by the task that forked it, except for the tree root.
+   */
+  private class Task implements Runnable, Comparable<Task> {
+    private final OrderedEmitter.Segment segment;
+    private final int baseDepth;
+    private long sequence;
+    private boolean resumed;
+    private final TreeWalker.Traversal traversal;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(CHUNK_SIZE * 2);
+    private final PrintStream stream = new PrintStream(buffer, false);
+    private final TruffulaPrinter printer = new TruffulaPrinter(options, stream, colorSequence);
+
+    private Task(OrderedEmitter.Segment segment, File dir, int baseDepth) {
+      this.segment = segment;
+      this.baseDepth = baseDepth;
+      int maxDepth = options.getMaxDepth() < 0 ? -1 : options.getMaxDepth() - baseDepth;
+      TruffulaOptions walkOptions = options.toBuilder().root(dir).maxDepth(maxDepth).build();
+      this.traversal = new TreeWalker(walkOptions, metrics, throttle).traversal();
+      printer.setMetrics(metrics);
+      printer.setThrottle(throttle);
+    }
+
+    private Task(OrderedEmitter.Segment segment, TreeWalker.Traversal traversal, int baseDepth) {
+      this.segment = segment;
+      this.baseDepth = baseDepth;
+      this.traversal = traversal;
+      printer.setMetrics(metrics);
+      printer.setThrottle(throttle);
+    }
+
+    @Override
+    public int compareTo(Task other) {
+      if (resumed != other.resumed) {
+        return resumed ? -1 : 1;
+      }
+      if (baseDepth != other.baseDepth) {
+        return Integer.compare(baseDepth, other.baseDepth);
+      }
+      return Long.compare(sequence, other.sequence);
+    }
+
+    @Override
+    public void run() {
+      queued.decrementAndGet();
+      try {
+        while (traversal.hasNext()) {
+          if (emitter.shouldDefer(segment)) {
+            publish();
+            emitter.defer(segment, new Runnable() {
+              @Override
+              public void run() {
+                resumed = true;
+                submit(Task.this);
+              }
+            });
+            return;
+          }
+          TreeEntry entry = traversal.next();
+          if (entry.getDepth() == 0 && baseDepth > 0) {
+            continue;
+          }
+          int depth = baseDepth + entry.getDepth();
+          printer.printEntry(entry, depth);
+          if (entry.getDepth() > 0 && entry.isDirectory() && canDescend(depth) && shouldFork()
+              && options.getFileSystem().isDirectory(entry.getFile())) {
+            traversal.skipChildren();
+            publish();
+            submit(new Task(emitter.fork(segment), entry.getFile(), depth));
+          } else if (buffer.size() >= CHUNK_SIZE) {
+            publish();
+          }
+        }
+        publish();
+        emitter.close(segment);
+      } catch (Throwable t) {
+        emitter.fail(t);
+      }
+    }
+
+    private boolean canDescend(int depth) {
+      return options.getMaxDepth() < 0 || depth < options.getMaxDepth();
+    }
+
+    private void publish() {
+      stream.flush();
+      if (buffer.size() > 0) {
+        emitter.write(segment, buffer.toByteArray());
+        buffer.reset();
+      }
+    }
+  }
+}
@@ -0,0 +1,53 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ParallelTreePrinterTest {
+
+  /**
+   * Builds a tree four levels deep with a few files and directories on each
+   * level, some of them hidden.
+   */
+  private static void buildTree(File dir, int depth) throws IOException {
+    dir.mkdir();
+    for (int i = 0; i < 4; i++) {
+      new File(dir, "file" + i + ".txt").createNewFile();
+    }
+    new File(dir, ".hidden").createNewFile();
+    if (depth < 4) {
+      for (int i = 0; i < 3; i++) {
+        buildTree(new File(dir, "Dir" + i), depth + 1);
+      }
+    }
+  }
+
+  private static String print(TruffulaOptions options) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new TruffulaPrinter(options, new PrintStream(output)).printTree();
+    return output.toString();
+  }
+
+  @Test
+  void testParallelMatchesSequential(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = new File(tempDir, "root");
+    buildTree(root, 0);
+    TruffulaOptions sequential = TruffulaOptions.builder(root).build();
+
+    for (int holdLimit : new int[] {0, 64, TruffulaOptions.DEFAULT_HOLD_LIMIT}) {
+      for (int maxDepth : new int[] {-1, 2}) {
+        TruffulaOptions parallel = sequential.toBuilder()
+            .engine(TruffulaOptions.Engine.PARALLEL).threads(4).holdLimit(holdLimit).maxDepth(maxDepth).build();
+
+        // Act & Assert: same lines, order and colors, even when most output is deferred
+        assertEquals(print(sequential.toBuilder().maxDepth(maxDepth).build()), print(parallel));
+      }
+    }
+  }
+}
@@ -0,0 +1,211 @@
+import java.util.Locale;
+
+/**
+ * Prints a walk with each run of similarly named sibling files collapsed into
+ * one line, for --summarize.
+ *
+ * Two files belong to the same run when they are next to each other in the
+ * listing and their names differ only in their last run of digits, which has
+ * the same length in both, such as part-00017.gz and part-00018.gz. A run of
+ * at least MIN_RUN files prints as
+ *
+ *   part-[00000..99999].gz (100000 files, 12.3 GB)
+ *
+ * with the smallest and largest numbers and the total size of the files. The
+ * numbers do not have to be consecutive. Shorter runs print as usual. In long
+ * listing mode the line of a run has the total size in the size column and
+ * the other columns blank.
+ *
+ * Entries are handled as the walk produces them. Only the first MIN_RUN - 1
+ * files of a run are held back, in case the run turns out too short, and once
+ * a run is long enough only its count, size and bounds are kept, so memory
+ * per directory is constant whatever the number of files in it. Each file that
+ * could start or extend a run costs one extra stat for its size.
+ *
+ * Example Usage:
+ *
+ * RunSummarizer summarizer = new RunSummarizer(printer, options.getFileSystem(), null);
+ * new TreeWalker(options).walk(summarizer);
+ * summarizer.finish();
+ */
+public class RunSummarizer implements TreeVisitor {
+
+  /**
+   * Fewest files a run needs to be collapsed.
+   */
+  static final int MIN_RUN = 10;
+
+  private static final String[] UNITS = {"B", "KB", "MB", "GB", "TB", "PB", "EB"};
+
+  private final TruffulaPrinter printer;
+  private final TreeFileSystem fs;
+  private final Throttle throttle;
+
+  /**
+   * The first files of the current run, until it is long enough to collapse.
+   */
+  private final TreeEntry[] held = new TreeEntry[MIN_RUN - 1];
+
+  private int count;
+  private int depth;
+  private String first;
+  private int digitsStart;
+  private int digitsLength;
+  private String min;
+  private String max;
+  private long bytes;
+
+  /**
+   * Constructs a RunSummarizer.
+   *
+   * @param printer  the printer entries and collapsed runs are printed with
+   * @param fs       the file system sizes are read from
+   * @param throttle the limits size reads take operations from, or null for no limits
+   */
+  public RunSummarizer(TruffulaPrinter printer, TreeFileSystem fs, Throttle throttle) {
+    this.printer = printer;
+    this.fs = fs;
+    this.throttle = throttle;
+  }
+
+  @Override
+  public boolean visit(TreeEntry entry) {
+    if (count > 0 && !extendsRun(entry)) {
+      endRun();
+    }
+    if (count == 0 && !startsRun(entry)) {
+      printer.printEntry(entry);
+      return true;
+    }
+    //same length digits compare as numbers; only a new bound is copied out of the name
+    String name = entry.getName();
+    if (count == 0 || compareDigits(name, min) < 0) {
+      min = name.substring(digitsStart, digitsStart + digitsLength);
+    }
+    if (count == 0 || compareDigits(name, max) > 0) {
+      max = name.substring(digitsStart, digitsStart + digitsLength);
+    }
+    if (count < held.length) {
+      held[count] = entry;
+    }
+    count++;
+    if (throttle != null) {
+      throttle.acquireOperations(1);
+    }
+    bytes += fs.length(entry.getFile());
+    return true;
+  }
+
+  @Override
+  public void leaveDirectory(TreeEntry directory) {
+    endRun();
+  }
+
+  /**
+   * Prints the run the walk ended in, if any. Call once the walk is done.
+   */
+  public void finish() {
+    endRun();
+  }
+
+  /**
+   * Starts a run with the entry if it is a file with a digit in its name.
+   */
+  private boolean startsRun(TreeEntry entry) {
+    if (entry.isDirectory()) {
+      return false;
+    }
+    String name = entry.getName();
+    int end = name.length();
+    while (end > 0 && !isDigit(name.charAt(end - 1))) {
+      end--;
+    }
+    if (end == 0) {
+      return false;
+    }
+    int start = end - 1;
+    while (start > 0 && isDigit(name.charAt(start - 1))) {
+      start--;
+    }
+    first = name;
+    depth = entry.getDepth();
+    digitsStart = start;
+    digitsLength = end - start;
+    bytes = 0;
+    return true;
+  }
+
+  /**
+   * Whether the entry is a sibling file of the run whose name differs from the
+   * first one's only in the run's digits.
+   */
+  private boolean extendsRun(TreeEntry entry) {
+    String name = entry.getName();
+    if (entry.isDirectory() || entry.getDepth() != depth || name.length() != first.length()) {
+      return false;
+    }
+    int end = digitsStart + digitsLength;
+    if (!name.regionMatches(0, first, 0, digitsStart) || !name.regionMatches(end, first, end, name.length() - end)) {
+      return false;
+    }
+    for (int i = digitsStart; i < end; i++) {
+      if (!isDigit(name.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void endRun() {
+    if (count == 0) {
+      return;
+    }
+    if (count < MIN_RUN) {
+      for (int i = 0; i < count; i++) {
+        printer.printEntry(held[i]);
+      }
+    } else {
+      int end = digitsStart + digitsLength;
+      printer.printTotalLine(first.substring(0, digitsStart) + "[" + min + ".." + max + "]" + first.substring(end)
+          + " (" + count + " files, " + formatSize(bytes) + ")", depth, bytes);
+    }
+    for (int i = 0; i < held.length; i++) {
+      held[i] = null;
+    }
+    count = 0;
+  }
+
+  private int compareDigits(String name, String digits) {
+    for (int i = 0; i < digitsLength; i++) {
+      int c = name.charAt(digitsStart + i) - digits.charAt(i);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return 0;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * Formats a byte count with one decimal in the largest unit it reaches, in
+   * steps of 1024, such as "12.3 GB".
+   *
+   * @param bytes the byte count
+   * @return the formatted size
+   */
+  static String formatSize(long bytes) {
+    if (bytes < 1024) {
+      return bytes + " B";
+    }
+    double value = bytes;
+    int unit = 0;
+    while (value >= 1024 && unit < UNITS.length - 1) {
+      value /= 1024;
+      unit++;
+    }
+    return String.format(Locale.ROOT, "%.1f %s", value, UNITS[unit]);
+  }
+}
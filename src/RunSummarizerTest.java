@@ -0,0 +1,93 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class RunSummarizerTest {
+
+  private static final File ROOT = new File("/mem/out");
+
+  private static String print(MemoryFileSystem fs) {
+    TruffulaOptions options = TruffulaOptions.builder(ROOT).fileSystem(fs).useColor(false).summarize(true).build();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new TruffulaPrinter(options, new PrintStream(output)).printTree();
+    return output.toString().replace("\u001B[0;37m", "").replace("\u001B[0m", "");
+  }
+
+  @Test
+  void testRunsCollapseAndShortRunsDoNot() {
+    // Arrange: a long run with gaps, a short run, and a run cut by a directory
+    MemoryFileSystem.Builder builder = MemoryFileSystem.builder(ROOT);
+    for (int i = 0; i < 25; i++) {
+      if (i != 7) {
+        builder.addFile(String.format("data/part-%05d.gz", i), 1000);
+      }
+    }
+    builder.addFile("data/_SUCCESS", 0);
+    for (int i = 1; i <= 3; i++) {
+      builder.addFile("logs/run" + i + ".log", 10);
+    }
+    for (int i = 0; i < 15; i++) {
+      builder.addFile(String.format("shard%02d", i), 2048);
+    }
+    builder.addFile("shard11x/inner.txt", 1);
+    String nl = System.lineSeparator();
+
+    // Act
+    String output = print(builder.build());
+
+    // Assert
+    String expected = "out/" + nl
+        + "   data/" + nl
+        + "      _SUCCESS" + nl
+        + "      part-[00000..00024].gz (24 files, 23.4 KB)" + nl
+        + "   logs/" + nl
+        + "      run1.log" + nl
+        + "      run2.log" + nl
+        + "      run3.log" + nl
+        + "   shard[00..11] (12 files, 24.0 KB)" + nl
+        + "   shard11x/" + nl
+        + "      inner.txt" + nl
+        + "   shard12" + nl
+        + "   shard13" + nl
+        + "   shard14" + nl;
+    assertEquals(expected, output);
+  }
+
+  @Test
+  void testRunLinesUpWithLongListing(@TempDir File tempDir) throws IOException {
+    // Arrange: a run of 12 files of 10 bytes and one file that is not in it
+    for (int i = 0; i < 12; i++) {
+      Files.write(new File(tempDir, String.format("part-%02d", i)).toPath(), new byte[10]);
+    }
+    new File(tempDir, "readme").createNewFile();
+    TruffulaOptions options = TruffulaOptions.builder(tempDir).useColor(false).summarize(true).longListing(true)
+        .build();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    // Act
+    new TruffulaPrinter(options, new PrintStream(output)).printTree();
+
+    // Assert: the run has its total under the size column, and both names start in the same column
+    String[] lines = output.toString().replace("\u001B[0;37m", "").replace("\u001B[0m", "")
+        .split(System.lineSeparator());
+    assertEquals(3, lines.length);
+    String columns = String.format("%10s %8s %11d %16s  ", "", "", 120, "");
+    assertEquals(columns + "   part-[00..11] (12 files, 120 B)", lines[1]);
+    assertEquals(columns.length(), lines[2].indexOf("   readme"));
+  }
+
+  @Test
+  void testFormatSize() {
+    assertEquals("0 B", RunSummarizer.formatSize(0));
+    assertEquals("1023 B", RunSummarizer.formatSize(1023));
+    assertEquals("1.0 KB", RunSummarizer.formatSize(1024));
+    assertEquals("12.3 GB", RunSummarizer.formatSize(13_207_024_435L));
+  }
+}
@@ -0,0 +1,228 @@
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits how hard a walk hits the file system, for runs on shared hosts where a
+ * full-speed walk would overload the metadata servers.
+ *
+ * Two limits can be set, each independently:
+ * - Metadata operations per second, enforced with a token bucket. Listing a
+ *   directory costs one operation and every stat of an entry costs one more.
+ *   The bucket holds a tenth of a second's worth of tokens, so short bursts go
+ *   through without waiting and the long-run rate stays at the limit.
+ * - Directory listings in flight at once, enforced with a semaphore. This only
+ *   matters for the parallel engine, whose workers would otherwise all be
+ *   listing at the same time.
+ *
+ * One set of limits is shared by every walker of a run, so the limits hold for
+ * the run as a whole whatever the number of threads. Time spent waiting is
+ * counted as it happens, both here, where it can be read while the walk runs,
+ * and in the metrics the Throttle was given, and each wait is reported as a
+ * Flight Recorder event. A printer that reports its own metrics takes its
+ * share of a run's limits through withMetrics, so its waits show up in its own
+ * summary.
+ *
+ * Example Usage:
+ *
+ * Throttle throttle = new Throttle(500, 4, null);
+ * throttle.acquireOperations(1);
+ */
+public class Throttle {
+
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final Limits limits;
+  private final TraversalMetrics metrics;
+
+  /**
+   * Constructs a Throttle.
+   *
+   * @param operationsPerSecond the most metadata operations per second, or 0 for no limit
+   * @param maxInflight         the most directory listings at once, or 0 for no limit
+   * @param metrics             the metrics to record waits into, or null to not collect metrics
+   */
+  public Throttle(int operationsPerSecond, int maxInflight, TraversalMetrics metrics) {
+    this(new Limits(operationsPerSecond, maxInflight), metrics);
+  }
+
+  private Throttle(Limits limits, TraversalMetrics metrics) {
+    this.limits = limits;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Returns the Throttle for the limits in the options.
+   *
+   * @param options the options to take the limits from
+   * @param metrics the metrics to record waits into, or null to not collect metrics
+   * @return a new Throttle, or null if the options set no limits
+   */
+  public static Throttle forOptions(TruffulaOptions options, TraversalMetrics metrics) {
+    if (options.getMaxOperations() == 0 && options.getMaxInflight() == 0) {
+      return null;
+    }
+    return new Throttle(options.getMaxOperations(), options.getMaxInflight(), metrics);
+  }
+
+  /**
+   * Returns a Throttle that takes from the same limits as this one, and counts
+   * its waits with it, but records them into other metrics.
+   *
+   * @param metrics the metrics to record waits into, or null to not collect metrics
+   * @return a Throttle sharing this one's limits
+   */
+  public Throttle withMetrics(TraversalMetrics metrics) {
+    return metrics == this.metrics ? this : new Throttle(limits, metrics);
+  }
+
+  /**
+   * Takes the given number of operations from the bucket, waiting until they
+   * are due if the bucket is empty.
+   *
+   * @param operations the number of metadata operations about to be made
+   */
+  public void acquireOperations(int operations) {
+    if (limits.nanosPerOperation == 0 || operations <= 0) {
+      return;
+    }
+    long waitNanos;
+    synchronized (limits) {
+      long now = System.nanoTime();
+      limits.tokens = Math.min(limits.burst, limits.tokens + (now - limits.refilledAt) / limits.nanosPerOperation);
+      limits.refilledAt = now;
+      limits.tokens -= operations;
+      waitNanos = limits.tokens >= 0 ? 0 : (long) (-limits.tokens * limits.nanosPerOperation);
+    }
+    if (waitNanos > 0) {
+      long start = System.nanoTime();
+      TraversalEvents.ThrottleWait event = begin();
+      sleep(waitNanos);
+      waited(event, operations, limits.operationWaits, limits.operationWaitNanos, System.nanoTime() - start, false);
+    }
+  }
+
+  /**
+   * Waits for a free listing slot. Every call must be followed by a call to
+   * endListing, in a finally block.
+   */
+  public void beginListing() {
+    if (limits.listings == null) {
+      return;
+    }
+    if (limits.listings.tryAcquire()) {
+      return;
+    }
+    long start = System.nanoTime();
+    TraversalEvents.ThrottleWait event = begin();
+    limits.listings.acquireUninterruptibly();
+    waited(event, 1, limits.listingWaits, limits.listingWaitNanos, System.nanoTime() - start, true);
+  }
+
+  /**
+   * Frees the listing slot taken by beginListing.
+   */
+  public void endListing() {
+    if (limits.listings != null) {
+      limits.listings.release();
+    }
+  }
+
+  /**
+   * Returns the number of times a caller waited for operations so far, through
+   * this Throttle or any other sharing its limits.
+   *
+   * @return the wait count
+   */
+  public long getOperationWaits() {
+    return limits.operationWaits.sum();
+  }
+
+  /**
+   * Returns the total time callers waited for operations so far.
+   *
+   * @return the wait time in nanoseconds
+   */
+  public long getOperationWaitNanos() {
+    return limits.operationWaitNanos.sum();
+  }
+
+  /**
+   * Returns the number of times a caller waited for a listing slot so far.
+   *
+   * @return the wait count
+   */
+  public long getListingWaits() {
+    return limits.listingWaits.sum();
+  }
+
+  /**
+   * Returns the total time callers waited for a listing slot so far.
+   *
+   * @return the wait time in nanoseconds
+   */
+  public long getListingWaitNanos() {
+    return limits.listingWaitNanos.sum();
+  }
+
+  private static TraversalEvents.ThrottleWait begin() {
+    if (!TraversalEvents.isRecording()) {
+      return null;
+    }
+    TraversalEvents.ThrottleWait event = new TraversalEvents.ThrottleWait();
+    event.begin();
+    return event;
+  }
+
+  private void waited(TraversalEvents.ThrottleWait event, int permits, LongAdder waits, LongAdder waitNanos,
+      long nanos, boolean listing) {
+    waits.increment();
+    waitNanos.add(nanos);
+    if (metrics != null) {
+      metrics.recordThrottleWait(listing, nanos);
+    }
+    if (event != null && event.shouldCommit()) {
+      event.limit = listing ? "listings in flight" : "operations per second";
+      event.permits = permits;
+      event.commit();
+    }
+  }
+
+  private static void sleep(long nanos) {
+    try {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * The state every Throttle of a run shares: the token bucket, the listing
+   * slots and the wait counters.
+   */
+  private static class Limits {
+    private final double nanosPerOperation;
+    private final double burst;
+    private final Semaphore listings;
+
+    /**
+     * Operations available now; negative when callers have reserved operations
+     * that are not due yet and are waiting for them.
+     */
+    private double tokens;
+    private long refilledAt;
+
+    private final LongAdder operationWaits = new LongAdder();
+    private final LongAdder operationWaitNanos = new LongAdder();
+    private final LongAdder listingWaits = new LongAdder();
+    private final LongAdder listingWaitNanos = new LongAdder();
+
+    private Limits(int operationsPerSecond, int maxInflight) {
+      this.nanosPerOperation = operationsPerSecond > 0 ? (double) NANOS_PER_SECOND / operationsPerSecond : 0;
+      this.burst = Math.max(1, operationsPerSecond / 10.0);
+      this.listings = maxInflight > 0 ? new Semaphore(maxInflight, true) : null;
+      this.tokens = burst;
+      this.refilledAt = System.nanoTime();
+    }
+  }
+}
@@ -0,0 +1,117 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ThrottleTest {
+
+  @Test
+  void testOperationsAreSpreadOverTime() {
+    // Arrange: 200 per second with a burst of 20
+    Throttle throttle = new Throttle(200, 0, null);
+    long start = System.nanoTime();
+
+    // Act
+    for (int i = 0; i < 60; i++) {
+      throttle.acquireOperations(1);
+    }
+
+    // Assert: the 40 operations past the burst take at least 200 ms
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue(millis >= 180, "took " + millis + " ms");
+    assertTrue(throttle.getOperationWaits() > 0);
+  }
+
+  @Test
+  void testListingsInFlightAreCapped() throws InterruptedException {
+    // Arrange
+    TraversalMetrics metrics = new TraversalMetrics();
+    Throttle throttle = new Throttle(0, 1, metrics);
+    CountDownLatch waiting = new CountDownLatch(1);
+    throttle.beginListing();
+    Thread second = new Thread(() -> {
+      waiting.countDown();
+      throttle.beginListing();
+      throttle.endListing();
+    });
+
+    // Act: the second listing can only start once the first one ends
+    second.start();
+    waiting.await();
+    Thread.sleep(50);
+    throttle.endListing();
+    second.join();
+
+    // Assert
+    assertEquals(1, throttle.getListingWaits());
+    assertEquals(1, metrics.getListingWaits());
+  }
+
+  @Test
+  void testThrottledWalkPrintsTheSameTree(@TempDir File tempDir) throws IOException {
+    // Arrange
+    for (int d = 0; d < 4; d++) {
+      File dir = new File(tempDir, "dir" + d);
+      dir.mkdir();
+      for (int f = 0; f < 5; f++) {
+        new File(dir, "file" + f).createNewFile();
+      }
+    }
+    TruffulaOptions plain = TruffulaOptions.builder(tempDir).build();
+    TruffulaOptions throttled = plain.toBuilder().maxOperations(100_000).maxInflight(1)
+        .engine(TruffulaOptions.Engine.PARALLEL).threads(4).build();
+
+    // Act
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    new TruffulaPrinter(plain, new PrintStream(expected)).printTree();
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    new TruffulaPrinter(throttled, new PrintStream(actual)).printTree();
+
+    // Assert
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  @Test
+  void testSharedLimitsRecordWaitsIntoEachViewsMetrics() {
+    // Arrange: 20 per second with a burst of 2, so taking 3 at a time waits
+    Throttle shared = new Throttle(20, 0, null);
+    TraversalMetrics first = new TraversalMetrics();
+    TraversalMetrics second = new TraversalMetrics();
+
+    // Act
+    shared.withMetrics(first).acquireOperations(3);
+    shared.withMetrics(second).acquireOperations(3);
+
+    // Assert: both views drew from one bucket, each wait went to its own metrics
+    assertEquals(1, first.getOperationWaits());
+    assertEquals(1, second.getOperationWaits());
+    assertEquals(2, shared.getOperationWaits());
+  }
+
+  @Test
+  void testEachRunRecordsWaitsIntoItsOwnMetrics(@TempDir File tempDir) throws IOException {
+    // Arrange
+    for (int f = 0; f < 5; f++) {
+      new File(tempDir, "file" + f).createNewFile();
+    }
+    TruffulaOptions options = TruffulaOptions.builder(tempDir).maxOperations(10).collectMetrics(true).build();
+    TruffulaPrinter printer = new TruffulaPrinter(options, new PrintStream(new ByteArrayOutputStream()));
+    printer.setThrottle(Throttle.forOptions(options, null));
+
+    for (int run = 0; run < 2; run++) {
+      // Act
+      printer.printTree();
+
+      // Assert: the second run's waits are not recorded into the first run's metrics
+      assertTrue(printer.getMetrics().getOperationWaits() > 0, "run " + run);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events emitted while TruffulaPrinter walks a tree.
+ *
+ * Each event carries the directory path, the number of entries involved and,
+ * through the standard JFR duration, how long the step took. They can be
+ * recorded with the usual JFR tooling, for example:
+ *
+ * java -XX:StartFlightRecording=filename=truffula.jfr -jar truffula.jar /some/dir
+ * jfr print --categories Truffula truffula.jfr
+ *
+ * The events are cheap when recording is off: callers only create an event when
+ * isRecording() is true, and fill in its fields only when shouldCommit() is true.
+ * Checking isRecording() first also keeps the event classes from being loaded
+ * at all in a plain run, since loading an Event subclass starts up parts of the
+ * JFR machinery and costs noticeable start up time. Stack traces are disabled to
+ * keep the cost low when recording is on.
+ */
+public final class TraversalEvents {
+
+  private TraversalEvents() {
+  }
+
+  /**
+   * Indicates whether Flight Recorder has been started in this JVM, either on the
+   * command line or later through jcmd.
+   *
+   * @return true if events may be recorded; false if creating them is wasted work
+   */
+  public static boolean isRecording() {
+    return FlightRecorder.isInitialized();
+  }
+
+  /**
+   * Emitted after the entries of a directory have been read.
+   */
+  @Name("truffula.DirectoryListing")
+  @Label("Directory Listing")
+  @Description("Reading the entries of a directory")
+  @Category({"Truffula", "Traversal"})
+  @StackTrace(false)
+  public static class DirectoryListing extends Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Entry Count")
+    public int entryCount;
+  }
+
+  /**
+   * Emitted once per directory after its entries have been checked against
+   * the hidden file rules. The names are checked as the listing reads them, so
+   * the event spans the listing, and the time spent on the rules alone is its
+   * filter time. Not emitted when hidden files are shown, since nothing is
+   * checked then.
+   */
+  @Name("truffula.DirectoryFilter")
+  @Label("Directory Filter")
+  @Description("Applying the hidden file rules to the entries of a directory")
+  @Category({"Truffula", "Traversal"})
+  @StackTrace(false)
+  public static class DirectoryFilter extends Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Entry Count")
+    public int entryCount;
+
+    @Label("Visible Count")
+    public int visibleCount;
+
+    @Label("Filter Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long filterTime;
+  }
+
+  /**
+   * Emitted after the entries of a directory have been sorted.
+   */
+  @Name("truffula.DirectorySort")
+  @Label("Directory Sort")
+  @Description("Sorting the entries of a directory")
+  @Category({"Truffula", "Traversal"})
+  @StackTrace(false)
+  public static class DirectorySort extends Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Entry Count")
+    public int entryCount;
+  }
+
+  /**
+   * Emitted after the printed output has been flushed to its stream.
+   */
+  @Name("truffula.OutputFlush")
+  @Label("Output Flush")
+  @Description("Flushing the printed tree to the output stream")
+  @Category({"Truffula", "Output"})
+  @StackTrace(false)
+  public static class OutputFlush extends Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Line Count")
+    public long lineCount;
+  }
+
+  /**
+   * Emitted after a walker waited for the throttle (see Throttle).
+   */
+  @Name("truffula.ThrottleWait")
+  @Label("Throttle Wait")
+  @Description("Waiting for the limit on metadata operations or listings in flight")
+  @Category({"Truffula", "Traversal"})
+  @StackTrace(false)
+  public static class ThrottleWait extends Event {
+    @Label("Limit")
+    public String limit;
+
+    @Label("Permits")
+    public int permits;
+  }
+}
@@ -0,0 +1,53 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.Test;
+
+public class TraversalEventsTest {
+
+  private static final File ROOT = new File("/mem/events");
+
+  @Test
+  void testWalkEmitsListingFilterAndSortEvents() throws InterruptedException {
+    // Arrange: two directories, so two listings, two filters and two sorts
+    MemoryFileSystem fs = MemoryFileSystem.builder(ROOT)
+        .addFile("zebra.txt", 1)
+        .addFile("Docs/notes.txt", 2)
+        .build();
+    TruffulaOptions options = TruffulaOptions.builder(ROOT).fileSystem(fs).build();
+    Set<String> seen = ConcurrentHashMap.newKeySet();
+    CountDownLatch expected = new CountDownLatch(6);
+
+    // Act
+    try (RecordingStream recording = new RecordingStream()) {
+      for (String event : List.of("truffula.DirectoryListing", "truffula.DirectoryFilter",
+          "truffula.DirectorySort")) {
+        recording.enable(event);
+        recording.onEvent(event, (RecordedEvent e) -> {
+          String path = e.getString("path");
+          if (path.startsWith(ROOT.getPath()) && seen.add(event + " " + path)) {
+            expected.countDown();
+          }
+        });
+      }
+      recording.startAsync();
+      new TreeWalker(options, null).walk(entry -> true);
+      assertTrue(expected.await(30, TimeUnit.SECONDS), "events seen: " + seen);
+    }
+
+    // Assert
+    File docs = new File(ROOT, "Docs");
+    assertEquals(Set.of("truffula.DirectoryListing " + ROOT.getPath(), "truffula.DirectoryListing " + docs.getPath(),
+        "truffula.DirectoryFilter " + ROOT.getPath(), "truffula.DirectoryFilter " + docs.getPath(),
+        "truffula.DirectorySort " + ROOT.getPath(), "truffula.DirectorySort " + docs.getPath()), seen);
+  }
+}
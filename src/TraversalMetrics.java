@@ -0,0 +1,434 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects low-overhead counters and latency histograms while a directory tree
+ * is being traversed.
+ *
+ * Each traversal phase (listing, sorting, filtering, stats and printing) gets a call
+ * counter, a total time and a power-of-two latency histogram. In addition the
+ * time spent on each directory is recorded, and the slowest directories are kept
+ * so they can be named in the summary.
+ *
+ * Metrics are opt-in. When they are disabled TruffulaPrinter does not create an
+ * instance at all, so the only cost left on the hot path is a null check.
+ *
+ * Example Usage:
+ *
+ * TraversalMetrics metrics = new TraversalMetrics();
+ * long start = System.nanoTime();
+ * File[] children = dir.listFiles();
+ * metrics.record(TraversalMetrics.Phase.LIST, System.nanoTime() - start);
+ * metrics.report(System.err);
+ */
+public class TraversalMetrics {
+
+  /**
+   * The phases of a traversal that are timed separately.
+   */
+  public enum Phase {
+    /**
+     * Reading the names of a directory's entries.
+     */
+    LIST("list"),
+
+    /**
+     * Sorting the entries of a directory (AlphabeticalFileSorter.sort).
+     */
+    SORT("sort"),
+
+    /**
+     * Checking the names of a directory against the hidden file rules as the
+     * listing reads them, once per directory listed while hidden files are not
+     * shown. This time is not counted in LIST.
+     */
+    FILTER("filter"),
+
+    /**
+     * Checking whether an entry is a directory as the walk reaches it, one
+     * stat per entry.
+     */
+    STAT("stat"),
+
+    /**
+     * Writing a single line through the ColorPrinter.
+     */
+    PRINT("print");
+
+    private final String label;
+
+    Phase(String label) {
+      this.label = label;
+    }
+
+    /**
+     * Returns the short label used for this phase in the summary.
+     *
+     * @return the label of the phase
+     */
+    public String getLabel() {
+      return label;
+    }
+  }
+
+  /**
+   * Number of histogram buckets. Bucket i holds samples in [2^i, 2^(i+1)) nanoseconds.
+   */
+  private static final int BUCKETS = 64;
+
+  /**
+   * Default number of slow directories kept for the summary.
+   */
+  private static final int DEFAULT_SLOWEST = 10;
+
+  private final LongAdder[] counts = new LongAdder[Phase.values().length];
+  private final LongAdder[] totalNanos = new LongAdder[Phase.values().length];
+  private final AtomicLongArray[] histograms = new AtomicLongArray[Phase.values().length];
+  private final LongAccumulator[] maxNanos = new LongAccumulator[Phase.values().length];
+  private final LongAdder directories = new LongAdder();
+  private final LongAdder entries = new LongAdder();
+  private final LongAdder heldBackBytes = new LongAdder();
+  private final LongAccumulator peakHeldBytes = new LongAccumulator(Math::max, 0);
+  private final LongAdder deferrals = new LongAdder();
+  private final LongAdder operationWaits = new LongAdder();
+  private final LongAdder operationWaitNanos = new LongAdder();
+  private final LongAdder listingWaits = new LongAdder();
+  private final LongAdder listingWaitNanos = new LongAdder();
+
+  /**
+   * The slowest directories seen so far, with the fastest of them at the head.
+   */
+  private final PriorityQueue<DirectoryTiming> slowest =
+      new PriorityQueue<>((a, b) -> Long.compare(a.nanos, b.nanos));
+  private final int slowestLimit;
+
+  /**
+   * Constructs an empty TraversalMetrics that remembers the 10 slowest directories.
+   */
+  public TraversalMetrics() {
+    this(DEFAULT_SLOWEST);
+  }
+
+  /**
+   * Constructs an empty TraversalMetrics.
+   *
+   * @param slowestLimit how many of the slowest directories to remember
+   */
+  public TraversalMetrics(int slowestLimit) {
+    this.slowestLimit = slowestLimit;
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = new LongAdder();
+      totalNanos[i] = new LongAdder();
+      histograms[i] = new AtomicLongArray(BUCKETS);
+      maxNanos[i] = new LongAccumulator(Math::max, 0);
+    }
+  }
+
+  /**
+   * Records one call of the given phase that took the given time.
+   *
+   * @param phase the phase that was timed
+   * @param nanos the elapsed time in nanoseconds
+   */
+  public void record(Phase phase, long nanos) {
+    int i = phase.ordinal();
+    counts[i].increment();
+    totalNanos[i].add(nanos);
+    histograms[i].incrementAndGet(bucket(nanos));
+    maxNanos[i].accumulate(nanos);
+  }
+
+  /**
+   * Records output that was rendered ahead of its turn and had to be held back
+   * until everything before it was written.
+   *
+   * @param bytes    the number of bytes held back
+   * @param heldNow  the number of bytes held back in total right after these were added
+   */
+  public void recordHeldBack(long bytes, long heldNow) {
+    heldBackBytes.add(bytes);
+    peakHeldBytes.accumulate(heldNow);
+  }
+
+  /**
+   * Records a subtree whose rendering was put off because too much output was
+   * already held back.
+   */
+  public void recordDeferral() {
+    deferrals.increment();
+  }
+
+  /**
+   * Records time a walker spent waiting for the throttle.
+   *
+   * @param listing true for a wait for a listing slot; false for a wait for operations
+   * @param nanos   the time waited in nanoseconds
+   */
+  public void recordThrottleWait(boolean listing, long nanos) {
+    (listing ? listingWaits : operationWaits).increment();
+    (listing ? listingWaitNanos : operationWaitNanos).add(nanos);
+  }
+
+  /**
+   * Returns the number of waits for the limit on operations per second.
+   *
+   * @return the wait count
+   */
+  public long getOperationWaits() {
+    return operationWaits.sum();
+  }
+
+  /**
+   * Returns the number of waits for the limit on listings in flight.
+   *
+   * @return the wait count
+   */
+  public long getListingWaits() {
+    return listingWaits.sum();
+  }
+
+  /**
+   * Returns the total number of bytes that were held back before being written.
+   *
+   * @return the held back byte count
+   */
+  public long getHeldBackBytes() {
+    return heldBackBytes.sum();
+  }
+
+  /**
+   * Returns the most bytes that were held back at any one time.
+   *
+   * @return the peak held back byte count
+   */
+  public long getPeakHeldBytes() {
+    return peakHeldBytes.get();
+  }
+
+  /**
+   * Returns the number of times rendering a subtree was put off.
+   *
+   * @return the deferral count
+   */
+  public long getDeferrals() {
+    return deferrals.sum();
+  }
+
+  /**
+   * Records the time spent reading, sorting and filtering one directory.
+   *
+   * @param path       the path of the directory
+   * @param entryCount the number of entries read from the directory
+   * @param nanos      the elapsed time in nanoseconds
+   */
+  public void recordDirectory(String path, int entryCount, long nanos) {
+    directories.increment();
+    entries.add(entryCount);
+    synchronized (slowest) {
+      if (slowest.size() < slowestLimit) {
+        slowest.add(new DirectoryTiming(path, entryCount, nanos));
+      } else if (slowestLimit > 0 && slowest.peek().nanos < nanos) {
+        slowest.poll();
+        slowest.add(new DirectoryTiming(path, entryCount, nanos));
+      }
+    }
+  }
+
+  /**
+   * Returns how many times the given phase was recorded.
+   *
+   * @param phase the phase to look up
+   * @return the number of recorded calls
+   */
+  public long getCount(Phase phase) {
+    return counts[phase.ordinal()].sum();
+  }
+
+  /**
+   * Returns the total time recorded for the given phase.
+   *
+   * @param phase the phase to look up
+   * @return the total time in nanoseconds
+   */
+  public long getTotalNanos(Phase phase) {
+    return totalNanos[phase.ordinal()].sum();
+  }
+
+  /**
+   * Returns the longest single call recorded for the given phase, exactly
+   * rather than from the histogram.
+   *
+   * @param phase the phase to look up
+   * @return the longest call in nanoseconds, or 0 if nothing was recorded
+   */
+  public long getMaxNanos(Phase phase) {
+    return maxNanos[phase.ordinal()].get();
+  }
+
+  /**
+   * Returns the number of directories that were recorded.
+   *
+   * @return the directory count
+   */
+  public long getDirectoryCount() {
+    return directories.sum();
+  }
+
+  /**
+   * Returns the number of entries read from all recorded directories.
+   *
+   * @return the entry count
+   */
+  public long getEntryCount() {
+    return entries.sum();
+  }
+
+  /**
+   * Returns an approximate percentile of the latencies recorded for a phase.
+   * The result is the upper bound of the histogram bucket holding the percentile.
+   *
+   * @param phase      the phase to look up
+   * @param percentile the percentile between 0 and 100
+   * @return the approximate latency in nanoseconds, or 0 if nothing was recorded
+   */
+  public long getPercentileNanos(Phase phase, double percentile) {
+    AtomicLongArray histogram = histograms[phase.ordinal()];
+    long total = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      total += histogram.get(b);
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long target = (long) Math.ceil(total * percentile / 100.0);
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += histogram.get(b);
+      if (seen >= target && seen > 0) {
+        return b >= 62 ? Long.MAX_VALUE : (1L << (b + 1)) - 1;
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Returns the slowest directories recorded, slowest first.
+   *
+   * @return the slowest directories
+   */
+  public List<DirectoryTiming> getSlowestDirectories() {
+    List<DirectoryTiming> result;
+    synchronized (slowest) {
+      result = new ArrayList<>(slowest);
+    }
+    result.sort(Collections.reverseOrder((a, b) -> Long.compare(a.nanos, b.nanos)));
+    return result;
+  }
+
+  /**
+   * Prints a summary of all phases and the slowest directories.
+   *
+   * @param out the stream to print the summary to
+   */
+  public void report(PrintStream out) {
+    out.println("truffula metrics: " + getDirectoryCount() + " directories, "
+        + getEntryCount() + " entries");
+    out.println(String.format("  %-7s %10s %12s %10s %10s %10s",
+        "phase", "calls", "total ms", "p50 us", "p99 us", "max us"));
+    for (Phase phase : Phase.values()) {
+      out.println(String.format("  %-7s %10d %12.3f %10s %10s %10s",
+          phase.getLabel(),
+          getCount(phase),
+          getTotalNanos(phase) / 1_000_000.0,
+          micros(getPercentileNanos(phase, 50)),
+          micros(getPercentileNanos(phase, 99)),
+          String.format("%.1f", getMaxNanos(phase) / 1000.0)));
+    }
+    if (getHeldBackBytes() > 0 || getDeferrals() > 0) {
+      out.println(String.format("  held back: %d bytes total, %d bytes peak, %d deferred subtrees",
+          getHeldBackBytes(), getPeakHeldBytes(), getDeferrals()));
+    }
+    if (getOperationWaits() > 0 || getListingWaits() > 0) {
+      out.println(String.format("  throttled: %d waits for operations (%.3f ms), %d waits for listings (%.3f ms)",
+          getOperationWaits(), operationWaitNanos.sum() / 1_000_000.0,
+          getListingWaits(), listingWaitNanos.sum() / 1_000_000.0));
+    }
+    List<DirectoryTiming> slow = getSlowestDirectories();
+    if (!slow.isEmpty()) {
+      out.println("  slowest directories:");
+      for (DirectoryTiming timing : slow) {
+        out.println(String.format("  %10.3f ms %8d entries  %s",
+            timing.nanos / 1_000_000.0, timing.entryCount, timing.path));
+      }
+    }
+  }
+
+  /**
+   * Formats an upper-bound bucket value in microseconds.
+   */
+  private static String micros(long nanos) {
+    if (nanos == Long.MAX_VALUE) {
+      return "inf";
+    }
+    return "<" + ((nanos + 999) / 1000);
+  }
+
+  /**
+   * Returns the histogram bucket for a latency: floor(log2(nanos)).
+   */
+  private static int bucket(long nanos) {
+    if (nanos <= 1) {
+      return 0;
+    }
+    return 63 - Long.numberOfLeadingZeros(nanos);
+  }
+
+  /**
+   * The time spent on a single directory.
+   */
+  public static class DirectoryTiming {
+    private final String path;
+    private final int entryCount;
+    private final long nanos;
+
+    /**
+     * Constructs a DirectoryTiming.
+     *
+     * @param path       the path of the directory
+     * @param entryCount the number of entries read from it
+     * @param nanos      the time spent on it in nanoseconds
+     */
+    public DirectoryTiming(String path, int entryCount, long nanos) {
+      this.path = path;
+      this.entryCount = entryCount;
+      this.nanos = nanos;
+    }
+
+    /**
+     * @return the path of the directory
+     */
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * @return the number of entries read from the directory
+     */
+    public int getEntryCount() {
+      return entryCount;
+    }
+
+    /**
+     * @return the time spent on the directory in nanoseconds
+     */
+    public long getNanos() {
+      return nanos;
+    }
+  }
+}
@@ -0,0 +1,186 @@
+import java.io.File;
+
+/**
+ * A single file or directory produced by a TreeWalker.
+ *
+ * Entries are produced in the same order TruffulaPrinter prints them: a directory
+ * comes first, followed by its children sorted case-insensitively. Each entry knows
+ * its depth below the root and its position among its visible siblings.
+ *
+ * Metadata such as the size or last modified time is read from the file system
+ * only when it is asked for, through the TreeFileSystem the entry was walked on.
+ */
+public class TreeEntry {
+
+  private final File file;
+  private final TreeFileSystem fs;
+  private final String name;
+  private final int depth;
+  private final boolean directory;
+  private final int index;
+  private final int siblingCount;
+
+  /**
+   * The long listing attributes read along with the entry, or null.
+   */
+  private LongListing.Attributes attributes;
+
+  /**
+   * Constructs a TreeEntry.
+   *
+   * @param file         the file or directory this entry stands for
+   * @param depth        the depth below the root (the root has depth 0)
+   * @param directory    whether the entry is a directory
+   * @param index        the position of the entry among its visible siblings
+   * @param siblingCount the number of visible entries in the parent directory
+   */
+  public TreeEntry(File file, int depth, boolean directory, int index, int siblingCount) {
+    this(file, LocalFileSystem.INSTANCE, depth, directory, index, siblingCount);
+  }
+
+  /**
+   * Constructs a TreeEntry whose metadata is read from the given file system.
+   *
+   * @param file         the file or directory this entry stands for
+   * @param fs           the file system the entry was found on
+   * @param depth        the depth below the root (the root has depth 0)
+   * @param directory    whether the entry is a directory
+   * @param index        the position of the entry among its visible siblings
+   * @param siblingCount the number of visible entries in the parent directory
+   */
+  public TreeEntry(File file, TreeFileSystem fs, int depth, boolean directory, int index, int siblingCount) {
+    this.file = file;
+    this.fs = fs;
+    this.name = file.getName();
+    this.depth = depth;
+    this.directory = directory;
+    this.index = index;
+    this.siblingCount = siblingCount;
+  }
+
+  /**
+   * Returns the file or directory this entry stands for.
+   *
+   * @return the file
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the name of the entry, without any parent path.
+   *
+   * @return the name of the entry
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the full path of the entry.
+   *
+   * @return the path of the entry
+   */
+  public String getPath() {
+    return file.getPath();
+  }
+
+  /**
+   * Returns the depth of the entry below the root. The root has depth 0,
+   * its children depth 1 and so on.
+   *
+   * @return the depth of the entry
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Indicates whether the entry is a directory.
+   *
+   * @return true if the entry is a directory; false otherwise
+   */
+  public boolean isDirectory() {
+    return directory;
+  }
+
+  /**
+   * Returns the position of the entry among the visible entries of its parent,
+   * in sorted order. The root has index 0.
+   *
+   * @return the index of the entry
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Returns the number of visible entries in the parent directory.
+   * The root has a sibling count of 1.
+   *
+   * @return the number of siblings including this entry
+   */
+  public int getSiblingCount() {
+    return siblingCount;
+  }
+
+  /**
+   * Indicates whether this is the last visible entry of its parent.
+   *
+   * @return true if no sibling follows this entry; false otherwise
+   */
+  public boolean isLast() {
+    return index == siblingCount - 1;
+  }
+
+  /**
+   * Returns the size of the file in bytes. This reads from the file system.
+   *
+   * @return the size in bytes, or 0 if it cannot be read
+   */
+  public long length() {
+    return fs.length(file);
+  }
+
+  /**
+   * Returns the last modified time of the file. This reads from the file system.
+   *
+   * @return the time in milliseconds since the epoch, or 0 if it cannot be read
+   */
+  public long lastModified() {
+    return fs.lastModified(file);
+  }
+
+  /**
+   * Indicates whether the file system counts the entry as hidden.
+   *
+   * @return true if the entry is hidden; false otherwise
+   */
+  public boolean isHidden() {
+    return fs.isHidden(file.getParentFile(), name);
+  }
+
+  /**
+   * Returns the long listing attributes the walker read for the entry, so the
+   * columns can be printed without reading the file again.
+   *
+   * @return the attributes, or null if they were not read with the entry
+   */
+  LongListing.Attributes getAttributes() {
+    return attributes;
+  }
+
+  /**
+   * Keeps the long listing attributes read for the entry.
+   *
+   * @param attributes the attributes, or null
+   */
+  void setAttributes(LongListing.Attributes attributes) {
+    this.attributes = attributes;
+  }
+
+  @Override
+  public String toString() {
+    return "TreeEntry [path=" + getPath() + ", depth=" + depth + ", directory=" + directory + "]";
+  }
+}
@@ -0,0 +1,112 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The file system operations a TreeWalker needs: listing a directory, a few
+ * stat queries on one entry, and the hidden file rule.
+ *
+ * Entries are named by File objects, which are only used as paths here, so an
+ * implementation does not have to be backed by a disk. LocalFileSystem reads
+ * the real file system and is the default. MemoryFileSystem holds a generated
+ * or hand-built tree in memory, for tests that should not touch the disk and
+ * for benchmarks that should measure only the walk and the printing, and
+ * LatencyFileSystem wraps another implementation and adds a fixed delay to
+ * every call, to see how the engines behave on a slow network mount.
+ *
+ * Implementations must be safe to call from several threads at once.
+ *
+ * Example Usage:
+ *
+ * TreeFileSystem fs = new LatencyFileSystem(MemoryFileSystem.generate(new File("/mem"), 3, 10, 50), 200_000, 50_000);
+ * new TruffulaPrinter(TruffulaOptions.builder(new File("/mem")).fileSystem(fs).build()).printTree();
+ */
+public interface TreeFileSystem {
+
+  /**
+   * Returns the names of every entry in a directory, hidden ones included, in
+   * no particular order.
+   *
+   * @param dir the directory to list
+   * @return the names of the entries
+   * @throws IOException if the directory cannot be read
+   */
+  String[] list(File dir) throws IOException;
+
+  /**
+   * Returns the names of the entries in a directory that the filter accepts,
+   * in no particular order. Each name is offered to the filter as it is read,
+   * so an implementation that streams the directory never stores the names
+   * the filter drops. The default lists every name and drops them afterwards.
+   *
+   * @param dir    the directory to list
+   * @param filter decides which names are kept
+   * @return the names of the accepted entries
+   * @throws IOException if the directory cannot be read
+   */
+  default String[] list(File dir, NameFilter filter) throws IOException {
+    String[] names = list(dir);
+    int kept = 0;
+    for (String name : names) {
+      if (filter.accept(name)) {
+        names[kept++] = name;
+      }
+    }
+    return kept == names.length ? names : Arrays.copyOf(names, kept);
+  }
+
+  /**
+   * Indicates whether a path is a directory.
+   *
+   * @param file the path
+   * @return true if it is a directory; false if it is anything else or does not exist
+   */
+  boolean isDirectory(File file);
+
+  /**
+   * Indicates whether a path is a regular file.
+   *
+   * @param file the path
+   * @return true if it is a regular file; false if it is anything else or does not exist
+   */
+  boolean isFile(File file);
+
+  /**
+   * Returns the size of a file.
+   *
+   * @param file the path
+   * @return the size in bytes, or 0 if it cannot be read
+   */
+  long length(File file);
+
+  /**
+   * Returns the last modified time of a file.
+   *
+   * @param file the path
+   * @return the time in milliseconds since the epoch, or 0 if it cannot be read
+   */
+  long lastModified(File file);
+
+  /**
+   * Applies the hidden file rule to an entry of a directory.
+   *
+   * @param dir  the directory the entry is in, or null if the entry has no parent path
+   * @param name the name of the entry
+   * @return true if the entry is hidden
+   */
+  boolean isHidden(File dir, String name);
+
+  /**
+   * Decides, one name at a time, which entries a listing keeps.
+   */
+  @FunctionalInterface
+  interface NameFilter {
+    /**
+     * Indicates whether a listing keeps the entry with the given name.
+     *
+     * @param name the name of the entry
+     * @return true to keep the entry
+     */
+    boolean accept(String name);
+  }
+}
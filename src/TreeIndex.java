@@ -0,0 +1,167 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable, in-memory snapshot of a directory tree that can answer print,
+ * count and search queries without touching the file system.
+ *
+ * The tree is held in a CompactTree, so the index costs a few tens of bytes per
+ * entry rather than one File object and path String per entry. Hidden entries
+ * are kept and flagged so the same index can serve queries with and without
+ * hidden files.
+ *
+ * Example Usage:
+ *
+ * TreeIndex index = TreeIndex.build(new File("/srv/data"));
+ * index.print(index.find(new File("/srv/data/logs")), printer, false, -1);
+ */
+public class TreeIndex {
+
+  private final File root;
+  private final CompactTree tree;
+
+  /**
+   * Constructs a TreeIndex over an already built tree.
+   *
+   * @param root the directory the tree was built from
+   * @param tree the tree, which should include hidden entries
+   */
+  public TreeIndex(File root, CompactTree tree) {
+    this.root = root;
+    this.tree = tree;
+  }
+
+  /**
+   * Walks the tree below root, including hidden entries, and indexes it.
+   *
+   * @param root the directory to index
+   * @return the index of the tree
+   */
+  public static TreeIndex build(File root) {
+    return new TreeIndex(root, CompactTree.build(root, true));
+  }
+
+  /**
+   * Returns the root directory this index was built from.
+   *
+   * @return the root directory
+   */
+  public File getRoot() {
+    return root;
+  }
+
+  /**
+   * Returns the tree behind this index.
+   *
+   * @return the tree
+   */
+  public CompactTree getTree() {
+    return tree;
+  }
+
+  /**
+   * Returns the number of entries in the index, including the root and hidden entries.
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    return tree.size();
+  }
+
+  /**
+   * Finds the node for a path at or below the root of the index.
+   *
+   * @param path the path to look up
+   * @return the node, or -1 if the path is not in the index
+   */
+  public int find(File path) {
+    if (tree.size() == 0) {
+      return -1;
+    }
+    String rootPath = root.getAbsolutePath();
+    String target = path.getAbsolutePath();
+    if (target.equals(rootPath)) {
+      return 0;
+    }
+    if (!target.startsWith(rootPath + File.separator)) {
+      return -1;
+    }
+    int node = 0;
+    for (String part : target.substring(rootPath.length() + 1).split(Pattern.quote(File.separator))) {
+      if (part.isEmpty()) {
+        continue;
+      }
+      node = tree.child(node, part);
+      if (node < 0) {
+        return -1;
+      }
+    }
+    return node;
+  }
+
+  /**
+   * Prints the subtree of a node the way TruffulaPrinter prints a directory,
+   * with the node itself as the root.
+   *
+   * @param node       the node to print
+   * @param printer    the printer to render lines with
+   * @param showHidden whether hidden entries should be printed
+   * @param maxDepth   the deepest level below the node to print, or -1 for no limit
+   */
+  public void print(int node, TruffulaPrinter printer, boolean showHidden, int maxDepth) {
+    tree.print(node, printer, showHidden, maxDepth);
+  }
+
+  /**
+   * Counts the files and directories below a node, not counting the node itself.
+   *
+   * @param node       the node to count below
+   * @param showHidden whether hidden entries should be counted
+   * @return a two element array holding the file count and the directory count
+   */
+  public long[] count(int node, boolean showHidden) {
+    return tree.count(node, showHidden);
+  }
+
+  /**
+   * Finds every entry below a node whose name starts with the given prefix.
+   *
+   * @param node       the node to search below
+   * @param prefix     the name prefix to match
+   * @param showHidden whether hidden entries should be searched
+   * @param limit      the most matches to return, or -1 for no limit
+   * @return the paths of the matching entries in tree order
+   */
+  public List<String> findByPrefix(int node, String prefix, boolean showHidden, int limit) {
+    return tree.findByPrefix(node, pathOf(node), prefix, showHidden, limit);
+  }
+
+  /**
+   * Rebuilds the full path of a node by walking up through its ancestors.
+   */
+  private String pathOf(int node) {
+    List<String> parts = new ArrayList<>();
+    for (int n = node; tree.parent(n) != CompactTree.NONE; n = tree.parent(n)) {
+      parts.add(tree.name(n));
+    }
+    StringBuilder sb = new StringBuilder(root.getPath());
+    for (int p = parts.size() - 1; p >= 0; p--) {
+      sb.append(File.separatorChar).append(parts.get(p));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns the paths of every directory in the index, root first.
+   *
+   * @return the directory paths
+   */
+  public List<File> directories() {
+    if (tree.size() == 0) {
+      return new ArrayList<>();
+    }
+    return tree.directories(0, root);
+  }
+}
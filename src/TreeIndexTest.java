@@ -0,0 +1,108 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TreeIndexTest {
+
+  /**
+   * Builds:
+   * root/
+   *    .hidden/
+   *       secret.txt
+   *    apple.txt
+   *    Docs/
+   *       images/
+   *          cat.png
+   *       notes.txt
+   *    zebra.txt
+   */
+  private static File buildTree(File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    root.mkdir();
+    File hidden = new File(root, ".hidden");
+    hidden.mkdir();
+    new File(hidden, "secret.txt").createNewFile();
+    new File(root, "apple.txt").createNewFile();
+    new File(root, "zebra.txt").createNewFile();
+    File docs = new File(root, "Docs");
+    docs.mkdir();
+    new File(docs, "notes.txt").createNewFile();
+    File images = new File(docs, "images");
+    images.mkdir();
+    new File(images, "cat.png").createNewFile();
+    return root;
+  }
+
+  @Test
+  void testPrintMatchesTruffulaPrinter(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = buildTree(tempDir);
+    TreeIndex index = TreeIndex.build(root);
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    new TruffulaPrinter(new TruffulaOptions(root, false, true), new PrintStream(expected)).printTree();
+
+    // Act
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    index.print(0, new TruffulaPrinter(new TruffulaOptions(root, false, true), new PrintStream(actual)), false, -1);
+
+    // Assert
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  @Test
+  void testPrintSubtreeWithDepthLimit(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = buildTree(tempDir);
+    TreeIndex index = TreeIndex.build(root);
+    int docs = index.find(new File(root, "Docs"));
+
+    // Act
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    index.print(docs, new TruffulaPrinter(new TruffulaOptions(root, false, false), new PrintStream(actual)), false, 1);
+
+    // Assert: the subtree is printed from depth 0, images/ is not opened
+    String nl = System.lineSeparator();
+    String WHITE = "\u001B[0;37m";
+    String RESET = "\u001B[0m";
+    String expected = WHITE + "Docs/" + nl + RESET
+        + WHITE + "   images/" + nl + RESET
+        + WHITE + "   notes.txt" + nl + RESET;
+    assertEquals(expected, actual.toString());
+  }
+
+  @Test
+  void testCountHonorsHidden(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = buildTree(tempDir);
+    TreeIndex index = TreeIndex.build(root);
+
+    // Act + Assert: {files, directories}
+    assertEquals(9, index.size());
+    assertArrayEquals(new long[] {4, 2}, index.count(0, false));
+    assertArrayEquals(new long[] {5, 3}, index.count(0, true));
+  }
+
+  @Test
+  void testFindByPrefix(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = buildTree(tempDir);
+    TreeIndex index = TreeIndex.build(root);
+
+    // Act
+    List<String> matches = index.findByPrefix(0, "ca", false, -1);
+    List<String> inDocs = index.findByPrefix(index.find(new File(root, "Docs")), "n", false, -1);
+
+    // Assert
+    assertEquals(List.of(new File(root, "Docs/images/cat.png").getPath()), matches);
+    assertEquals(List.of(new File(root, "Docs/notes.txt").getPath()), inDocs);
+    assertEquals(-1, index.find(new File(root, "missing")));
+  }
+}
@@ -0,0 +1,33 @@
+/**
+ * Callback interface for walking a directory tree with a TreeWalker.
+ *
+ * Entries are visited in the order TruffulaPrinter prints them. Returning false
+ * from visit for a directory skips everything below it.
+ *
+ * Example Usage:
+ *
+ * new TreeWalker(root, false).walk(entry -> {
+ *   index.add(entry.getPath());
+ *   return true;
+ * });
+ */
+@FunctionalInterface
+public interface TreeVisitor {
+
+  /**
+   * Called for every visible entry, parents before their children.
+   *
+   * @param entry the entry being visited
+   * @return true to descend into the entry if it is a directory; false to skip its children
+   */
+  boolean visit(TreeEntry entry);
+
+  /**
+   * Called after all children of a directory have been visited. Not called for
+   * directories whose children were skipped.
+   *
+   * @param directory the directory whose children have all been visited
+   */
+  default void leaveDirectory(TreeEntry directory) {
+  }
+}
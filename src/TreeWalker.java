@@ -0,0 +1,580 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Walks a directory tree in the order TruffulaPrinter prints it, without rendering
+ * anything.
+ *
+ * The walk is depth first: a directory is produced before its children, and the
+ * children are sorted case-insensitively with AlphabeticalFileSorter, or in the
+ * order the options ask for (NaturalOrderSorter, MetadataSorter). Hidden files
+ * and directories are skipped unless showHidden is set, including the root itself.
+ *
+ * The file system is read through a TreeFileSystem, the local disk unless the
+ * options name another one, such as a MemoryFileSystem in tests.
+ *
+ * When reading archives is turned on, ZIP, JAR and TAR files are produced as
+ * directories and their entries as the children below them (see ArchiveTree).
+ * The entries are not on disk, so their File is only a path for naming them.
+ *
+ * When the options set limits on metadata operations, every listing and stat
+ * first takes its share from a Throttle, which may be shared with other walkers
+ * of the same run.
+ *
+ * The walk keeps an explicit stack instead of recursing, so very deep trees do not
+ * overflow the call stack. A directory is only listed once the walk moves past it,
+ * so skipping a directory from a visitor avoids reading it at all.
+ *
+ * Example Usage:
+ *
+ * TreeWalker walker = new TreeWalker(new File("src"), false);
+ * long files = walker.stream().filter(e -> !e.isDirectory()).count();
+ */
+public class TreeWalker {
+
+  private final File root;
+  private final boolean showHidden;
+  private final int maxDepth;
+  private final TraversalMetrics metrics;
+  private final boolean readArchives;
+  private final TruffulaOptions.SortOrder sortOrder;
+  private final Throttle throttle;
+  private final TreeFileSystem fs;
+
+  /**
+   * Whether each entry's long listing attributes are read with its stat.
+   */
+  private final boolean readAttributes;
+
+  /**
+   * Constructs a TreeWalker that does not collect metrics.
+   *
+   * @param root       the directory to start from
+   * @param showHidden whether hidden files and directories should be included
+   */
+  public TreeWalker(File root, boolean showHidden) {
+    this(root, showHidden, -1, null);
+  }
+
+  /**
+   * Constructs a TreeWalker for the root, hidden file setting, depth limit,
+   * archive setting and sort order in the options.
+   *
+   * @param options the options to take the root and walk settings from
+   * @param metrics the metrics to record into, or null to not collect metrics
+   */
+  public TreeWalker(TruffulaOptions options, TraversalMetrics metrics) {
+    this(options, metrics, Throttle.forOptions(options, metrics));
+  }
+
+  /**
+   * Constructs a TreeWalker for the settings in the options that shares a
+   * throttle with other walkers.
+   *
+   * @param options  the options to take the root and walk settings from
+   * @param metrics  the metrics to record into, or null to not collect metrics
+   * @param throttle the throttle to take metadata operations from, or null for no limits
+   */
+  public TreeWalker(TruffulaOptions options, TraversalMetrics metrics, Throttle throttle) {
+    this(options.getRoot(), options.isShowHidden(), options.getMaxDepth(), metrics, options.isReadArchives(),
+        options.getSortOrder(), throttle, options.getFileSystem(),
+        options.isLongListing() && options.getFileSystem() instanceof LocalFileSystem);
+  }
+
+  /**
+   * Constructs a TreeWalker.
+   *
+   * @param root       the directory to start from
+   * @param showHidden whether hidden files and directories should be included
+   * @param maxDepth   the deepest level to produce entries for, or -1 for no limit;
+   *                   directories at that level are produced but not read
+   * @param metrics    the metrics to record into, or null to not collect metrics
+   */
+  public TreeWalker(File root, boolean showHidden, int maxDepth, TraversalMetrics metrics) {
+    this(root, showHidden, maxDepth, metrics, false);
+  }
+
+  /**
+   * Constructs a TreeWalker that may show archives as directories.
+   *
+   * @param root         the directory or archive to start from
+   * @param showHidden   whether hidden files and directories should be included
+   * @param maxDepth     the deepest level to produce entries for, or -1 for no limit
+   * @param metrics      the metrics to record into, or null to not collect metrics
+   * @param readArchives whether archives should be walked as directories of their entries
+   */
+  public TreeWalker(File root, boolean showHidden, int maxDepth, TraversalMetrics metrics, boolean readArchives) {
+    this(root, showHidden, maxDepth, metrics, readArchives, TruffulaOptions.SortOrder.NAME, null,
+        LocalFileSystem.INSTANCE, false);
+  }
+
+  private TreeWalker(File root, boolean showHidden, int maxDepth, TraversalMetrics metrics, boolean readArchives,
+      TruffulaOptions.SortOrder sortOrder, Throttle throttle, TreeFileSystem fs, boolean readAttributes) {
+    this.root = root;
+    this.fs = fs;
+    this.readAttributes = readAttributes;
+    this.throttle = throttle;
+    this.sortOrder = sortOrder;
+    this.showHidden = showHidden;
+    this.maxDepth = maxDepth;
+    this.metrics = metrics;
+    this.readArchives = readArchives;
+  }
+
+  /**
+   * Walks the whole tree, calling the visitor for every visible entry.
+   *
+   * @param visitor the visitor to call
+   */
+  public void walk(TreeVisitor visitor) {
+    Traversal traversal = new Traversal(visitor);
+    while (traversal.hasNext()) {
+      TreeEntry entry = traversal.next();
+      if (!visitor.visit(entry)) {
+        traversal.skipChildren();
+      }
+    }
+  }
+
+  /**
+   * Returns an iterator over every visible entry in tree order.
+   *
+   * @return an iterator over the entries
+   */
+  public Iterator<TreeEntry> iterator() {
+    return new Traversal(null);
+  }
+
+  /**
+   * Starts a walk that the caller drives one entry at a time and may stop and
+   * pick up again later, possibly on another thread.
+   *
+   * @return the walk, positioned before the root
+   */
+  Traversal traversal() {
+    return new Traversal(null);
+  }
+
+  /**
+   * Starts a walk just after the last entry saved in a checkpoint, so it
+   * produces exactly the entries an uninterrupted walk would have produced
+   * after that one. Each directory on the saved path is listed again and the
+   * saved entry looked up by name; if it is gone, the walk carries on with the
+   * entry that now sits at its old position.
+   *
+   * @param checkpoint the checkpoint to resume from
+   * @return the walk, positioned after the saved entry
+   */
+  Traversal traversal(Checkpoint checkpoint) {
+    Traversal traversal = new Traversal(null);
+    if (traversal.pendingRoot != null) {
+      traversal.resume(checkpoint);
+    }
+    return traversal;
+  }
+
+  /**
+   * Returns a sequential, ordered stream over every visible entry in tree order.
+   * Directories are read lazily as the stream is consumed.
+   *
+   * @return a stream of the entries
+   */
+  public Stream<TreeEntry> stream() {
+    Spliterator<TreeEntry> spliterator = Spliterators.spliteratorUnknownSize(
+        iterator(), Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT);
+    return StreamSupport.stream(spliterator, false);
+  }
+
+  /**
+   * Reads, filters and sorts the names of a directory's children.
+   *
+   * Only the names are read, and hidden entries are dropped as the file system
+   * reads them, so their names are never stored. The checks are timed and
+   * reported separately from the rest of the listing. The walk builds a File
+   * for an entry only when it gets to it.
+   *
+   * @param dir the directory to read
+   * @return the names of the visible children in sorted order, trimmed to length
+   */
+  String[] listChildren(File dir) {
+    //waits for the throttle are counted by the throttle, not as listing time
+    if (throttle != null) {
+      throttle.acquireOperations(1);
+      throttle.beginListing();
+    }
+    boolean recording = TraversalEvents.isRecording();
+    long listStart = metrics == null ? 0 : System.nanoTime();
+    TraversalEvents.DirectoryListing listEvent = null;
+    if (recording) {
+      listEvent = new TraversalEvents.DirectoryListing();
+      listEvent.begin();
+    }
+    TraversalEvents.DirectoryFilter filterEvent = null;
+    if (recording && !showHidden) {
+      filterEvent = new TraversalEvents.DirectoryFilter();
+      filterEvent.begin();
+    }
+    HiddenFilter filter = showHidden ? null : new HiddenFilter(dir, metrics != null || filterEvent != null);
+    String[] children;
+    try {
+      children = filter == null ? fs.list(dir) : fs.list(dir, filter);
+    } catch (IOException e) {
+      //unreadable, the same as File.listFiles returning null
+      children = new String[0];
+    } finally {
+      if (throttle != null) {
+        throttle.endListing();
+      }
+    }
+    int visible = children.length;
+    int total = filter == null ? visible : filter.total;
+    if (listEvent != null && listEvent.shouldCommit()) {
+      listEvent.path = dir.getPath();
+      listEvent.entryCount = total;
+      listEvent.commit();
+    }
+    if (filterEvent != null && filterEvent.shouldCommit()) {
+      filterEvent.path = dir.getPath();
+      filterEvent.entryCount = total;
+      filterEvent.visibleCount = visible;
+      filterEvent.filterTime = filter.nanos;
+      filterEvent.commit();
+    }
+
+    long listEnd = metrics == null ? 0 : System.nanoTime();
+    boolean statsEntries = sortOrder == TruffulaOptions.SortOrder.SIZE || sortOrder == TruffulaOptions.SortOrder.MTIME;
+    if (throttle != null && statsEntries) {
+      //sorting by size or time stats every entry
+      throttle.acquireOperations(children.length);
+    }
+    long sortStart = metrics == null ? 0 : System.nanoTime();
+    TraversalEvents.DirectorySort sortEvent = null;
+    if (recording) {
+      sortEvent = new TraversalEvents.DirectorySort();
+      sortEvent.begin();
+    }
+    if (sortOrder == TruffulaOptions.SortOrder.NAME) {
+      AlphabeticalFileSorter.sort(children);
+    } else if (sortOrder == TruffulaOptions.SortOrder.NATURAL) {
+      NaturalOrderSorter.sort(children);
+    } else {
+      MetadataSorter.sort(fs, dir, children, sortOrder);
+    }
+    if (sortEvent != null && sortEvent.shouldCommit()) {
+      sortEvent.path = dir.getPath();
+      sortEvent.entryCount = visible;
+      sortEvent.commit();
+    }
+
+    if (metrics != null) {
+      long sortEnd = System.nanoTime();
+      long filterNanos = filter == null ? 0 : filter.nanos;
+      metrics.record(TraversalMetrics.Phase.LIST, listEnd - listStart - filterNanos);
+      if (filter != null) {
+        metrics.record(TraversalMetrics.Phase.FILTER, filterNanos);
+      }
+      metrics.record(TraversalMetrics.Phase.SORT, sortEnd - sortStart);
+      metrics.recordDirectory(dir.getPath(), total, (listEnd - listStart) + (sortEnd - sortStart));
+    }
+    return children;
+  }
+
+  /**
+   * Indicates whether a file on disk should be walked as an archive.
+   */
+  /**
+   * Drops hidden names as a listing reads them, counting every name offered
+   * and, when asked to, timing the checks.
+   */
+  private final class HiddenFilter implements TreeFileSystem.NameFilter {
+    private final File dir;
+    private final boolean timed;
+    private int total;
+    private long nanos;
+
+    private HiddenFilter(File dir, boolean timed) {
+      this.dir = dir;
+      this.timed = timed;
+    }
+
+    @Override
+    public boolean accept(String name) {
+      total++;
+      if (!timed) {
+        return !fs.isHidden(dir, name);
+      }
+      long start = System.nanoTime();
+      boolean hidden = fs.isHidden(dir, name);
+      nanos += System.nanoTime() - start;
+      return !hidden;
+    }
+  }
+
+  /**
+   * Stats a file into an entry. In long listing mode the attributes for the
+   * columns are read here and kept on the entry, and answer the directory
+   * check too, so the file is read once; only a symbolic link is stat'ed
+   * again, since a link to a directory is walked as one.
+   */
+  private TreeEntry stat(File file, int depth, int index, int siblingCount) {
+    if (!readAttributes) {
+      return new TreeEntry(file, fs, depth, fs.isDirectory(file) || isArchive(file), index, siblingCount);
+    }
+    LongListing.Attributes attributes = LongListing.read(file);
+    boolean directory = attributes == null || attributes.isSymbolicLink() ? fs.isDirectory(file)
+        : attributes.isDirectory();
+    TreeEntry entry = new TreeEntry(file, fs, depth, directory || isArchive(file), index, siblingCount);
+    entry.setAttributes(attributes);
+    return entry;
+  }
+
+  private boolean isArchive(File file) {
+    return readArchives && ArchiveTree.isArchive(file) && fs.isFile(file);
+  }
+
+  /**
+   * Reads the entries of an archive on disk, or returns null if it cannot be
+   * read, the same as a directory that cannot be listed.
+   */
+  private ArchiveTree.Node readArchive(File archive) {
+    if (throttle != null) {
+      throttle.acquireOperations(1);
+    }
+    long start = metrics == null ? 0 : System.nanoTime();
+    ArchiveTree tree;
+    try {
+      tree = ArchiveTree.read(archive);
+    } catch (IOException e) {
+      return null;
+    }
+    if (metrics != null) {
+      long nanos = System.nanoTime() - start;
+      metrics.record(TraversalMetrics.Phase.LIST, nanos);
+      metrics.recordDirectory(archive.getPath(), tree.size(), nanos);
+    }
+    return tree.getRoot();
+  }
+
+  /**
+   * Returns the visible children of an archive entry in the walk's sort order.
+   * Sizes and times of archive entries are not read, so those orders leave
+   * them in name order.
+   */
+  private ArchiveTree.Node[] listChildren(ArchiveTree.Node node) {
+    ArchiveTree.Node[] children = node.getChildren();
+    if (sortOrder == TruffulaOptions.SortOrder.NATURAL || sortOrder == TruffulaOptions.SortOrder.EXTENSION) {
+      String[] names = new String[children.length];
+      for (int i = 0; i < names.length; i++) {
+        names[i] = children[i].getName();
+      }
+      int[] order = sortOrder == TruffulaOptions.SortOrder.NATURAL
+          ? NaturalOrderSorter.order(names)
+          : KeySorter.order(MetadataSorter.extensions(names));
+      ArchiveTree.Node[] sorted = new ArchiveTree.Node[children.length];
+      for (int i = 0; i < order.length; i++) {
+        sorted[i] = children[order[i]];
+      }
+      children = sorted;
+    }
+    if (showHidden) {
+      return children;
+    }
+    int visible = 0;
+    ArchiveTree.Node[] filtered = new ArchiveTree.Node[children.length];
+    for (ArchiveTree.Node child : children) {
+      if (!child.isHidden()) {
+        filtered[visible++] = child;
+      }
+    }
+    return visible == children.length ? children : Arrays.copyOf(filtered, visible);
+  }
+
+  /**
+   * A directory whose children are being walked. The children are either the
+   * names of files on disk or, inside an archive, archive entries.
+   */
+  private static class Frame {
+    private final TreeEntry entry;
+    private final String[] children;
+    private final ArchiveTree.Node[] nodes;
+    private int next;
+
+    private Frame(TreeEntry entry, String[] children, ArchiveTree.Node[] nodes) {
+      this.entry = entry;
+      this.children = children;
+      this.nodes = nodes;
+    }
+
+    private int size() {
+      return nodes != null ? nodes.length : children.length;
+    }
+  }
+
+  /**
+   * The explicit-stack, depth-first iterator behind walk and stream.
+   */
+  class Traversal implements Iterator<TreeEntry> {
+    private final TreeVisitor visitor;
+    private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+    private TreeEntry pendingRoot;
+    private TreeEntry pendingDirectory;
+    private ArchiveTree.Node pendingNode;
+    private TreeEntry nextEntry;
+    private ArchiveTree.Node nextNode;
+
+    private Traversal(TreeVisitor visitor) {
+      this.visitor = visitor;
+      if (root != null && (showHidden || !fs.isHidden(root.getParentFile(), root.getName()))) {
+        pendingRoot = stat(root, 0, 0, 1);
+      }
+    }
+
+    /**
+     * Skips the children of the directory returned by the last call to next.
+     */
+    void skipChildren() {
+      pendingDirectory = null;
+    }
+
+    /**
+     * Saves the position after the entry returned by the last call to next.
+     * Must not be called between hasNext and next, or inside an archive.
+     *
+     * @param fingerprint  the fingerprint of the options being printed with
+     * @param outputOffset the number of bytes of output written so far
+     * @return the checkpoint
+     */
+    Checkpoint checkpoint(String fingerprint, long outputOffset) {
+      if (nextEntry != null || pendingNode != null) {
+        throw new IllegalStateException("cannot checkpoint here");
+      }
+      int levels = stack.size();
+      int[] positions = new int[levels];
+      String[] names = new String[levels];
+      Iterator<Frame> frames = stack.descendingIterator();
+      for (int level = 0; level < levels; level++) {
+        Frame frame = frames.next();
+        if (frame.children == null) {
+          throw new IllegalStateException("cannot checkpoint inside an archive");
+        }
+        positions[level] = frame.next - 1;
+        names[level] = frame.children[frame.next - 1];
+      }
+      return new Checkpoint(fingerprint, outputOffset, pendingDirectory != null, positions, names);
+    }
+
+    /**
+     * Rebuilds the stack for the path saved in a checkpoint.
+     */
+    private void resume(Checkpoint checkpoint) {
+      TreeEntry entry = pendingRoot;
+      pendingRoot = null;
+      for (int level = 0; level < checkpoint.getLevels(); level++) {
+        String[] children = listChildren(entry.getFile());
+        Frame frame = new Frame(entry, children, null);
+        stack.push(frame);
+        int position = locate(children, checkpoint.getPosition(level), checkpoint.getName(level));
+        if (position < 0) {
+          //the saved entry is gone; the one after it now sits at its position
+          frame.next = Math.min(checkpoint.getPosition(level), children.length);
+          return;
+        }
+        frame.next = position + 1;
+        File child = new File(entry.getFile(), children[position]);
+        entry = new TreeEntry(child, fs, level + 1, fs.isDirectory(child), position, children.length);
+      }
+      if (checkpoint.isDescend() && entry.isDirectory()) {
+        pendingDirectory = entry;
+      }
+    }
+
+    private int locate(String[] children, int position, String name) {
+      if (position >= 0 && position < children.length && children[position].equals(name)) {
+        return position;
+      }
+      for (int i = 0; i < children.length; i++) {
+        if (children[i].equals(name)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (nextEntry != null) {
+        return true;
+      }
+      if (pendingRoot != null) {
+        nextEntry = pendingRoot;
+        pendingRoot = null;
+        return true;
+      }
+      if (pendingDirectory != null) {
+        File dir = pendingDirectory.getFile();
+        if (pendingNode != null) {
+          stack.push(new Frame(pendingDirectory, null, listChildren(pendingNode)));
+        } else if (isArchive(dir)) {
+          ArchiveTree.Node archive = readArchive(dir);
+          stack.push(new Frame(pendingDirectory, null,
+              archive == null ? new ArchiveTree.Node[0] : listChildren(archive)));
+        } else {
+          stack.push(new Frame(pendingDirectory, listChildren(dir), null));
+        }
+        pendingDirectory = null;
+        pendingNode = null;
+      }
+      while (!stack.isEmpty()) {
+        Frame frame = stack.peek();
+        if (frame.next < frame.size()) {
+          int index = frame.next++;
+          int depth = frame.entry.getDepth() + 1;
+          if (frame.nodes != null) {
+            ArchiveTree.Node child = frame.nodes[index];
+            nextEntry = new TreeEntry(new File(frame.entry.getFile(), child.getName()), fs, depth,
+                child.isDirectory(), index, frame.nodes.length);
+            nextNode = child;
+          } else {
+            File child = new File(frame.entry.getFile(), frame.children[index]);
+            if (throttle != null) {
+              throttle.acquireOperations(1);
+            }
+            long statStart = metrics == null ? 0 : System.nanoTime();
+            nextEntry = stat(child, depth, index, frame.children.length);
+            if (metrics != null) {
+              metrics.record(TraversalMetrics.Phase.STAT, System.nanoTime() - statStart);
+            }
+          }
+          return true;
+        }
+        stack.pop();
+        if (visitor != null) {
+          visitor.leaveDirectory(frame.entry);
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public TreeEntry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      TreeEntry entry = nextEntry;
+      nextEntry = null;
+      boolean descend = entry.isDirectory() && (maxDepth < 0 || entry.getDepth() < maxDepth);
+      pendingDirectory = descend ? entry : null;
+      pendingNode = descend ? nextNode : null;
+      nextNode = null;
+      return entry;
+    }
+  }
+}
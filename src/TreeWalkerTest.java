@@ -0,0 +1,154 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TreeWalkerTest {
+
+  /**
+   * Builds:
+   * root/
+   *    .hidden.txt
+   *    apple.txt
+   *    Docs/
+   *       notes.txt
+   *    zebra.txt
+   */
+  private static File buildTree(File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    root.mkdir();
+    new File(root, ".hidden.txt").createNewFile();
+    new File(root, "apple.txt").createNewFile();
+    new File(root, "zebra.txt").createNewFile();
+    File docs = new File(root, "Docs");
+    docs.mkdir();
+    new File(docs, "notes.txt").createNewFile();
+    return root;
+  }
+
+  @Test
+  void testStreamProducesTreeOrder(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = buildTree(tempDir);
+    TreeWalker walker = new TreeWalker(root, false);
+
+    // Act
+    List<String> names = walker.stream()
+        .map(e -> e.getDepth() + ":" + e.getName())
+        .collect(Collectors.toList());
+
+    // Assert: sorted case-insensitively, hidden file skipped
+    assertEquals(List.of("0:root", "1:apple.txt", "1:Docs", "2:notes.txt", "1:zebra.txt"), names);
+  }
+
+  @Test
+  void testStreamIncludesHiddenWhenEnabled(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = buildTree(tempDir);
+
+    // Act
+    long count = new TreeWalker(root, true).stream().count();
+
+    // Assert
+    assertEquals(6, count);
+  }
+
+  @Test
+  void testEntriesCarrySiblingPositions(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = buildTree(tempDir);
+
+    // Act
+    List<TreeEntry> entries = new TreeWalker(root, false).stream().collect(Collectors.toList());
+
+    // Assert
+    TreeEntry docs = entries.get(2);
+    assertEquals("Docs", docs.getName());
+    assertTrue(docs.isDirectory());
+    assertEquals(1, docs.getIndex());
+    assertEquals(3, docs.getSiblingCount());
+    assertFalse(docs.isLast());
+    assertTrue(entries.get(4).isLast());
+  }
+
+  @Test
+  void testVisitorCanSkipDirectories(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = buildTree(tempDir);
+    List<String> visited = new ArrayList<>();
+    List<String> left = new ArrayList<>();
+
+    // Act: skip everything below Docs
+    new TreeWalker(root, false).walk(new TreeVisitor() {
+      @Override
+      public boolean visit(TreeEntry entry) {
+        visited.add(entry.getName());
+        return !entry.getName().equals("Docs");
+      }
+
+      @Override
+      public void leaveDirectory(TreeEntry directory) {
+        left.add(directory.getName());
+      }
+    });
+
+    // Assert
+    assertEquals(List.of("root", "apple.txt", "Docs", "zebra.txt"), visited);
+    assertEquals(List.of("root"), left);
+  }
+
+  @Test
+  void testHiddenRootProducesNothing(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File hiddenRoot = new File(tempDir, ".hiddenRoot");
+    hiddenRoot.mkdir();
+
+    // Act
+    long count = new TreeWalker(hiddenRoot, false).stream().count();
+
+    // Assert
+    assertEquals(0, count);
+  }
+
+  @Test
+  void testListChildrenReturnsSortedVisibleNames(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = buildTree(tempDir);
+
+    // Act
+    String[] hidden = new TreeWalker(root, false).listChildren(root);
+    String[] all = new TreeWalker(root, true).listChildren(root);
+    String[] missing = new TreeWalker(root, true).listChildren(new File(root, "missing"));
+
+    // Assert
+    assertEquals(List.of("apple.txt", "Docs", "zebra.txt"), List.of(hidden));
+    assertEquals(List.of(".hidden.txt", "apple.txt", "Docs", "zebra.txt"), List.of(all));
+    assertEquals(0, missing.length);
+  }
+
+  @Test
+  void testLocalListingDropsNamesAsItReadsThem(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File root = buildTree(tempDir);
+    List<String> offered = new ArrayList<>();
+
+    // Act
+    String[] kept = LocalFileSystem.INSTANCE.list(root, name -> {
+      offered.add(name);
+      return !name.startsWith(".");
+    });
+
+    // Assert: every name was offered once, and only the accepted ones are returned
+    assertEquals(4, offered.size());
+    assertEquals(List.of("Docs", "apple.txt", "zebra.txt"),
+        List.of(kept).stream().sorted().collect(Collectors.toList()));
+  }
+}
@@ -0,0 +1,58 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * A thin client for TruffulaDaemon. It sends one request line over the daemon's
+ * Unix domain socket and copies the response body to an output stream.
+ *
+ * Example Usage:
+ *
+ * int status = TruffulaClient.query(Path.of("/tmp/truffula.sock"), "PRINT -nc /srv/data", System.out, System.err);
+ */
+public class TruffulaClient {
+
+  private TruffulaClient() {
+  }
+
+  /**
+   * Sends a request to the daemon and copies the response body to out.
+   *
+   * @param socketPath the socket the daemon listens on
+   * @param request    the request line, for example "COUNT /srv/data"
+   * @param out        the stream to copy the response body to
+   * @param err        the stream to print error responses to
+   * @return 0 if the daemon answered OK, 1 if it answered with an error
+   * @throws IOException if the daemon cannot be reached
+   */
+  public static int query(Path socketPath, String request, OutputStream out, PrintStream err) throws IOException {
+    try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      channel.connect(UnixDomainSocketAddress.of(socketPath));
+      channel.write(ByteBuffer.wrap((request + "\n").getBytes(StandardCharsets.UTF_8)));
+
+      InputStream in = Channels.newInputStream(channel);
+      ByteArrayOutputStream status = new ByteArrayOutputStream();
+      int b;
+      while ((b = in.read()) != -1 && b != '\n') {
+        status.write(b);
+      }
+      String statusLine = status.toString(StandardCharsets.UTF_8);
+      if (!statusLine.equals("OK")) {
+        err.println("truffula: " + (statusLine.startsWith("ERROR ") ? statusLine.substring(6) : statusLine));
+        return 1;
+      }
+      in.transferTo(out);
+      out.flush();
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,553 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-running process that keeps a TreeIndex of each configured root in memory
+ * and answers queries about them over a Unix domain socket.
+ *
+ * Every root is walked once at start up. A WatchService watches all indexed
+ * directories; when something changes in one, that directory is listed again
+ * after a short quiet period, or after at most a couple of seconds while
+ * changes keep arriving, and its entries are replaced in a copy of the index.
+ * Only new subdirectories are walked; the others keep their subtrees. The new
+ * index replaces the old one atomically, so queries never see a half-built
+ * tree. Directories stay watched while they are listed again, so nothing that
+ * changes meanwhile is missed, and a directory found for the first time is
+ * listed once more after it is watched. A directory inside several overlapping
+ * roots is watched once for all of them. A re-index that fails is logged and
+ * tried again a few seconds later.
+ *
+ * Protocol:
+ * The client sends one request line and the daemon answers with a status line
+ * ("OK" or "ERROR message") followed by the response body, then closes the
+ * connection. Flags are -h (show hidden files) and -nc (no color).
+ *
+ * - PRINT [-h] [-nc] path             : the tree below path, as TruffulaPrinter prints it
+ * - SUBTREE [-h] [-nc] depth path     : the tree below path, at most depth levels deep
+ * - COUNT [-h] path                   : "files N directories M" below path
+ * - FIND [-h] prefix path             : paths below path whose name starts with prefix
+ * - PING                              : answers OK
+ *
+ * The path must be an indexed root or lie below one. Because the protocol is
+ * plain text, any Unix socket client works, for example:
+ *
+ * printf 'COUNT /srv/data\n' | nc -U /tmp/truffula.sock
+ */
+public class TruffulaDaemon implements Closeable {
+
+  /**
+   * How long the tree must be quiet before a changed directory is re-indexed.
+   */
+  private static final long QUIET_MILLIS = 200;
+
+  /**
+   * Longest a change waits to be re-indexed while more changes keep arriving.
+   */
+  private static final long MAX_DELAY_MILLIS = 2000;
+
+  /**
+   * How long a root whose re-index failed waits before it is tried again.
+   */
+  private static final long RETRY_MILLIS = 5000;
+
+  private final Path socketPath;
+  private final List<File> roots;
+  private final Map<File, TreeIndex> indexes = new ConcurrentHashMap<>();
+
+  /**
+   * The roots each watch key serves. Registering a directory that is already
+   * watched returns its key, so overlapping roots share the keys of the
+   * directories they have in common. Only used by the thread that re-indexes.
+   */
+  private final Map<WatchKey, Set<File>> keyRoots = new HashMap<>();
+
+  /**
+   * The watch key of every directory each root watches.
+   */
+  private final Map<File, Map<Path, WatchKey>> rootKeys = new HashMap<>();
+
+  private WatchService watcher;
+  private ServerSocketChannel server;
+  private ExecutorService workers;
+  private Thread acceptThread;
+  private Thread watchThread;
+  private volatile boolean running;
+
+  /**
+   * Constructs a TruffulaDaemon. Nothing is indexed until start is called.
+   *
+   * @param socketPath the path of the Unix domain socket to listen on
+   * @param roots      the directories to index
+   */
+  public TruffulaDaemon(Path socketPath, List<File> roots) {
+    this.socketPath = socketPath;
+    this.roots = new ArrayList<>();
+    for (File root : roots) {
+      this.roots.add(root.getAbsoluteFile());
+    }
+  }
+
+  /**
+   * Indexes every root, starts watching them and starts accepting queries.
+   *
+   * @throws IOException if the socket cannot be bound or the roots cannot be watched
+   */
+  public void start() throws IOException {
+    watcher = FileSystems.getDefault().newWatchService();
+    for (File root : roots) {
+      //nothing is watching yet, so there is nothing to walk twice
+      reindex(root);
+    }
+
+    Files.deleteIfExists(socketPath);
+    server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    server.bind(UnixDomainSocketAddress.of(socketPath));
+    running = true;
+
+    workers = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+      Thread t = new Thread(r, "truffula-query");
+      t.setDaemon(true);
+      return t;
+    });
+    acceptThread = new Thread(this::acceptLoop, "truffula-accept");
+    watchThread = new Thread(this::watchLoop, "truffula-watch");
+    watchThread.setDaemon(true);
+    acceptThread.start();
+    watchThread.start();
+  }
+
+  /**
+   * Blocks until the daemon is closed.
+   *
+   * @throws InterruptedException if the waiting thread is interrupted
+   */
+  public void awaitTermination() throws InterruptedException {
+    acceptThread.join();
+  }
+
+  /**
+   * Stops accepting queries, stops watching and removes the socket file.
+   */
+  @Override
+  public void close() throws IOException {
+    running = false;
+    if (server != null) {
+      server.close();
+    }
+    if (watcher != null) {
+      watcher.close();
+    }
+    if (workers != null) {
+      workers.shutdown();
+    }
+    Files.deleteIfExists(socketPath);
+  }
+
+  /**
+   * Returns the current index of a configured root.
+   *
+   * @param root the root to look up
+   * @return the index, or null if the root is not configured
+   */
+  public TreeIndex getIndex(File root) {
+    return indexes.get(root.getAbsoluteFile());
+  }
+
+  private void acceptLoop() {
+    while (running) {
+      try {
+        SocketChannel client = server.accept();
+        workers.execute(() -> serve(client));
+      } catch (IOException e) {
+        if (running) {
+          System.err.println("truffula daemon: " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  private void watchLoop() {
+    //the changed directories of each root, waiting to be re-indexed
+    Map<File, Set<File>> dirty = new HashMap<>();
+    long quietAt = 0;
+    long deadline = 0;
+    try {
+      while (running) {
+        WatchKey key;
+        if (dirty.isEmpty()) {
+          key = watcher.take();
+        } else {
+          long wait = Math.min(quietAt, deadline) - System.currentTimeMillis();
+          key = wait > 0 ? watcher.poll(wait, TimeUnit.MILLISECONDS) : null;
+        }
+        if (key != null) {
+          boolean wasClean = dirty.isEmpty();
+          if (markDirty(key, dirty)) {
+            long now = System.currentTimeMillis();
+            if (wasClean) {
+              deadline = now + MAX_DELAY_MILLIS;
+            }
+            quietAt = now + QUIET_MILLIS;
+          }
+          if (!key.reset()) {
+            //the directory is gone; the change in its parent re-indexes it
+            release(key);
+          }
+          if (dirty.isEmpty() || System.currentTimeMillis() < deadline) {
+            continue;
+          }
+        }
+        boolean failed = reindexDirty(dirty);
+        long now = System.currentTimeMillis();
+        quietAt = now + (failed ? RETRY_MILLIS : QUIET_MILLIS);
+        deadline = failed ? quietAt : now + MAX_DELAY_MILLIS;
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // closing the daemon closes the watch service
+    }
+  }
+
+  /**
+   * Takes the events of a key and adds its directory to the changed directories
+   * of every root it serves. The directory is listed again as a whole, so
+   * events lost to an overflow need no special care.
+   *
+   * @return true if any root changed
+   */
+  private boolean markDirty(WatchKey key, Map<File, Set<File>> dirty) {
+    key.pollEvents();
+    Set<File> changed = keyRoots.getOrDefault(key, Set.of());
+    File dir = ((Path) key.watchable()).toFile();
+    for (File root : changed) {
+      dirty.computeIfAbsent(root, r -> new HashSet<>()).add(dir);
+    }
+    return !changed.isEmpty();
+  }
+
+  /**
+   * Re-indexes every root with changed directories. A root that fails keeps
+   * its changes, to be tried again; directories watched for the first time
+   * are added as changes, to be listed once more now that they are watched.
+   *
+   * @return true if any root failed
+   */
+  private boolean reindexDirty(Map<File, Set<File>> dirty) {
+    boolean failed = false;
+    Map<File, Set<File>> next = new HashMap<>();
+    for (Map.Entry<File, Set<File>> entry : dirty.entrySet()) {
+      File root = entry.getKey();
+      try {
+        Set<File> added = update(root, entry.getValue());
+        if (!added.isEmpty()) {
+          next.put(root, added);
+        }
+      } catch (IOException | RuntimeException e) {
+        System.err.println("truffula daemon: re-indexing " + root + " failed: " + e.getMessage());
+        next.put(root, entry.getValue());
+        failed = true;
+      }
+    }
+    dirty.clear();
+    dirty.putAll(next);
+    return failed;
+  }
+
+  /**
+   * Lists the changed directories of a root again and swaps in an index with
+   * their entries replaced. Subdirectories that were already indexed keep their
+   * subtrees, which have keys of their own; only new ones are walked.
+   *
+   * @return the directories that were watched for the first time
+   */
+  private Set<File> update(File root, Set<File> changed) throws IOException {
+    TreeIndex index = indexes.get(root);
+    if (index == null) {
+      return reindex(root);
+    }
+    //parents first, so a directory created below a changed one is walked with it
+    List<String> paths = new ArrayList<>();
+    for (File dir : changed) {
+      paths.add(dir.getPath());
+    }
+    Collections.sort(paths);
+    Set<File> added = new HashSet<>();
+    for (String path : paths) {
+      File dir = new File(path);
+      int node = index.find(dir);
+      if (node < 0 || !dir.isDirectory()) {
+        //gone, or not indexed yet; the change in its parent covers it
+        continue;
+      }
+      List<File> before = index.getTree().directories(node, dir);
+      CompactTree subtree = relist(index.getTree(), node, dir);
+      index = new TreeIndex(root, index.getTree().replace(node, subtree));
+      added.addAll(watch(root, before, subtree.directories(0, dir)));
+    }
+    indexes.put(root, index);
+    return added;
+  }
+
+  /**
+   * Builds the new subtree of an indexed directory from a fresh listing of its
+   * entries, copying the subtrees of subdirectories the tree already has and
+   * walking the others.
+   */
+  private static CompactTree relist(CompactTree tree, int node, File dir) {
+    CompactTree listing = CompactTree.build(dir, true, 1);
+    CompactTree.Builder builder = new CompactTree.Builder();
+    builder.add(tree.name(node), 0, true, tree.isHidden(node));
+    for (int child = listing.firstChild(0); child != CompactTree.NONE; child = listing.nextSibling(child)) {
+      String name = listing.name(child);
+      CompactTree source = listing;
+      int start = child;
+      if (listing.isDirectory(child)) {
+        int old = tree.child(node, name);
+        if (old != CompactTree.NONE && tree.isDirectory(old)) {
+          source = tree;
+          start = old;
+        } else {
+          source = CompactTree.build(new File(dir, name), true);
+          start = 0;
+          if (source.size() == 0) {
+            continue;
+          }
+        }
+      }
+      CompactTree from = source;
+      from.walk(start, (n, depth, nameBytes, len) -> {
+        builder.add(new String(nameBytes, 0, len, StandardCharsets.UTF_8), depth + 1, from.isDirectory(n),
+            from.isHidden(n));
+        return true;
+      });
+    }
+    return builder.build();
+  }
+
+  /**
+   * Walks a whole root, swaps in the new index and watches every directory in it.
+   *
+   * @return the directories that were watched for the first time
+   */
+  private Set<File> reindex(File root) throws IOException {
+    TreeIndex index = TreeIndex.build(root);
+    Map<Path, WatchKey> keys = rootKeys.get(root);
+    List<File> before = new ArrayList<>();
+    if (keys != null) {
+      for (Path dir : keys.keySet()) {
+        before.add(dir.toFile());
+      }
+    }
+    Set<File> added = watch(root, before, index.directories());
+    indexes.put(root, index);
+    return added;
+  }
+
+  /**
+   * Moves the watches of a root from the directories it had below a walked
+   * directory to the ones it has now. Directories it still has keep their keys,
+   * and a key is only cancelled once no root uses it.
+   *
+   * @return the directories that were watched for the first time
+   */
+  private Set<File> watch(File root, List<File> before, List<File> after) throws IOException {
+    Map<Path, WatchKey> keys = rootKeys.computeIfAbsent(root, r -> new HashMap<>());
+    Set<Path> kept = new HashSet<>();
+    Set<File> added = new HashSet<>();
+    for (File dir : after) {
+      Path path = dir.toPath();
+      kept.add(path);
+      if (keys.containsKey(path)) {
+        continue;
+      }
+      try {
+        WatchKey key = path.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        keys.put(path, key);
+        keyRoots.computeIfAbsent(key, k -> new HashSet<>()).add(root);
+        added.add(dir);
+      } catch (IOException e) {
+        // the directory went away or is unreadable; the change in its parent re-indexes it
+      }
+    }
+    for (File dir : before) {
+      Path path = dir.toPath();
+      if (!kept.contains(path)) {
+        WatchKey key = keys.remove(path);
+        if (key != null) {
+          Set<File> users = keyRoots.get(key);
+          users.remove(root);
+          if (users.isEmpty()) {
+            keyRoots.remove(key);
+            key.cancel();
+          }
+        }
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Forgets a key whose directory is gone, for every root that used it.
+   */
+  private void release(WatchKey key) {
+    Set<File> users = keyRoots.remove(key);
+    if (users != null) {
+      for (File root : users) {
+        rootKeys.get(root).values().remove(key);
+      }
+    }
+  }
+
+  private void serve(SocketChannel client) {
+    try (SocketChannel channel = client) {
+      BufferedReader in = new BufferedReader(
+          new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+      PrintStream out = new PrintStream(
+          new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), false, StandardCharsets.UTF_8);
+      String request = in.readLine();
+      try {
+        handle(request == null ? "" : request, out);
+      } catch (IllegalArgumentException e) {
+        out.print("ERROR " + e.getMessage() + "\n");
+      }
+      out.flush();
+    } catch (IOException e) {
+      // the client went away
+    }
+  }
+
+  /**
+   * Answers a single request line, writing the status line and body to out.
+   *
+   * @param request the request line
+   * @param out     the stream to write the response to
+   * @throws IllegalArgumentException if the request is malformed or the path is not indexed
+   */
+  void handle(String request, PrintStream out) {
+    String[] tokens = request.trim().split(" ", 2);
+    String command = tokens[0].toUpperCase();
+    String rest = tokens.length > 1 ? tokens[1] : "";
+
+    boolean showHidden = false;
+    boolean useColor = true;
+    while (rest.startsWith("-")) {
+      String[] split = rest.split(" ", 2);
+      if (split[0].equals("-h")) {
+        showHidden = true;
+      } else if (split[0].equals("-nc")) {
+        useColor = false;
+      } else {
+        throw new IllegalArgumentException("unknown flag " + split[0]);
+      }
+      rest = split.length > 1 ? split[1] : "";
+    }
+
+    switch (command) {
+      case "PING":
+        out.print("OK\n");
+        break;
+      case "PRINT":
+        print(rest, showHidden, useColor, -1, out);
+        break;
+      case "SUBTREE": {
+        String[] split = rest.split(" ", 2);
+        if (split.length < 2) {
+          throw new IllegalArgumentException("usage: SUBTREE [-h] [-nc] depth path");
+        }
+        print(split[1], showHidden, useColor, parseInt(split[0]), out);
+        break;
+      }
+      case "COUNT": {
+        TreeIndex index = indexFor(rest);
+        long[] counts = index.count(nodeFor(index, rest), showHidden);
+        out.print("OK\nfiles " + counts[0] + " directories " + counts[1] + "\n");
+        break;
+      }
+      case "FIND": {
+        String[] split = rest.split(" ", 2);
+        if (split.length < 2) {
+          throw new IllegalArgumentException("usage: FIND [-h] prefix path");
+        }
+        TreeIndex index = indexFor(split[1]);
+        out.print("OK\n");
+        for (String match : index.findByPrefix(nodeFor(index, split[1]), split[0], showHidden, -1)) {
+          out.print(match + "\n");
+        }
+        break;
+      }
+      default:
+        throw new IllegalArgumentException("unknown command " + command);
+    }
+  }
+
+  private void print(String path, boolean showHidden, boolean useColor, int maxDepth, PrintStream out) {
+    TreeIndex index = indexFor(path);
+    int node = nodeFor(index, path);
+    out.print("OK\n");
+    TruffulaOptions options = new TruffulaOptions(index.getRoot(), showHidden, useColor);
+    index.print(node, new TruffulaPrinter(options, out), showHidden, maxDepth);
+  }
+
+  /**
+   * Returns the index of the configured root that contains path.
+   */
+  private TreeIndex indexFor(String path) {
+    if (path.isEmpty()) {
+      throw new IllegalArgumentException("missing path");
+    }
+    File file = new File(path).getAbsoluteFile();
+    for (File root : roots) {
+      String rootPath = root.getPath();
+      if (file.getPath().equals(rootPath) || file.getPath().startsWith(rootPath + File.separator)) {
+        return indexes.get(root);
+      }
+    }
+    throw new IllegalArgumentException("not indexed: " + path);
+  }
+
+  private static int nodeFor(TreeIndex index, String path) {
+    int node = index.find(new File(path));
+    if (node < 0) {
+      throw new IllegalArgumentException("not found: " + path);
+    }
+    return node;
+  }
+
+  private static int parseInt(String value) {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("not a number: " + value);
+    }
+  }
+}
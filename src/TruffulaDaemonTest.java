@@ -0,0 +1,134 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TruffulaDaemonTest {
+
+  private static String query(Path socket, String request) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    int status = TruffulaClient.query(socket, request, out, new PrintStream(err));
+    return status == 0 ? out.toString() : "ERROR " + err.toString().trim();
+  }
+
+  private static String awaitCount(Path socket, File root, String expected) throws Exception {
+    String count = "";
+    for (int i = 0; i < 100 && !count.equals(expected); i++) {
+      Thread.sleep(50);
+      count = query(socket, "COUNT " + root.getPath());
+    }
+    return count;
+  }
+
+  @Test
+  void testQueriesAndReindexOnChange(@TempDir File tempDir) throws Exception {
+    // Arrange: a small tree and a running daemon
+    File root = new File(tempDir, "root");
+    root.mkdir();
+    new File(root, "a.txt").createNewFile();
+    File sub = new File(root, "sub");
+    sub.mkdir();
+    new File(sub, "b.txt").createNewFile();
+    Path socket = new File(tempDir, "t.sock").toPath();
+
+    try (TruffulaDaemon daemon = new TruffulaDaemon(socket, List.of(root))) {
+      daemon.start();
+
+      // Act + Assert: PRINT matches the CLI output
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      new TruffulaPrinter(new TruffulaOptions(root, false, false), new PrintStream(expected)).printTree();
+      assertEquals(expected.toString(), query(socket, "PRINT -nc " + root.getPath()));
+
+      assertEquals("files 2 directories 1\n", query(socket, "COUNT " + root.getPath()));
+      assertEquals(new File(sub, "b.txt").getPath() + "\n", query(socket, "FIND b " + root.getPath()));
+      assertEquals("ERROR truffula: not indexed: " + tempDir.getPath(), query(socket, "COUNT " + tempDir.getPath()));
+
+      // Act: change the tree and wait for the watcher to re-index
+      new File(sub, "c.txt").createNewFile();
+      String count = awaitCount(socket, root, "files 3 directories 1\n");
+
+      // Assert
+      assertEquals("files 3 directories 1\n", count);
+
+      // Act: remove the directory
+      for (File file : sub.listFiles()) {
+        file.delete();
+      }
+      sub.delete();
+
+      // Assert
+      assertEquals("files 1 directories 0\n", awaitCount(socket, root, "files 1 directories 0\n"));
+    }
+  }
+
+  @Test
+  void testOverlappingRootsKeepUpdating(@TempDir File tempDir) throws Exception {
+    // Arrange: a root and a second root inside it
+    File outer = new File(tempDir, "outer");
+    File inner = new File(outer, "inner");
+    inner.mkdirs();
+    Path socket = new File(tempDir, "t.sock").toPath();
+
+    try (TruffulaDaemon daemon = new TruffulaDaemon(socket, List.of(outer, inner))) {
+      daemon.start();
+
+      // Act: a change both roots see, then a new directory and a change inside it
+      new File(inner, "a.txt").createNewFile();
+      assertEquals("files 1 directories 0\n", awaitCount(socket, inner, "files 1 directories 0\n"));
+      assertEquals("files 1 directories 1\n", awaitCount(socket, outer, "files 1 directories 1\n"));
+      File deeper = new File(inner, "deeper");
+      deeper.mkdir();
+      new File(deeper, "b.txt").createNewFile();
+      awaitCount(socket, outer, "files 2 directories 2\n");
+      new File(deeper, "c.txt").createNewFile();
+
+      // Assert: the shared directories are still watched for both roots
+      assertEquals("files 3 directories 1\n", awaitCount(socket, inner, "files 3 directories 1\n"));
+      assertEquals("files 3 directories 2\n", awaitCount(socket, outer, "files 3 directories 2\n"));
+    }
+  }
+
+  @Test
+  void testReindexesUnderConstantWrites(@TempDir File tempDir) throws Exception {
+    // Arrange: a file written more often than the quiet period
+    File root = new File(tempDir, "root");
+    root.mkdir();
+    File log = new File(root, "busy.log");
+    Path socket = new File(tempDir, "t.sock").toPath();
+    AtomicBoolean writing = new AtomicBoolean(true);
+    Thread writer = new Thread(() -> {
+      try (FileOutputStream out = new FileOutputStream(log)) {
+        while (writing.get()) {
+          out.write('x');
+          Thread.sleep(50);
+        }
+      } catch (IOException | InterruptedException e) {
+        // the test fails on the count
+      }
+    });
+
+    try (TruffulaDaemon daemon = new TruffulaDaemon(socket, List.of(root))) {
+      daemon.start();
+      writer.start();
+
+      // Act
+      new File(root, "new.txt").createNewFile();
+      String count = awaitCount(socket, root, "files 2 directories 0\n");
+      writing.set(false);
+      writer.join();
+
+      // Assert: the new file shows up although the tree never went quiet
+      assertEquals("files 2 directories 0\n", count);
+    }
+  }
+}
@@ -1,5 +1,8 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Represents configuration options for controlling how a directory tree is displayed.
@@ -7,21 +10,60 @@ import java.io.FileNotFoundException;
  * Options include:
  * - Whether to show hidden files.
  * - Whether to use colored output.
- * - The root directory from which to begin printing the tree.
+ * - The root directories from which to begin printing the tree.
  * 
  * Hidden files are identified by names that start with a dot (e.g., ".hidden.txt").
  * Color output is enabled by default, but can be disabled using flags.
  * 
  * Usage Example:
  * 
- * Arguments Format: [-h] [-nc] path
+ * Arguments Format: [flags] [settings] path [path ...]
  * 
  * Flags:
- * - -h   : Show hidden files (defaults to false).
- * - -nc  : Do not use color (color is enabled by default).
+ * - -h,  --hidden     : Show hidden files (defaults to false).
+ * - -nc, --no-color   : Do not use color (color is enabled by default).
+ * - -m,  --metrics    : Collect traversal metrics and print a summary to stderr.
+ * - -a,  --archives   : Show ZIP, JAR and TAR archives as directories of their entries.
+ * - -l,  --long       : Show permissions, owner, size and modification time before each entry.
+ * - --resume          : Carry on from the checkpoint of an interrupted run, appending to its output.
+ * - --mmap            : Write --output through a memory-mapped file, for dumps of many gigabytes.
+ * - --summarize       : Collapse runs of sibling files numbered alike, such as part-00000 to
+ *                       part-99999, into one line with their count and total size.
+ * 
+ * Settings (written as --key=value or --key value):
+ * - -t, --threads     : Number of worker threads (defaults to the number of processors).
+ * - --engine          : Traversal engine, "sequential" (default), "parallel" or "auto", which
+ *                       measures the tree as it goes and picks one of the others.
+ * - -d, --depth       : Deepest level below the root to print (defaults to no limit).
+ * - --buffer-size     : Output buffer size in bytes, with an optional k or m suffix (defaults to 64k).
+ * - --hold-limit      : Most output the parallel engine, or a batch of roots, holds back while
+ *                       earlier output is still being read, with an optional k or m suffix
+ *                       (defaults to 16m).
+ * - --format          : Output format, "text" (default) or "html", a page of collapsible
+ *                       directories.
+ * - --sort            : Order of entries in a directory: "name" (default), "natural", which
+ *                       compares runs of digits as numbers (file2 before file10), "size"
+ *                       (largest first), "mtime" (newest first) or "extension".
+ * - --cache-dir       : Directory for cached data such as checkpoints.
+ * - -o, --output      : Write the tree to this file instead of standard output.
+ * - --checkpoint      : Save the walk's position to this file every few seconds while writing
+ *                       to --output, so --resume can carry on after a crash or Ctrl-C.
+ *                       With --resume alone, the checkpoint is kept in the cache dir, or
+ *                       next to the output file.
+ * - --max-ops         : Most metadata operations (listings and stats) per second, for walks on
+ *                       busy shared storage (defaults to 0, no limit).
+ * - --max-inflight    : Most directory listings in flight at once (defaults to 0, no limit).
+ * - --find            : Print only entries whose names contain one of these comma separated
+ *                       patterns, with their parent directories; ^name matches names starting
+ *                       with name.
+ * - --max-matches     : Stop a --find walk after this many matches (defaults to 0, no limit).
+ * 
+ * An argument of "--" ends the flags, so a path starting with "-" can follow it.
  * 
  * Path:
  * - The absolute or relative path to the directory whose contents will be printed.
+ * - Several paths may be given; each is printed as its own tree, in argument order.
+ * - With --archives, a path may also be a ZIP, JAR or TAR archive.
  * 
  * Behavior:
  * - If color is disabled, all text will be printed in white.
@@ -39,19 +81,127 @@ import java.io.FileNotFoundException;
  * 3. ['/path/to/directory']
  *    → Use color, don't show hidden files.
  * 
+ * 4. ['--threads=8', '-h', '/path/to/directory', '--depth', '3']
+ *    → Show hidden files, print 3 levels deep, use 8 threads.
+ * 
+ * 5. ['/path/one', '/path/two']
+ *    → Print both trees, one after the other.
+ * 
  * Exceptions:
  * - Throws IllegalArgumentException if:
  *     - Unknown flags are provided.
+ *     - A setting is missing its value or the value is out of range.
  *     - The path argument is missing.
  * 
  * - Throws FileNotFoundException if:
- *     - The specified directory does not exist.
+ *     - A specified directory does not exist.
  *     - The path points to a file instead of a directory.
  */
 public class TruffulaOptions  {
+
+  /**
+   * The engine that walks the tree.
+   */
+  public enum Engine {
+    /**
+     * Walk the tree on the calling thread.
+     */
+    SEQUENTIAL,
+
+    /**
+     * Walk the tree with a pool of worker threads.
+     */
+    PARALLEL,
+
+    /**
+     * Start on the calling thread, measure the tree as it is walked and move to
+     * a pool of worker threads when the file system turns out to be slow
+     * (see AdaptiveTreePrinter).
+     */
+    AUTO
+  }
+
+  /**
+   * The format the tree is written in.
+   */
+  public enum Format {
+    /**
+     * Indented lines, optionally colored with ANSI codes.
+     */
+    TEXT,
+
+    /**
+     * One HTML page of collapsible directories, colored with CSS classes
+     * (see HtmlTreePrinter).
+     */
+    HTML
+  }
+
+  /**
+   * The order entries are listed in within a directory.
+   */
+  public enum SortOrder {
+    /**
+     * By name, ignoring case (AlphabeticalFileSorter).
+     */
+    NAME,
+
+    /**
+     * By name, ignoring case, with runs of digits compared as numbers (NaturalOrderSorter).
+     */
+    NATURAL,
+
+    /**
+     * By size, largest first (MetadataSorter).
+     */
+    SIZE,
+
+    /**
+     * By modification time, newest first (MetadataSorter).
+     */
+    MTIME,
+
+    /**
+     * By extension, ignoring case (MetadataSorter).
+     */
+    EXTENSION
+  }
+
+  /**
+   * Default limit on output held back by the parallel engine, in bytes.
+   */
+  public static final int DEFAULT_HOLD_LIMIT = 16 * 1024 * 1024;
+
+  /**
+   * Default output buffer size in bytes.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
   private final File root;
+  private final List<File> roots;
   private final boolean showHidden;
   private final boolean useColor;
+  private final boolean collectMetrics;
+  private final boolean readArchives;
+  private final boolean longListing;
+  private final int threads;
+  private final Engine engine;
+  private final int maxDepth;
+  private final int bufferSize;
+  private final int holdLimit;
+  private final Format format;
+  private final SortOrder sortOrder;
+  private final File cacheDir;
+  private final File output;
+  private final File checkpoint;
+  private final boolean resume;
+  private final int maxOperations;
+  private final int maxInflight;
+  private final List<String> findPatterns;
+  private final int maxMatches;
+  private final boolean summarize;
+  private final boolean mmap;
+  private final TreeFileSystem fileSystem;
 
   /**
    * Returns the root directory from which the directory tree will be printed.
@@ -62,6 +212,16 @@ public class TruffulaOptions  {
     return root;
   }
 
+  /**
+   * Returns every root directory to print, in argument order. The first one is
+   * the same as getRoot().
+   *
+   * @return the root directories, never empty unless no root was set
+   */
+  public List<File> getRoots() {
+    return roots;
+  }
+
   /**
    * Indicates whether hidden files should be included when printing the directory tree.
    *
@@ -71,9 +231,220 @@ public class TruffulaOptions  {
     return showHidden;
   }
 
+  /**
+   * Indicates whether traversal metrics should be collected and summarized
+   * after the tree is printed.
+   *
+   * @return true if metrics should be collected; false otherwise
+   */
+  public boolean isCollectMetrics() {
+    return collectMetrics;
+  }
+
+  /**
+   * Indicates whether archives should be shown as directories of their entries.
+   *
+   * @return true if archives should be read; false if they are printed as plain files
+   */
+  public boolean isReadArchives() {
+    return readArchives;
+  }
+
+  /**
+   * Indicates whether each entry should be printed with its attribute columns, like ls -l.
+   *
+   * @return true for a long listing; false for names only
+   */
+  public boolean isLongListing() {
+    return longListing;
+  }
+
+  /**
+   * Returns the number of worker threads a parallel engine may use.
+   *
+   * @return the thread count, at least 1
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Returns the engine that walks the tree.
+   *
+   * @return the traversal engine
+   */
+  public Engine getEngine() {
+    return engine;
+  }
+
+  /**
+   * Returns the deepest level below the root that is printed. The root is level 0.
+   *
+   * @return the depth limit, or -1 for no limit
+   */
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * Returns the size of the output buffer in bytes.
+   *
+   * @return the buffer size, at least 1
+   */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Returns how many bytes of rendered output the parallel engine, or a batch
+   * of roots printed on several threads, may hold back while it waits for
+   * earlier output.
+   *
+   * @return the hold limit in bytes, at least 0
+   */
+  public int getHoldLimit() {
+    return holdLimit;
+  }
+
+  /**
+   * Returns the format the tree is written in.
+   *
+   * @return the output format
+   */
+  public Format getFormat() {
+    return format;
+  }
+
+  /**
+   * Returns the order entries are listed in within a directory.
+   *
+   * @return the sort order
+   */
+  public SortOrder getSortOrder() {
+    return sortOrder;
+  }
+
+  /**
+   * Returns the directory for cached data.
+   *
+   * @return the cache directory, or null if none was given
+   */
+  public File getCacheDir() {
+    return cacheDir;
+  }
+
+  /**
+   * Returns the file the tree is written to.
+   *
+   * @return the output file, or null for standard output
+   */
+  public File getOutput() {
+    return output;
+  }
+
+  /**
+   * Returns the file the walk's position is saved to, so an interrupted run
+   * can be resumed. Checkpoints are only kept when writing to an output file.
+   *
+   * @return the checkpoint file, or null if no checkpoints are kept
+   */
+  public File getCheckpoint() {
+    if (checkpoint != null || !resume) {
+      return checkpoint;
+    }
+    if (cacheDir != null) {
+      return new File(cacheDir, output.getName() + ".checkpoint");
+    }
+    return new File(output.getPath() + ".checkpoint");
+  }
+
+  /**
+   * Indicates whether the run should carry on from the checkpoint of an
+   * interrupted run, appending to its output.
+   *
+   * @return true to resume; false to start from the root
+   */
+  public boolean isResume() {
+    return resume;
+  }
+
+  /**
+   * Returns the most metadata operations per second the walk may make.
+   *
+   * @return the limit, or 0 for no limit
+   */
+  public int getMaxOperations() {
+    return maxOperations;
+  }
+
+  /**
+   * Returns the most directory listings the walk may have in flight at once.
+   *
+   * @return the limit, or 0 for no limit
+   */
+  public int getMaxInflight() {
+    return maxInflight;
+  }
+
+  /**
+   * Returns the name patterns a --find walk prints matches for (see NameMatcher).
+   *
+   * @return the patterns, or null to print the whole tree
+   */
+  public List<String> getFindPatterns() {
+    return findPatterns;
+  }
+
+  /**
+   * Returns how many matches a --find walk prints before it stops.
+   *
+   * @return the limit, or 0 for no limit
+   */
+  public int getMaxMatches() {
+    return maxMatches;
+  }
+
+  /**
+   * Indicates whether runs of similarly numbered sibling files are collapsed
+   * into one line (see RunSummarizer).
+   *
+   * @return true to collapse runs; false to print every file
+   */
+  public boolean isSummarize() {
+    return summarize;
+  }
+
+  /**
+   * Indicates whether the output file is written through a memory-mapped
+   * region (see MappedOutputStream).
+   *
+   * @return true to map the output file; false to write it through a stream
+   */
+  public boolean isMmap() {
+    return mmap;
+  }
+
+  /**
+   * Returns the file system the tree is read from. Only the builder can set
+   * one other than the local file system.
+   *
+   * @return the file system
+   */
+  public TreeFileSystem getFileSystem() {
+    return fileSystem;
+  }
+
   @Override
   public String toString() {
-    return "TruffulaOptions [root=" + root + ", showHidden=" + showHidden + ", useColor=" + useColor + "]";
+    return "TruffulaOptions [roots=" + roots + ", showHidden=" + showHidden + ", useColor=" + useColor
+        + ", collectMetrics=" + collectMetrics + ", readArchives=" + readArchives
+        + ", longListing=" + longListing + ", threads=" + threads + ", engine=" + engine
+        + ", maxDepth=" + maxDepth + ", bufferSize=" + bufferSize
+        + ", holdLimit=" + holdLimit + ", format=" + format + ", sortOrder=" + sortOrder
+        + ", cacheDir=" + cacheDir + ", output=" + output + ", checkpoint=" + checkpoint + ", resume=" + resume
+        + ", maxOperations=" + maxOperations + ", maxInflight=" + maxInflight
+        + ", findPatterns=" + findPatterns + ", maxMatches=" + maxMatches
+        + ", summarize=" + summarize + ", mmap=" + mmap + "]";
   }
 
   /**
@@ -90,56 +461,16 @@ public class TruffulaOptions  {
   /**
    * Constructs a TruffulaOptions object based on command-line arguments.
    * 
-   * Supported Flags:
-   * - -h   : Show hidden files (defaults to false).
-   * - -nc  : Do not use color (uses color by default).
+   * Flags and settings may appear in any order, before or after the path.
+   * See the class comment for the full list.
    * 
-   * The last argument must be the path to the directory.
-   * 
-   * @param args command-line arguments in the format [-h] [-nc] path
-   * @throws IllegalArgumentException if unknown arguments are provided or the path is missing
+   * @param args command-line arguments in the format [flags] [settings] path
+   * @throws IllegalArgumentException if unknown arguments are provided, a setting is invalid
+   *                                  or the path is missing
    * @throws FileNotFoundException if the directory cannot be found or if the path points to a file
    */
   public TruffulaOptions(String[] args) throws IllegalArgumentException, FileNotFoundException {
-
-    //array not correct size
-    if(args.length != 1 && args.length != 3)
-    if(args.length != 3 && args.length != 1)
-    {
-      throw new IllegalArgumentException("illegal arguments");
-    }
-
-    if(args.length == 1)
-    {
-      root = new File(args[0]);
-      showHidden = false;
-      useColor = true;
-    }
-    else
-    {
-      //showHidden
-      if(args[0].equalsIgnoreCase( "-h") || args[1].equalsIgnoreCase( "-h"))
-        showHidden = true;
-      
-      else  
-        throw new IllegalArgumentException("illegal arguments");
-      
-      //no color
-      if(args[1].equalsIgnoreCase("-nc") || args[0].equalsIgnoreCase( "-nc"))
-        useColor = false;
-      
-      else
-        throw new IllegalArgumentException("illegal arguments");
-      
-      //root
-      File f = new File(args[2]);
-      if(f.exists() && f.isDirectory())
-        root = f;
-      
-      else
-        throw new FileNotFoundException("file not found");      
-    }
-
+    this(parse(args));
   }
 
   /**
@@ -150,8 +481,626 @@ public class TruffulaOptions  {
    * @param useColor   whether color should be used in the output
    */
   public TruffulaOptions(File root, boolean showHidden, boolean useColor) {
-    this.root = root;
-    this.showHidden = showHidden;
-    this.useColor = useColor;
+    this(root, showHidden, useColor, false);
+  }
+
+  /**
+   * Constructs a TruffulaOptions object with explicit values.
+   * 
+   * @param root           the root directory for the directory tree
+   * @param showHidden     whether hidden files should be displayed
+   * @param useColor       whether color should be used in the output
+   * @param collectMetrics whether traversal metrics should be collected and reported
+   */
+  public TruffulaOptions(File root, boolean showHidden, boolean useColor, boolean collectMetrics) {
+    this(new Builder(root).showHidden(showHidden).useColor(useColor).collectMetrics(collectMetrics));
+  }
+
+  /**
+   * Constructs a TruffulaOptions object from a validated builder.
+   */
+  private TruffulaOptions(Builder builder) {
+    this.roots = builder.roots;
+    this.root = roots.isEmpty() ? null : roots.get(0);
+    this.showHidden = builder.showHidden;
+    this.useColor = builder.useColor;
+    this.collectMetrics = builder.collectMetrics;
+    this.readArchives = builder.readArchives;
+    this.longListing = builder.longListing;
+    this.threads = builder.threads;
+    this.engine = builder.engine;
+    this.maxDepth = builder.maxDepth;
+    this.bufferSize = builder.bufferSize;
+    this.holdLimit = builder.holdLimit;
+    this.format = builder.format;
+    this.sortOrder = builder.sortOrder;
+    this.cacheDir = builder.cacheDir;
+    this.output = builder.output;
+    this.checkpoint = builder.checkpoint;
+    this.resume = builder.resume;
+    this.maxOperations = builder.maxOperations;
+    this.maxInflight = builder.maxInflight;
+    this.findPatterns = builder.findPatterns;
+    this.maxMatches = builder.maxMatches;
+    this.summarize = builder.summarize;
+    this.mmap = builder.mmap;
+    this.fileSystem = builder.fileSystem;
+  }
+
+  /**
+   * Parses command-line arguments into a validated builder.
+   */
+  private static Builder parse(String[] args) throws IllegalArgumentException, FileNotFoundException {
+    Builder builder = new Builder(null);
+    List<File> paths = new ArrayList<>();
+    boolean flagsEnded = false;
+
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (flagsEnded || !arg.startsWith("-") || arg.equals("-")) {
+        paths.add(new File(arg));
+        continue;
+      }
+      if (arg.equals("--")) {
+        flagsEnded = true;
+        continue;
+      }
+
+      //settings may be written --key=value or --key value
+      String name = arg;
+      String value = null;
+      int equals = arg.indexOf('=');
+      if (equals > 0) {
+        name = arg.substring(0, equals);
+        value = arg.substring(equals + 1);
+      }
+      name = name.toLowerCase();
+
+      switch (name) {
+        case "-h":
+        case "--hidden":
+          noValue(name, value);
+          builder.showHidden(true);
+          break;
+        case "-nc":
+        case "--no-color":
+          noValue(name, value);
+          builder.useColor(false);
+          break;
+        case "-m":
+        case "--metrics":
+          noValue(name, value);
+          builder.collectMetrics(true);
+          break;
+        case "-a":
+        case "--archives":
+          noValue(name, value);
+          builder.readArchives(true);
+          break;
+        case "-l":
+        case "--long":
+          noValue(name, value);
+          builder.longListing(true);
+          break;
+        case "--resume":
+          noValue(name, value);
+          builder.resume(true);
+          break;
+        case "--summarize":
+          noValue(name, value);
+          builder.summarize(true);
+          break;
+        case "--mmap":
+          noValue(name, value);
+          builder.mmap(true);
+          break;
+        case "-t":
+        case "--threads":
+          if (value == null) value = next(args, ++i, name);
+          builder.threads(parseInt(name, value));
+          break;
+        case "--engine":
+          if (value == null) value = next(args, ++i, name);
+          builder.engine(parseEnum(Engine.class, name, value));
+          break;
+        case "-d":
+        case "--depth":
+          if (value == null) value = next(args, ++i, name);
+          builder.maxDepth(parseInt(name, value));
+          break;
+        case "--buffer-size":
+          if (value == null) value = next(args, ++i, name);
+          builder.bufferSize(parseSize(name, value));
+          break;
+        case "--hold-limit":
+          if (value == null) value = next(args, ++i, name);
+          builder.holdLimit(parseSize(name, value));
+          break;
+        case "--format":
+          if (value == null) value = next(args, ++i, name);
+          builder.format(parseEnum(Format.class, name, value));
+          break;
+        case "--sort":
+          if (value == null) value = next(args, ++i, name);
+          builder.sortOrder(parseEnum(SortOrder.class, name, value));
+          break;
+        case "--cache-dir":
+          if (value == null) value = next(args, ++i, name);
+          builder.cacheDir(new File(value));
+          break;
+        case "-o":
+        case "--output":
+          if (value == null) value = next(args, ++i, name);
+          builder.output(new File(value));
+          break;
+        case "--checkpoint":
+          if (value == null) value = next(args, ++i, name);
+          builder.checkpoint(new File(value));
+          break;
+        case "--max-ops":
+          if (value == null) value = next(args, ++i, name);
+          builder.maxOperations(parseInt(name, value));
+          break;
+        case "--max-inflight":
+          if (value == null) value = next(args, ++i, name);
+          builder.maxInflight(parseInt(name, value));
+          break;
+        case "--find":
+          if (value == null) value = next(args, ++i, name);
+          builder.findPatterns(Arrays.asList(value.split(",", -1)));
+          break;
+        case "--max-matches":
+          if (value == null) value = next(args, ++i, name);
+          builder.maxMatches(parseInt(name, value));
+          break;
+        default:
+          throw new IllegalArgumentException("unknown flag: " + arg);
+      }
+    }
+
+    if (paths.isEmpty()) {
+      throw new IllegalArgumentException("missing path");
+    }
+    //checked after the loop so --archives may come after an archive path
+    for (File f : paths) {
+      boolean archive = builder.readArchives && f.isFile() && ArchiveTree.isArchive(f);
+      if (!f.isDirectory() && !archive) {
+        throw new FileNotFoundException("file not found: " + f.getPath());
+      }
+    }
+    return builder.roots(paths).validate();
+  }
+
+  /**
+   * Rejects a value given to a flag that takes none, such as --hidden=false,
+   * which would otherwise turn the flag on.
+   */
+  private static void noValue(String name, String value) {
+    if (value != null) {
+      throw new IllegalArgumentException(name + " takes no value: " + value);
+    }
+  }
+
+  private static String next(String[] args, int i, String name) {
+    if (i >= args.length) {
+      throw new IllegalArgumentException("missing value for " + name);
+    }
+    return args[i];
+  }
+
+  private static int parseInt(String name, String value) {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("not a number for " + name + ": " + value);
+    }
+  }
+
+  /**
+   * Parses a byte count with an optional k, m or g suffix.
+   */
+  private static int parseSize(String name, String value) {
+    String digits = value.toLowerCase();
+    long unit = 1;
+    if (digits.endsWith("k")) {
+      unit = 1024;
+    } else if (digits.endsWith("m")) {
+      unit = 1024 * 1024;
+    } else if (digits.endsWith("g")) {
+      unit = 1024 * 1024 * 1024;
+    }
+    if (unit != 1) {
+      digits = digits.substring(0, digits.length() - 1);
+    }
+    long size;
+    try {
+      size = Long.parseLong(digits) * unit;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("not a size for " + name + ": " + value);
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("too large for " + name + ": " + value);
+    }
+    return (int) size;
+  }
+
+  private static <E extends Enum<E>> E parseEnum(Class<E> type, String name, String value) {
+    for (E constant : type.getEnumConstants()) {
+      if (constant.name().equalsIgnoreCase(value)) {
+        return constant;
+      }
+    }
+    throw new IllegalArgumentException("unknown value for " + name + ": " + value);
+  }
+
+  /**
+   * Creates a builder for options with the given root and default settings.
+   *
+   * @param root the root directory for the directory tree
+   * @return a new builder
+   */
+  public static Builder builder(File root) {
+    return new Builder(root);
+  }
+
+  /**
+   * Returns a builder holding these options, so a copy with some settings
+   * changed can be made.
+   *
+   * @return a new builder with the same settings as these options
+   */
+  public Builder toBuilder() {
+    Builder builder = new Builder(null);
+    builder.roots = roots;
+    builder.showHidden = showHidden;
+    builder.useColor = useColor;
+    builder.collectMetrics = collectMetrics;
+    builder.readArchives = readArchives;
+    builder.longListing = longListing;
+    builder.threads = threads;
+    builder.engine = engine;
+    builder.maxDepth = maxDepth;
+    builder.bufferSize = bufferSize;
+    builder.holdLimit = holdLimit;
+    builder.format = format;
+    builder.sortOrder = sortOrder;
+    builder.cacheDir = cacheDir;
+    builder.output = output;
+    builder.checkpoint = checkpoint;
+    builder.resume = resume;
+    builder.maxOperations = maxOperations;
+    builder.maxInflight = maxInflight;
+    builder.findPatterns = findPatterns;
+    builder.maxMatches = maxMatches;
+    builder.summarize = summarize;
+    builder.mmap = mmap;
+    builder.fileSystem = fileSystem;
+    return builder;
+  }
+
+  /**
+   * Builds TruffulaOptions with settings beyond the constructor arguments.
+   * Values are checked once in build(), so the printing code can read the
+   * resulting options without further checks.
+   *
+   * Example Usage:
+   *
+   * TruffulaOptions options = TruffulaOptions.builder(root)
+   *     .showHidden(true)
+   *     .maxDepth(2)
+   *     .build();
+   */
+  public static class Builder {
+    private List<File> roots;
+    private boolean showHidden = false;
+    private boolean useColor = true;
+    private boolean collectMetrics = false;
+    private boolean readArchives = false;
+    private boolean longListing = false;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Engine engine = Engine.SEQUENTIAL;
+    private int maxDepth = -1;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private int holdLimit = DEFAULT_HOLD_LIMIT;
+    private Format format = Format.TEXT;
+    private SortOrder sortOrder = SortOrder.NAME;
+    private File cacheDir = null;
+    private File output = null;
+    private File checkpoint = null;
+    private boolean resume = false;
+    private int maxOperations = 0;
+    private int maxInflight = 0;
+    private List<String> findPatterns = null;
+    private int maxMatches = 0;
+    private boolean summarize = false;
+    private boolean mmap = false;
+    private TreeFileSystem fileSystem = LocalFileSystem.INSTANCE;
+
+    private Builder(File root) {
+      root(root);
+    }
+
+    /**
+     * @param root the root directory for the directory tree
+     * @return this builder
+     */
+    public Builder root(File root) {
+      this.roots = root == null ? List.of() : List.of(root);
+      return this;
+    }
+
+    /**
+     * @param roots the root directories to print, in order
+     * @return this builder
+     */
+    public Builder roots(List<File> roots) {
+      this.roots = List.copyOf(roots);
+      return this;
+    }
+
+    /**
+     * @param showHidden whether hidden files should be displayed
+     * @return this builder
+     */
+    public Builder showHidden(boolean showHidden) {
+      this.showHidden = showHidden;
+      return this;
+    }
+
+    /**
+     * @param useColor whether color should be used in the output
+     * @return this builder
+     */
+    public Builder useColor(boolean useColor) {
+      this.useColor = useColor;
+      return this;
+    }
+
+    /**
+     * @param collectMetrics whether traversal metrics should be collected and reported
+     * @return this builder
+     */
+    public Builder collectMetrics(boolean collectMetrics) {
+      this.collectMetrics = collectMetrics;
+      return this;
+    }
+
+    /**
+     * @param readArchives whether archives should be shown as directories of their entries
+     * @return this builder
+     */
+    public Builder readArchives(boolean readArchives) {
+      this.readArchives = readArchives;
+      return this;
+    }
+
+    /**
+     * @param longListing whether each entry should be printed with its attribute columns
+     * @return this builder
+     */
+    public Builder longListing(boolean longListing) {
+      this.longListing = longListing;
+      return this;
+    }
+
+    /**
+     * @param threads the number of worker threads, at least 1
+     * @return this builder
+     */
+    public Builder threads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * @param engine the engine that walks the tree
+     * @return this builder
+     */
+    public Builder engine(Engine engine) {
+      this.engine = engine;
+      return this;
+    }
+
+    /**
+     * @param maxDepth the deepest level to print, or -1 for no limit
+     * @return this builder
+     */
+    public Builder maxDepth(int maxDepth) {
+      this.maxDepth = maxDepth;
+      return this;
+    }
+
+    /**
+     * @param bufferSize the output buffer size in bytes, at least 1
+     * @return this builder
+     */
+    public Builder bufferSize(int bufferSize) {
+      this.bufferSize = bufferSize;
+      return this;
+    }
+
+    /**
+     * @param holdLimit the most output in bytes the parallel engine or a batch may hold back, at least 0
+     * @return this builder
+     */
+    public Builder holdLimit(int holdLimit) {
+      this.holdLimit = holdLimit;
+      return this;
+    }
+
+    /**
+     * @param format the format the tree is written in
+     * @return this builder
+     */
+    public Builder format(Format format) {
+      this.format = format;
+      return this;
+    }
+
+    /**
+     * @param sortOrder the order entries are listed in within a directory
+     * @return this builder
+     */
+    public Builder sortOrder(SortOrder sortOrder) {
+      this.sortOrder = sortOrder;
+      return this;
+    }
+
+    /**
+     * @param cacheDir the directory for cached data, or null for none
+     * @return this builder
+     */
+    public Builder cacheDir(File cacheDir) {
+      this.cacheDir = cacheDir;
+      return this;
+    }
+
+    /**
+     * @param output the file to write the tree to, or null for standard output
+     * @return this builder
+     */
+    public Builder output(File output) {
+      this.output = output;
+      return this;
+    }
+
+    /**
+     * @param checkpoint the file to save the walk's position to, or null for the default
+     * @return this builder
+     */
+    public Builder checkpoint(File checkpoint) {
+      this.checkpoint = checkpoint;
+      return this;
+    }
+
+    /**
+     * @param resume whether to carry on from the checkpoint of an interrupted run
+     * @return this builder
+     */
+    public Builder resume(boolean resume) {
+      this.resume = resume;
+      return this;
+    }
+
+    /**
+     * @param maxOperations the most metadata operations per second, or 0 for no limit
+     * @return this builder
+     */
+    public Builder maxOperations(int maxOperations) {
+      this.maxOperations = maxOperations;
+      return this;
+    }
+
+    /**
+     * @param maxInflight the most directory listings in flight at once, or 0 for no limit
+     * @return this builder
+     */
+    public Builder maxInflight(int maxInflight) {
+      this.maxInflight = maxInflight;
+      return this;
+    }
+
+    /**
+     * @param findPatterns the name patterns to print matches for, or null to print the whole tree
+     * @return this builder
+     */
+    public Builder findPatterns(List<String> findPatterns) {
+      this.findPatterns = findPatterns == null ? null : List.copyOf(findPatterns);
+      return this;
+    }
+
+    /**
+     * @param maxMatches the most matches a --find walk prints, or 0 for no limit
+     * @return this builder
+     */
+    public Builder maxMatches(int maxMatches) {
+      this.maxMatches = maxMatches;
+      return this;
+    }
+
+    /**
+     * @param summarize whether to collapse runs of similarly numbered sibling files
+     * @return this builder
+     */
+    public Builder summarize(boolean summarize) {
+      this.summarize = summarize;
+      return this;
+    }
+
+    /**
+     * @param mmap whether to write the output file through a memory-mapped region
+     * @return this builder
+     */
+    public Builder mmap(boolean mmap) {
+      this.mmap = mmap;
+      return this;
+    }
+
+    /**
+     * @param fileSystem the file system to read the tree from, such as a MemoryFileSystem in tests
+     * @return this builder
+     */
+    public Builder fileSystem(TreeFileSystem fileSystem) {
+      this.fileSystem = fileSystem;
+      return this;
+    }
+
+    /**
+     * Checks the settings and returns the options.
+     *
+     * @return the options
+     * @throws IllegalArgumentException if a setting is out of range
+     */
+    public TruffulaOptions build() {
+      return new TruffulaOptions(validate());
+    }
+
+    private Builder validate() {
+      if (threads < 1) {
+        throw new IllegalArgumentException("threads must be at least 1: " + threads);
+      }
+      if (maxDepth < -1) {
+        throw new IllegalArgumentException("depth must be -1 or more: " + maxDepth);
+      }
+      if (bufferSize < 1) {
+        throw new IllegalArgumentException("buffer size must be at least 1: " + bufferSize);
+      }
+      if (holdLimit < 0) {
+        throw new IllegalArgumentException("hold limit must be at least 0: " + holdLimit);
+      }
+      if (maxOperations < 0 || maxInflight < 0 || maxMatches < 0) {
+        throw new IllegalArgumentException("limits must be 0 or more: " + maxOperations + ", " + maxInflight
+            + ", " + maxMatches);
+      }
+      if (findPatterns != null) {
+        //compiled here only to reject empty patterns before the walk starts
+        NameMatcher.compile(findPatterns);
+        if (checkpoint != null || resume) {
+          throw new IllegalArgumentException("--find cannot be combined with checkpoints");
+        }
+      }
+      if (summarize && (findPatterns != null || checkpoint != null || resume)) {
+        throw new IllegalArgumentException("--summarize cannot be combined with --find or checkpoints");
+      }
+      if (format != Format.TEXT && (findPatterns != null || summarize || checkpoint != null || resume)) {
+        throw new IllegalArgumentException("--find, --summarize and checkpoints need text output");
+      }
+      if (engine == null || format == null || sortOrder == null || fileSystem == null) {
+        throw new IllegalArgumentException("engine, format, sort order and file system must be set");
+      }
+      if (cacheDir != null && cacheDir.exists() && !cacheDir.isDirectory()) {
+        throw new IllegalArgumentException("cache dir is not a directory: " + cacheDir);
+      }
+      if (mmap && (output == null || checkpoint != null || resume)) {
+        throw new IllegalArgumentException("--mmap needs an output file and no checkpoints");
+      }
+      if ((checkpoint != null || resume) && output == null) {
+        throw new IllegalArgumentException("checkpoints need an output file");
+      }
+      if ((checkpoint != null || resume) && (roots.size() != 1 || readArchives)) {
+        throw new IllegalArgumentException("checkpoints need a single path and no archives");
+      }
+      return this;
+    }
   }
 }
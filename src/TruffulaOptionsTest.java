@@ -1,9 +1,12 @@
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -72,4 +75,151 @@ public class TruffulaOptionsTest {
     assertEquals(directory.getAbsolutePath(), options.getRoot().getAbsolutePath());
   }
 
+  @Test
+  void testSingleFlagAndAnyOrder(@TempDir File tempDir) throws FileNotFoundException {
+    // Arrange
+    String directoryPath = tempDir.getAbsolutePath();
+
+    // Act: one flag, and flags after the path
+    TruffulaOptions noColor = new TruffulaOptions(new String[] {"-nc", directoryPath});
+    TruffulaOptions hiddenAfter = new TruffulaOptions(new String[] {directoryPath, "-h"});
+
+    // Assert
+    assertFalse(noColor.isUseColor());
+    assertFalse(noColor.isShowHidden());
+    assertTrue(hiddenAfter.isShowHidden());
+    assertTrue(hiddenAfter.isUseColor());
+  }
+
+  @Test
+  void testLongOptionsAndSettings(@TempDir File tempDir) throws FileNotFoundException {
+    // Arrange
+    File cache = new File(tempDir, "cache");
+    String[] args = {"--hidden", "--threads=8", "--depth", "3", "--engine=PARALLEL",
+        "--buffer-size=1m", "--format", "text", "--cache-dir=" + cache.getPath(),
+        "--metrics", "--no-color", tempDir.getAbsolutePath()};
+
+    // Act
+    TruffulaOptions options = new TruffulaOptions(args);
+
+    // Assert
+    assertTrue(options.isShowHidden());
+    assertFalse(options.isUseColor());
+    assertTrue(options.isCollectMetrics());
+    assertEquals(8, options.getThreads());
+    assertEquals(3, options.getMaxDepth());
+    assertEquals(TruffulaOptions.Engine.PARALLEL, options.getEngine());
+    assertEquals(1024 * 1024, options.getBufferSize());
+    assertEquals(TruffulaOptions.Format.TEXT, options.getFormat());
+    assertEquals(cache.getPath(), options.getCacheDir().getPath());
+  }
+
+  @Test
+  void testFindSettings(@TempDir File tempDir) throws FileNotFoundException {
+    // Act
+    TruffulaOptions options = new TruffulaOptions(new String[] {"--find=report,^tmp", "--max-matches", "5",
+        tempDir.getAbsolutePath()});
+
+    // Assert
+    assertEquals(List.of("report", "^tmp"), options.getFindPatterns());
+    assertEquals(5, options.getMaxMatches());
+  }
+
+  @Test
+  void testDefaults(@TempDir File tempDir) throws FileNotFoundException {
+    // Act
+    TruffulaOptions options = new TruffulaOptions(new String[] {tempDir.getAbsolutePath()});
+
+    // Assert
+    assertEquals(-1, options.getMaxDepth());
+    assertEquals(TruffulaOptions.Engine.SEQUENTIAL, options.getEngine());
+    assertEquals(TruffulaOptions.DEFAULT_BUFFER_SIZE, options.getBufferSize());
+    assertTrue(options.getThreads() >= 1);
+  }
+
+  @Test
+  void testInvalidArguments(@TempDir File tempDir) {
+    String path = tempDir.getAbsolutePath();
+
+    // Assert: each of these is rejected
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-h"}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-x", path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"--threads=0", path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"--threads=many", path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"--engine=warp", path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {path, "--depth"}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"--resume", path}));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TruffulaOptions(new String[] {"-o", "out.txt", "--checkpoint=c", path, path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"--find=a,,b", path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"--max-matches=-1", path}));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TruffulaOptions(new String[] {"--format=html", "--find=a", path}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"--mmap", path}));
+  }
+
+  @Test
+  void testFlagsTakeNoValue(@TempDir File tempDir) {
+    String path = tempDir.getAbsolutePath();
+
+    // Assert: a value after a flag is rejected rather than ignored
+    for (String flag : new String[] {"--hidden=false", "-h=no", "--no-color=no", "-nc=false", "-m=0", "--metrics=off",
+        "-a=no", "-l=false", "--long=no", "--resume=no", "--summarize=false", "--mmap=no"}) {
+      assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {flag, path}), flag);
+    }
+  }
+
+  @Test
+  void testSeveralPaths(@TempDir File tempDir) throws FileNotFoundException {
+    // Arrange
+    File first = new File(tempDir, "first");
+    File second = new File(tempDir, "second");
+    first.mkdir();
+    second.mkdir();
+
+    // Act
+    TruffulaOptions options = new TruffulaOptions(new String[] {first.getPath(), "-nc", second.getPath()});
+
+    // Assert: every path is kept in order and the first is the root
+    assertEquals(List.of(first, second), options.getRoots());
+    assertEquals(first, options.getRoot());
+    assertFalse(options.isUseColor());
+  }
+
+  @Test
+  void testMissingDirectory(@TempDir File tempDir) throws IOException {
+    // Arrange
+    File file = new File(tempDir, "file.txt");
+    file.createNewFile();
+
+    // Assert
+    assertThrows(FileNotFoundException.class,
+        () -> new TruffulaOptions(new String[] {new File(tempDir, "missing").getPath()}));
+    assertThrows(FileNotFoundException.class, () -> new TruffulaOptions(new String[] {file.getPath()}));
+  }
+
+  @Test
+  void testPathAfterDoubleDash(@TempDir File tempDir) throws FileNotFoundException {
+    // Arrange
+    File dashed = new File(tempDir, "-dir");
+    dashed.mkdir();
+
+    // Act
+    TruffulaOptions options = new TruffulaOptions(new String[] {"-h", "--", dashed.getPath()});
+
+    // Assert
+    assertEquals(dashed.getPath(), options.getRoot().getPath());
+  }
+
+  @Test
+  void testBuilderValidates(@TempDir File tempDir) {
+    // Act
+    TruffulaOptions options = TruffulaOptions.builder(tempDir).maxDepth(2).threads(3).build();
+
+    // Assert
+    assertEquals(2, options.getMaxDepth());
+    assertEquals(3, options.toBuilder().build().getThreads());
+    assertThrows(IllegalArgumentException.class, () -> TruffulaOptions.builder(tempDir).bufferSize(0).build());
+  }
 }
@@ -1,11 +1,15 @@
 import java.io.File;
 import java.io.PrintStream;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * TruffulaPrinter is responsible for printing a directory tree structure
  * with optional colored output. It supports sorting files and directories
  * in a case-insensitive manner and cycling through colors for visual clarity.
+ *
+ * The traversal itself is done by a TreeWalker; TruffulaPrinter only renders
+ * the entries it produces.
  */
 
 
@@ -26,10 +30,58 @@ public class TruffulaPrinter {
    */
   private ColorPrinter out;
 
+  /**
+   * Traversal metrics for the current run, or null when metrics are disabled.
+   */
+  private TraversalMetrics metrics;
+
+  /**
+   * Limits on metadata operations for the current run, or null for no limits.
+   */
+  private Throttle throttle;
+
+  /**
+   * Limits shared with other printers through setThrottle, or null to make new
+   * ones from the options for each run.
+   */
+  private Throttle sharedThrottle;
+
+  /**
+   * Number of lines printed by the current run.
+   */
+  private long linesPrinted;
+
+  /**
+   * Renders the attribute columns in long listing mode, or null otherwise.
+   */
+  private final LongListing longListing;
+
+  /**
+   * Reused buffer for building long listing lines.
+   */
+  private final StringBuilder line = new StringBuilder(128);
+
+  /**
+   * Indentation strings by depth, grown as deeper levels are printed.
+   */
+  private String[] indents = {"", "   ", "      ", "         "};
+
+  /**
+   * Visitor that prints every entry. An inner class rather than a lambda so a
+   * short run does not pay for linking a lambda at start up.
+   */
+  private final TreeVisitor entryPrinter = new TreeVisitor() {
+    @Override
+    public boolean visit(TreeEntry entry) {
+      printEntry(entry);
+      return true;
+    }
+  };
+
   /**
    * Default color sequence used when no custom colors are provided.
    */
-  private static final List<ConsoleColor> DEFAULT_COLOR_SEQUENCE = List.of(
+  static final List<ConsoleColor> DEFAULT_COLOR_SEQUENCE = List.of(
       ConsoleColor.WHITE, ConsoleColor.PURPLE, ConsoleColor.YELLOW
   );
 
@@ -76,6 +128,21 @@ public class TruffulaPrinter {
     this.options = options;
     this.colorSequence = colorSequence;
     out = new ColorPrinter(outStream);
+    longListing = options.isLongListing() ? new LongListing() : null;
+  }
+
+  /**
+   * Constructs a TruffulaPrinter that prints through the given ColorPrinter,
+   * such as a MappedColorPrinter, using the default color sequence.
+   *
+   * @param options the configuration options for printing the tree
+   * @param out the printer to print the tree with
+   */
+  public TruffulaPrinter(TruffulaOptions options, ColorPrinter out) {
+    this.options = options;
+    this.colorSequence = DEFAULT_COLOR_SEQUENCE;
+    this.out = out;
+    longListing = options.isLongListing() ? new LongListing() : null;
   }
 
   /**
@@ -91,6 +158,17 @@ public class TruffulaPrinter {
    * WAVE 7: The sorting is case-insensitive. If two files have identical case-insensitive names,
    * they are sorted lexicographically (Cat.png before cat.png).
    *
+   * If the options give --find patterns, only the entries whose names match are
+   * printed, each below its parent directories, and the walk stops once the
+   * --max-matches limit is reached (see printMatches). With --summarize, runs of
+   * similarly numbered files in a directory print as one line (see RunSummarizer).
+   * Both always walk on the calling thread.
+   *
+   * If metrics are enabled in the options, the time spent listing, sorting, filtering and
+   * printing is recorded and a summary naming the slowest directories is printed to System.err.
+   * Listing, sorting, filtering and the final flush are also reported as Java Flight Recorder
+   * events (see TraversalEvents) whenever a recording is running.
+   *
    * Example Output:
    *
    * myFolder/
@@ -121,81 +199,324 @@ public class TruffulaPrinter {
 
     if (root ==null) return;
 
-    printTreeHelper(root, 0, 0);
+    metrics = options.isCollectMetrics() ? new TraversalMetrics() : null;
+
+    bindThrottle();
+
+    linesPrinted = 0;
+
+    //the walker lists, sorts and drops hidden files; this class only renders
+    if (options.getFindPatterns() != null) {
+      printMatches(NameMatcher.compile(options.getFindPatterns()));
+    } else if (options.isSummarize()) {
+      RunSummarizer summarizer = new RunSummarizer(this, options.getFileSystem(), throttle);
+      new TreeWalker(options, metrics, throttle).walk(summarizer);
+      summarizer.finish();
+    } else if (options.getEngine() == TruffulaOptions.Engine.PARALLEL && options.getThreads() > 1) {
+      new ParallelTreePrinter(options, colorSequence, out, metrics, throttle).print();
+    } else if (options.getEngine() == TruffulaOptions.Engine.AUTO) {
+      new AdaptiveTreePrinter(options, colorSequence, out, this, metrics, throttle).print();
+    } else {
+      new TreeWalker(options, metrics, throttle).walk(entryPrinter);
+    }
+
+    TraversalEvents.OutputFlush flushEvent = null;
+    if (TraversalEvents.isRecording()) {
+      flushEvent = new TraversalEvents.OutputFlush();
+      flushEvent.begin();
+    }
+    out.flush();
+    if (flushEvent != null && flushEvent.shouldCommit()) {
+      flushEvent.path = root.getPath();
+      flushEvent.lineCount = linesPrinted;
+      flushEvent.commit();
+    }
+
+    if (metrics != null) {
+      metrics.report(System.err);
+    }
   }//end print tree
 
-  private void printTreeHelper(File file, int level, int color) {
+  /**
+   * Walks the tree on the calling thread and prints only the entries whose names
+   * match, each preceded by those of its parent directories that are not printed
+   * yet, so the output is the full tree with everything that leads to no match
+   * left out. The root is always printed first and never matched itself.
+   *
+   * Names are matched as the walk reaches them, so a run that finds its
+   * --max-matches matches stops walking instead of reading the rest of the tree.
+   *
+   * @param matcher the compiled patterns
+   */
+  private void printMatches(NameMatcher matcher) {
+    TreeWalker.Traversal traversal = new TreeWalker(options, metrics, throttle).traversal();
+    int limit = options.getMaxMatches();
+    int matches = 0;
+    //the current entry's ancestors by depth, of which the first printedDepth are printed
+    TreeEntry[] path = new TreeEntry[16];
+    int printedDepth = 0;
+    while (traversal.hasNext()) {
+      TreeEntry entry = traversal.next();
+      int depth = entry.getDepth();
+      if (depth >= path.length) {
+        path = Arrays.copyOf(path, depth * 2);
+      }
+      path[depth] = entry;
+      printedDepth = Math.min(printedDepth, depth);
+      if (depth > 0 && !matcher.matches(entry.getName())) {
+        continue;
+      }
+      for (int i = printedDepth; i <= depth; i++) {
+        printEntry(path[i]);
+      }
+      printedDepth = depth + 1;
+      if (depth > 0 && ++matches == limit) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Prints a tree that has already been walked into a CompactTree, using the
+   * hidden file and color settings of this printer's options. The same tree can
+   * be printed any number of times without reading the file system again.
+   *
+   * Hidden entries can only be printed if the tree was built with them.
+   *
+   * @param tree the tree to print
+   */
+  public void printTree(CompactTree tree) {
+    if (tree.size() == 0) return;
+    bindThrottle();
+    linesPrinted = 0;
+    tree.print(0, this, options.isShowHidden(), -1);
+  }
 
-    if (!options.isShowHidden() && file.isHidden()) {
+  /**
+   * Prints the subtree of one node of a CompactTree, with the node as the root
+   * of the printed tree under the name of the path it was reached by, such as
+   * a symbolic link to it. The hidden file setting and depth limit of this
+   * printer's options apply below the node, and the root is hidden by the rule
+   * a walk from that path applies to it, so the output is the same as walking
+   * the path with printTree().
+   *
+   * @param tree the tree holding the node
+   * @param node the node to print
+   * @param root the path the node was reached by
+   */
+  public void printTree(CompactTree tree, int node, File root) {
+    if (!options.isShowHidden() && options.getFileSystem().isHidden(root.getParentFile(), root.getName())) return;
+    bindThrottle();
+    linesPrinted = 0;
+    tree.print(node, root, this, options.isShowHidden(), options.getMaxDepth());
+  }
 
-      return;
+  /**
+   * Sets the metrics that printed lines are recorded into, for a printer that
+   * renders part of a tree for another one.
+   *
+   * @param metrics the metrics to record into, or null to not collect metrics
+   */
+  void setMetrics(TraversalMetrics metrics) {
+    this.metrics = metrics;
+  }
 
-    }//doesn't show hidden files
+  /**
+   * Sets the throttle that walks and long listing reads take their metadata
+   * operations from, for a printer that shares its limits with others. Each
+   * run of printTree takes from its limits but records its waits into that
+   * run's own metrics.
+   *
+   * @param throttle the throttle to share, or null to make one from the options
+   */
+  void setThrottle(Throttle throttle) {
+    this.sharedThrottle = throttle;
+    this.throttle = throttle;
+  }
 
-    String indent = "";
-    for (int i = 0; i < level; i++) {
+  /**
+   * Points the throttle of a new run at its metrics: the shared limits if there
+   * are any, otherwise new ones from the options.
+   */
+  private void bindThrottle() {
+    throttle = sharedThrottle != null ? sharedThrottle.withMetrics(metrics) : Throttle.forOptions(options, metrics);
+  }
 
-      indent += "   ";
+  /**
+   * Returns the metrics collected by the last call to printTree.
+   *
+   * @return the collected metrics, or null if metrics were not enabled
+   */
+  public TraversalMetrics getMetrics() {
+    return metrics;
+  }
 
-    }//end for
+  /**
+   * Prints a single entry on its own line, indented 3 spaces per level and
+   * colored by its depth.
+   *
+   * @param entry the entry to print
+   */
+  void printEntry(TreeEntry entry) {
+    printEntry(entry, entry.getDepth());
+  }//end printEntry
 
-    String directorySlash = file.getName();
-    if (file.isDirectory()) {
-      
-      directorySlash += "/";
+  /**
+   * Prints a single entry at the given depth, which may differ from the entry's
+   * own depth when the entry was walked from a subtree. In long listing mode the
+   * line starts with the entry's attribute columns.
+   *
+   * @param entry the entry to print
+   * @param depth the depth of the entry below the printed root
+   */
+  void printEntry(TreeEntry entry, int depth) {
+    printEntry(entry.getFile(), entry.getAttributes(), entry.getName(), depth, entry.isDirectory());
+  }//end printEntry
 
-    }//end if
+  /**
+   * Prints a single tree line for a file at the given depth, such as a node of
+   * a CompactTree whose path is known. In long listing mode the line starts
+   * with the file's attribute columns; otherwise the file is not read.
+   *
+   * @param file        the file the line stands for
+   * @param name        the name to print
+   * @param depth       the depth of the entry below the printed root
+   * @param isDirectory whether the entry is a directory (gets a trailing slash)
+   */
+  void printEntry(File file, String name, int depth, boolean isDirectory) {
+    printEntry(file, null, name, depth, isDirectory);
+  }//end printEntry
 
-    //colors changed based on level using color var if enabled
-    if(options.isUseColor())
-    {
-      if(color == 0)
-      {
-        out.setCurrentColor(ConsoleColor.WHITE);
-        out.println(indent + directorySlash);
-      }
-      if(color == 1)
-      {
-        out.setCurrentColor(ConsoleColor.PURPLE);
-        out.println(indent + directorySlash);
-      }
-      if(color == 2)
-      {
-        out.setCurrentColor(ConsoleColor.YELLOW);
-        out.println(indent + directorySlash);
+  /**
+   * Prints a single tree line for a file whose long listing attributes may
+   * already have been read by the walker, in which case the file is not read
+   * again.
+   */
+  private void printEntry(File file, LongListing.Attributes attributes, String name, int depth,
+      boolean isDirectory) {
+    if (longListing == null) {
+      printLine(name, depth, isDirectory);
+      return;
+    }
+    long printStart = metrics == null ? 0 : System.nanoTime();
+
+    line.setLength(0);
+    if (attributes != null) {
+      longListing.appendColumns(line, attributes);
+    } else {
+      if (throttle != null) {
+        throttle.acquireOperations(1);
       }
+      longListing.appendColumns(line, file);
     }
-    else
-    {
-      out.setCurrentColor(ConsoleColor.WHITE);
-      out.println(indent + directorySlash);
+    line.append(indent(depth)).append(name);
+    if (isDirectory) {
+      line.append('/');
+    }//end if
+
+    out.setCurrentColor(colorFor(depth));
+    out.println(line.toString());
+    linesPrinted++;
+
+    if (metrics != null) metrics.record(TraversalMetrics.Phase.PRINT, System.nanoTime() - printStart);
+  }//end printEntry
+
+  /**
+   * Prints a single tree line for an entry that is not backed by a TreeEntry,
+   * such as one read from a TreeIndex, then counts it as printed.
+   *
+   * @param name        the name of the entry
+   * @param depth       the depth of the entry below the printed root
+   * @param isDirectory whether the entry is a directory (gets a trailing slash)
+   */
+  void printLine(String name, int depth, boolean isDirectory) {
+    long printStart = metrics == null ? 0 : System.nanoTime();
+
+    String directorySlash = name;
+    if (isDirectory) {
+      directorySlash += "/";
+    }//end if
+
+    //colors changed based on level if enabled
+    out.setCurrentColor(colorFor(depth));
+    out.println(indent(depth) + directorySlash);
+    linesPrinted++;
+
+    if (metrics != null) metrics.record(TraversalMetrics.Phase.PRINT, System.nanoTime() - printStart);
+  }//end printLine
+
+  /**
+   * Prints a line that stands for several files, such as a run collapsed by
+   * RunSummarizer. In long listing mode the line starts with their total size
+   * under the size column, so it lines up with the entries around it.
+   *
+   * @param text  the text of the line
+   * @param depth the depth of the line below the printed root
+   * @param size  the total size of the files in bytes
+   */
+  void printTotalLine(String text, int depth, long size) {
+    if (longListing == null) {
+      printLine(text, depth, false);
+      return;
     }
-    
+    long printStart = metrics == null ? 0 : System.nanoTime();
 
-    if (file.isDirectory()) {
-      File[] children = file.listFiles();
+    line.setLength(0);
+    longListing.appendTotalColumns(line, size);
+    line.append(indent(depth)).append(text);
 
-      if (children != null) {
+    out.setCurrentColor(colorFor(depth));
+    out.println(line.toString());
+    linesPrinted++;
 
-        File[] sortedChildren = AlphabeticalFileSorter.sort(children);
-        if(color == 2)
-        {
-          color = 0;
-        }
-        else
-        {
-          color++;
-        }
+    if (metrics != null) metrics.record(TraversalMetrics.Phase.PRINT, System.nanoTime() - printStart);
+  }//end printTotalLine
 
-        for (File child : sortedChildren) {
-          printTreeHelper(child, level + 1, color);
+  /**
+   * Indicates whether lines start with the long listing columns, which need
+   * the file of every printed entry.
+   *
+   * @return true in long listing mode; false otherwise
+   */
+  boolean isLongListing() {
+    return longListing != null;
+  }
 
-        }//end for
-      }//end if
+  /**
+   * Flushes everything printed so far to the output stream.
+   */
+  void flush() {
+    out.flush();
+  }
 
+  /**
+   * Returns the color for entries at the given depth, cycling through the color
+   * sequence, or white when color is disabled.
+   *
+   * @param depth the depth of the entry
+   * @return the color to print the entry in
+   */
+  ConsoleColor colorFor(int depth) {
+    if (!options.isUseColor()) {
+      return ConsoleColor.WHITE;
+    }
+    return colorSequence.get(depth % colorSequence.size());
+  }
 
-    }//end isDirectory
-  }//end printTreeHelper
+  /**
+   * Returns the indentation for the given depth, 3 spaces per level.
+   */
+  private String indent(int depth) {
+    if (depth >= indents.length) {
+      String[] grown = new String[Math.max(depth + 1, indents.length * 2)];
+      System.arraycopy(indents, 0, grown, 0, indents.length);
+      for (int i = indents.length; i < grown.length; i++) {
+        grown[i] = grown[i - 1] + "   ";
+      }
+      indents = grown;
+    }
+    return indents[depth];
+  }
   
 
   public static void main (String[] args){
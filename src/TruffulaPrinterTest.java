@@ -9,8 +9,10 @@ import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TruffulaPrinterTest {
@@ -350,4 +352,133 @@ public class TruffulaPrinterTest {
         assertEquals(expected.toString(), baos.toString());
     }//end withHiddenFiles
 
+    @Test
+    public void testPrintTreeWithMetrics(@TempDir File tempDir) throws IOException {
+        // Create root folder with one file and one sub directory
+        File root = new File(tempDir, "rootFolder");
+        assertTrue(root.mkdir(), "rootFolder should be created");
+        File subDir = new File(root, "subDir");
+        assertTrue(subDir.mkdir(), "subDir should be created");
+        new File(root, "fileA.txt").createNewFile();
+        new File(subDir, "subFile.txt").createNewFile();
+
+        // Show hidden = false, color enabled = false, metrics enabled = true
+        TruffulaOptions options = new TruffulaOptions(root, false, false, true);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PrintStream printStream = new PrintStream(baos);
+
+        TruffulaPrinter printer = new TruffulaPrinter(options, printStream);
+        printer.printTree();
+
+        String nl = System.lineSeparator();
+        String WHITE = "\u001B[0;37m";
+        String RESET = "\u001B[0m";
+
+        // Output is unchanged by metrics
+        StringBuilder expected = new StringBuilder();
+        expected.append(WHITE).append("rootFolder/").append(nl).append(RESET);
+        expected.append(WHITE).append("   fileA.txt").append(nl).append(RESET);
+        expected.append(WHITE).append("   subDir/").append(nl).append(RESET);
+        expected.append(WHITE).append("      subFile.txt").append(nl).append(RESET);
+        assertEquals(expected.toString(), baos.toString());
+
+        // Every directory was listed, filtered and sorted once, every entry printed once
+        TraversalMetrics metrics = printer.getMetrics();
+        assertEquals(2, metrics.getDirectoryCount());
+        assertEquals(2, metrics.getCount(TraversalMetrics.Phase.LIST));
+        assertEquals(2, metrics.getCount(TraversalMetrics.Phase.FILTER));
+        assertEquals(2, metrics.getCount(TraversalMetrics.Phase.SORT));
+        assertEquals(4, metrics.getCount(TraversalMetrics.Phase.PRINT));
+        assertEquals(2, metrics.getSlowestDirectories().size());
+    }//end withMetrics
+
+    @Test
+    public void testPrintTreeWithoutMetrics(@TempDir File tempDir) throws IOException {
+        File root = new File(tempDir, "rootFolder");
+        assertTrue(root.mkdir(), "rootFolder should be created");
+
+        TruffulaOptions options = new TruffulaOptions(root, false, false);
+        TruffulaPrinter printer = new TruffulaPrinter(options, new PrintStream(new ByteArrayOutputStream()));
+        printer.printTree();
+
+        // Metrics are not collected unless enabled
+        assertEquals(null, printer.getMetrics());
+    }//end withoutMetrics
+
+    @Test
+    public void testMetricsMaxIsTheLongestCall() {
+        TraversalMetrics metrics = new TraversalMetrics();
+        metrics.record(TraversalMetrics.Phase.STAT, 1_100);
+        metrics.record(TraversalMetrics.Phase.STAT, 1_500);
+
+        // The exact longest call, not the top of its histogram bucket
+        assertEquals(1_500, metrics.getMaxNanos(TraversalMetrics.Phase.STAT));
+        assertEquals(2_047, metrics.getPercentileNanos(TraversalMetrics.Phase.STAT, 100));
+        assertEquals(0, metrics.getMaxNanos(TraversalMetrics.Phase.SORT));
+    }//end metricsMax
+
+    @Test
+    public void testPrintTreeWithDepthLimit(@TempDir File tempDir) throws IOException {
+        // Create root/subDir/deeper/deep.txt
+        File root = new File(tempDir, "rootFolder");
+        File deeper = new File(new File(root, "subDir"), "deeper");
+        assertTrue(deeper.mkdirs(), "deeper should be created");
+        new File(deeper, "deep.txt").createNewFile();
+
+        // Only print one level below the root
+        TruffulaOptions options = TruffulaOptions.builder(root).useColor(false).maxDepth(1).build();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        TruffulaPrinter printer = new TruffulaPrinter(options, new PrintStream(baos));
+        printer.printTree();
+
+        String nl = System.lineSeparator();
+        String WHITE = "\u001B[0;37m";
+        String RESET = "\u001B[0m";
+
+        StringBuilder expected = new StringBuilder();
+        expected.append(WHITE).append("rootFolder/").append(nl).append(RESET);
+        expected.append(WHITE).append("   subDir/").append(nl).append(RESET);
+
+        assertEquals(expected.toString(), baos.toString());
+    }//end withDepthLimit
+
+    @Test
+    public void testPrintTreeWithFind() {
+        // Build a tree in memory with matches at several depths
+        File root = new File("/mem/rootFolder");
+        MemoryFileSystem fs = MemoryFileSystem.builder(root)
+                .addFile("a/b/report.txt", 1)
+                .addFile("a/b/notes.txt", 1)
+                .addFile("a/c/old-report.txt", 1)
+                .addFile("d/readme.md", 1)
+                .addFile("report-index.txt", 1)
+                .build();
+
+        TruffulaOptions options = TruffulaOptions.builder(root).useColor(false).fileSystem(fs)
+                .findPatterns(List.of("report")).build();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new TruffulaPrinter(options, new PrintStream(baos)).printTree();
+
+        // Only matches and their parent directories, each parent printed once
+        String nl = System.lineSeparator();
+        String WHITE = "\u001B[0;37m";
+        String RESET = "\u001B[0m";
+        StringBuilder expected = new StringBuilder();
+        for (String line : new String[] {"rootFolder/", "   a/", "      b/", "         report.txt",
+                "      c/", "         old-report.txt", "   report-index.txt"}) {
+            expected.append(WHITE).append(line).append(nl).append(RESET);
+        }
+        assertEquals(expected.toString(), baos.toString());
+
+        // Stop after the first match
+        baos.reset();
+        new TruffulaPrinter(options.toBuilder().maxMatches(1).build(), new PrintStream(baos)).printTree();
+        String first = baos.toString();
+        assertTrue(first.contains("report.txt"));
+        assertFalse(first.contains("old-report.txt"));
+    }//end withFind
+
 }//end file